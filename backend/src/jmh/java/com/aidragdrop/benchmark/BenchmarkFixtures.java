@@ -0,0 +1,140 @@
+package com.aidragdrop.benchmark;
+
+import com.aidragdrop.entity.AIModule;
+import com.aidragdrop.entity.ApiConfig;
+import com.aidragdrop.entity.LazyJson;
+import com.aidragdrop.entity.Task;
+import com.aidragdrop.entity.Workflow;
+import com.aidragdrop.entity.WorkflowConnection;
+import com.aidragdrop.entity.WorkflowNode;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+// 基准测试共用的数据，结构与编辑器保存的工作流和模块定义一致
+public final class BenchmarkFixtures {
+    
+    public static final int LAYER_WIDTH = 4;
+    
+    private BenchmarkFixtures() {
+    }
+    
+    // 分层 DAG: 每层最多 LAYER_WIDTH 个节点，每个节点依赖上一层的两个节点，节点轮流使用 moduleCount 个模块
+    public static Workflow workflow(int nodeCount, int moduleCount) {
+        List<WorkflowNode> nodes = new ArrayList<>();
+        List<WorkflowConnection> connections = new ArrayList<>();
+        for (int i = 0; i < nodeCount; i++) {
+            WorkflowNode node = new WorkflowNode();
+            node.setId("node-" + i);
+            node.setModuleId(moduleId(i % moduleCount));
+            Map<String, Object> config = new LinkedHashMap<>();
+            config.put("prompt", "请根据上游结果生成摘要，限制在 200 字以内。节点 " + i);
+            config.put("temperature", 0.7);
+            config.put("maxTokens", 512);
+            config.put("stop", List.of("\n\n", "###"));
+            node.setConfig(config);
+            node.getAttributes().put("type", "module");
+            node.getAttributes().put("label", "节点 " + i);
+            node.getAttributes().put("position", Map.of("x", 240 * (i % LAYER_WIDTH), "y", 160 * (i / LAYER_WIDTH)));
+            nodes.add(node);
+            
+            int layerStart = (i / LAYER_WIDTH - 1) * LAYER_WIDTH;
+            if (layerStart >= 0) {
+                for (int from : new int[]{layerStart + i % LAYER_WIDTH, layerStart + (i + 1) % LAYER_WIDTH}) {
+                    WorkflowConnection connection = new WorkflowConnection();
+                    connection.setId("edge-" + from + "-" + i);
+                    connection.setFromNodeId("node-" + from);
+                    connection.setFromPort("output");
+                    connection.setToNodeId("node-" + i);
+                    connection.setToPort("input");
+                    connection.getAttributes().put("animated", true);
+                    connections.add(connection);
+                }
+            }
+        }
+        
+        Workflow workflow = new Workflow();
+        workflow.setId("benchmark-workflow-" + nodeCount);
+        workflow.setName("基准测试工作流");
+        workflow.setDescription(nodeCount + " 个节点的分层工作流");
+        workflow.setProjectId("benchmark-project");
+        workflow.setNodes(nodes);
+        workflow.setConnections(connections);
+        workflow.setCreatedAt(LocalDateTime.now());
+        workflow.setUpdatedAt(LocalDateTime.now());
+        return workflow;
+    }
+    
+    public static String moduleId(int index) {
+        return "module-" + index;
+    }
+    
+    public static AIModule module(String id, String url) {
+        AIModule module = new AIModule();
+        module.setId(id);
+        module.setName(id);
+        module.setType("llm");
+        module.setVersion("1.0.0");
+        module.setConfig(new LinkedHashMap<>(Map.of("model", "gpt-4o-mini")));
+        module.setApiConfig(apiConfig(url, auth("bearer", Map.of("token", "sk-benchmark-0123456789abcdef"))));
+        return module;
+    }
+    
+    public static ApiConfig apiConfig(String url, ApiConfig.Auth auth) {
+        ApiConfig apiConfig = new ApiConfig();
+        apiConfig.setUrl(url);
+        apiConfig.setMethod("POST");
+        apiConfig.setTimeout(5000L);
+        apiConfig.setAuth(auth);
+        apiConfig.setHeaders(new LinkedHashMap<>(Map.of("X-Client", "ai-drag-drop", "Accept", "application/json")));
+        apiConfig.setIdempotent(true);
+        ApiConfig.Retry retry = new ApiConfig.Retry();
+        retry.setMaxAttempts(3);
+        retry.setBackoffMs(200L);
+        retry.setMaxBackoffMs(2000L);
+        retry.setJitter(0.5);
+        apiConfig.setRetry(retry);
+        ApiConfig.CircuitBreaker circuitBreaker = new ApiConfig.CircuitBreaker();
+        circuitBreaker.setEnabled(true);
+        circuitBreaker.setFailureRateThreshold(50);
+        apiConfig.setCircuitBreaker(circuitBreaker);
+        apiConfig.getAttributes().put("region", "ap-east-1");
+        return apiConfig;
+    }
+    
+    public static ApiConfig.Auth auth(String type, Map<String, String> credentials) {
+        ApiConfig.Auth auth = new ApiConfig.Auth();
+        auth.setType(type);
+        auth.setCredentials(credentials);
+        return auth;
+    }
+    
+    // 与上游返回的典型结果大小相当（约 2KB）
+    public static Map<String, Object> moduleResult() {
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("id", "chatcmpl-benchmark");
+        result.put("model", "gpt-4o-mini");
+        result.put("choices", List.of(Map.of(
+                "index", 0,
+                "finish_reason", "stop",
+                "message", Map.of("role", "assistant", "content", "摘要内容。".repeat(150)))));
+        result.put("usage", Map.of("prompt_tokens", 320, "completion_tokens", 180, "total_tokens", 500));
+        return result;
+    }
+    
+    // 与从数据库加载的已完成任务一致: 结果保持原始 JSON 字符串
+    public static Task completedTask(String raw) {
+        Task task = new Task();
+        task.setId("benchmark-task");
+        task.setWorkflowId("benchmark-workflow");
+        task.setStatus(Task.TaskStatus.COMPLETED);
+        task.setInput(LazyJson.ofRaw("{\"prompt\":\"hello\"}"));
+        task.setResult(LazyJson.ofRaw(raw));
+        task.setStartTime(LocalDateTime.now().minusSeconds(3));
+        task.setEndTime(LocalDateTime.now());
+        task.setCreatedAt(LocalDateTime.now().minusSeconds(5));
+        return task;
+    }
+}
@@ -0,0 +1,45 @@
+package com.aidragdrop.benchmark;
+
+import com.aidragdrop.entity.JsonSupport;
+import io.netty.handler.codec.http.HttpHeaderNames;
+import reactor.core.publisher.Mono;
+import reactor.netty.DisposableServer;
+import reactor.netty.http.server.HttpServer;
+
+// 本地模拟的模块上游: POST /echo 丢弃请求体，立即返回固定的 JSON 结果，使基准只测量本服务自身的开销
+public final class StubUpstream implements AutoCloseable {
+    
+    private final DisposableServer server;
+    
+    private StubUpstream(DisposableServer server) {
+        this.server = server;
+    }
+    
+    public static StubUpstream start() {
+        byte[] body;
+        try {
+            body = JsonSupport.MAPPER.writeValueAsBytes(BenchmarkFixtures.moduleResult());
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+        DisposableServer server = HttpServer.create()
+                .host("127.0.0.1")
+                .port(0)
+                .route(routes -> routes.post("/echo", (request, response) -> request.receive().then()
+                        .then(response
+                                .header(HttpHeaderNames.CONTENT_TYPE, "application/json")
+                                .sendByteArray(Mono.just(body))
+                                .then())))
+                .bindNow();
+        return new StubUpstream(server);
+    }
+    
+    public String url() {
+        return "http://127.0.0.1:" + server.port() + "/echo";
+    }
+    
+    @Override
+    public void close() {
+        server.disposeNow();
+    }
+}
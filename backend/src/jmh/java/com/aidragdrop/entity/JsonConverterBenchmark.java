@@ -0,0 +1,66 @@
+package com.aidragdrop.entity;
+
+import com.aidragdrop.benchmark.BenchmarkFixtures;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+// 模块定义 JSON 列的读写: apiConfig 使用类型化转换器，config/properties 使用通用的 JsonConverter
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JsonConverterBenchmark {
+    
+    private final ApiConfigConverter apiConfigConverter = new ApiConfigConverter();
+    private final JsonConverter jsonConverter = new JsonConverter();
+    
+    private ApiConfig apiConfig;
+    private String apiConfigJson;
+    private Map<String, Object> config;
+    private String configJson;
+    
+    @Setup
+    public void setUp() {
+        apiConfig = BenchmarkFixtures.module("module-0", "http://127.0.0.1:8080/echo").getApiConfig();
+        apiConfigJson = apiConfigConverter.convertToDatabaseColumn(apiConfig);
+        config = BenchmarkFixtures.moduleResult();
+        configJson = jsonConverter.convertToDatabaseColumn(config);
+    }
+    
+    @Benchmark
+    public String apiConfigWrite() {
+        return apiConfigConverter.convertToDatabaseColumn(apiConfig);
+    }
+    
+    @Benchmark
+    public ApiConfig apiConfigRead() {
+        return apiConfigConverter.convertToEntityAttribute(apiConfigJson);
+    }
+    
+    @Benchmark
+    public ApiConfig apiConfigRoundTrip() {
+        return apiConfigConverter.convertToEntityAttribute(apiConfigConverter.convertToDatabaseColumn(apiConfig));
+    }
+    
+    @Benchmark
+    public String configWrite() {
+        return jsonConverter.convertToDatabaseColumn(config);
+    }
+    
+    @Benchmark
+    public Object configRead() {
+        return jsonConverter.convertToEntityAttribute(configJson);
+    }
+}
@@ -0,0 +1,66 @@
+package com.aidragdrop.entity;
+
+import com.aidragdrop.benchmark.BenchmarkFixtures;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// 工作流 nodes/connections 列的读写，保存和加载工作流时各执行一次
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class WorkflowJsonBenchmark {
+    
+    @Param({"8", "64"})
+    private int nodeCount;
+    
+    private final WorkflowNodesConverter nodesConverter = new WorkflowNodesConverter();
+    private final WorkflowConnectionsConverter connectionsConverter = new WorkflowConnectionsConverter();
+    
+    private List<WorkflowNode> nodes;
+    private String nodesJson;
+    private List<WorkflowConnection> connections;
+    private String connectionsJson;
+    
+    @Setup
+    public void setUp() {
+        Workflow workflow = BenchmarkFixtures.workflow(nodeCount, 4);
+        nodes = workflow.getNodes();
+        nodesJson = nodesConverter.convertToDatabaseColumn(nodes);
+        connections = workflow.getConnections();
+        connectionsJson = connectionsConverter.convertToDatabaseColumn(connections);
+    }
+    
+    @Benchmark
+    public String nodesWrite() {
+        return nodesConverter.convertToDatabaseColumn(nodes);
+    }
+    
+    @Benchmark
+    public List<WorkflowNode> nodesRead() {
+        return nodesConverter.convertToEntityAttribute(nodesJson);
+    }
+    
+    @Benchmark
+    public String connectionsWrite() {
+        return connectionsConverter.convertToDatabaseColumn(connections);
+    }
+    
+    @Benchmark
+    public List<WorkflowConnection> connectionsRead() {
+        return connectionsConverter.convertToEntityAttribute(connectionsJson);
+    }
+}
@@ -0,0 +1,58 @@
+package com.aidragdrop.service;
+
+import com.aidragdrop.benchmark.BenchmarkFixtures;
+import com.aidragdrop.entity.ApiConfig;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
+import org.springframework.web.reactive.function.client.WebClient;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+// 按认证类型设置请求头；builderOnly 为不设置认证的基线，两者之差即认证头的构造开销
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AuthHeadersBenchmark {
+    
+    @Param({"bearer", "basic", "apiKey"})
+    private String authType;
+    
+    private ModuleClientRegistry clientRegistry;
+    private ApiConfig.Auth auth;
+    
+    @Setup
+    public void setUp() {
+        clientRegistry = new ModuleClientRegistry(WebClient.builder(), new ReactorClientHttpConnector());
+        Map<String, String> credentials = switch (authType) {
+            case "bearer" -> Map.of("token", "sk-benchmark-0123456789abcdef");
+            case "basic" -> Map.of("username", "benchmark", "password", "p@ssw0rd-0123456789");
+            default -> Map.of("key", "X-API-Key", "value", "ak-benchmark-0123456789abcdef");
+        };
+        auth = BenchmarkFixtures.auth(authType, credentials);
+    }
+    
+    @Benchmark
+    public WebClient.Builder builderOnly() {
+        return WebClient.builder();
+    }
+    
+    @Benchmark
+    public WebClient.Builder setAuthHeaders() {
+        WebClient.Builder builder = WebClient.builder();
+        clientRegistry.setAuthHeaders(builder, auth);
+        return builder;
+    }
+}
@@ -0,0 +1,77 @@
+package com.aidragdrop.service;
+
+import com.aidragdrop.benchmark.BenchmarkFixtures;
+import com.aidragdrop.dto.TaskDTO;
+import com.aidragdrop.dto.WorkflowDTO;
+import com.aidragdrop.entity.JsonSupport;
+import com.aidragdrop.entity.Task;
+import com.aidragdrop.entity.Workflow;
+import com.aidragdrop.repository.TaskSummary;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import java.util.concurrent.TimeUnit;
+
+// 实体到 DTO 的映射，以及映射后写出 HTTP 响应体的序列化（与控制器返回的路径一致）
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DtoMappingBenchmark {
+    
+    @Param({"8", "64"})
+    private int nodeCount;
+    
+    private WorkflowService workflowService;
+    private TaskService taskService;
+    private Workflow workflow;
+    private Task task;
+    private TaskSummary summary;
+    
+    @Setup
+    public void setUp() throws JsonProcessingException {
+        // toDTO 不访问依赖
+        workflowService = new WorkflowService(null, null, null);
+        taskService = new TaskService(null, null, null, null, null, null);
+        workflow = BenchmarkFixtures.workflow(nodeCount, 4);
+        task = BenchmarkFixtures.completedTask(JsonSupport.MAPPER.writeValueAsString(BenchmarkFixtures.moduleResult()));
+        summary = new TaskSummary(task.getId(), task.getWorkflowId(), task.getStatus(),
+                task.getStartTime(), task.getEndTime(), task.getCreatedAt());
+    }
+    
+    @Benchmark
+    public WorkflowDTO workflowToDTO() {
+        return workflowService.toDTO(workflow);
+    }
+    
+    @Benchmark
+    public byte[] workflowToResponse() throws JsonProcessingException {
+        return JsonSupport.MAPPER.writeValueAsBytes(workflowService.toDTO(workflow));
+    }
+    
+    @Benchmark
+    public TaskDTO taskToDTO() {
+        return taskService.toDTO(task);
+    }
+    
+    @Benchmark
+    public byte[] taskToResponse() throws JsonProcessingException {
+        return JsonSupport.MAPPER.writeValueAsBytes(taskService.toDTO(task));
+    }
+    
+    @Benchmark
+    public TaskDTO taskSummaryToDTO() {
+        return taskService.toDTO(summary);
+    }
+}
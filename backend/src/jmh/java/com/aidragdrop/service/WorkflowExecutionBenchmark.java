@@ -0,0 +1,146 @@
+package com.aidragdrop.service;
+
+import com.aidragdrop.benchmark.BenchmarkFixtures;
+import com.aidragdrop.benchmark.StubUpstream;
+import com.aidragdrop.entity.Task;
+import com.aidragdrop.entity.Workflow;
+import com.aidragdrop.repository.TaskRepository;
+import com.aidragdrop.repository.WorkflowRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+import org.springframework.data.redis.core.ReactiveStringRedisTemplate;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.mockito.Mockito.withSettings;
+
+// 执行引擎端到端: 每个节点解析输入、调用本地模拟上游并合并结果
+// execute 包含任务状态迁移、日志、事件和时间线；executeQuietly 为批量执行的单条记录路径
+// 数据库访问由桩代替，测量结果为引擎自身开销加本地回环 HTTP 往返
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class WorkflowExecutionBenchmark {
+    
+    @Param({"4", "16"})
+    private int nodeCount;
+    
+    private StubUpstream upstream;
+    private Scheduler blockingScheduler;
+    private WorkflowExecutionService executionService;
+    private CompiledWorkflowPlan plan;
+    private String workflowId;
+    private Map<String, Object> input;
+    
+    @Setup
+    public void setUp() {
+        upstream = StubUpstream.start();
+        blockingScheduler = Schedulers.newBoundedElastic(64, 10_000, "benchmark-blocking");
+        
+        Workflow workflow = BenchmarkFixtures.workflow(nodeCount, 4);
+        workflowId = workflow.getId();
+        ModuleNearCache moduleNearCache = new ModuleNearCache(null, 10_000, 3600);
+        for (int i = 0; i < 4; i++) {
+            String moduleId = BenchmarkFixtures.moduleId(i);
+            moduleNearCache.getCache().put(moduleId, BenchmarkFixtures.module(moduleId, upstream.url()));
+        }
+        // 只做桩，不记录调用，避免长时间运行时占满内存
+        WorkflowRepository workflowRepository = mock(WorkflowRepository.class, withSettings().stubOnly());
+        when(workflowRepository.findUpdatedAtById(workflowId)).thenReturn(Optional.of(workflow.getUpdatedAt()));
+        when(workflowRepository.findById(workflowId)).thenReturn(Optional.of(workflow));
+        WorkflowPlanCache planCache = new WorkflowPlanCache(workflowRepository, moduleNearCache,
+                new ModuleClientRegistry(WebClient.builder(), new ReactorClientHttpConnector()), 1000, 3600);
+        plan = planCache.getPlan(workflowId);
+        
+        TaskRepository taskRepository = mock(TaskRepository.class, withSettings().stubOnly());
+        when(taskRepository.markStarted(any(), any(), any(), any())).thenReturn(1);
+        when(taskRepository.markFinished(any(), any(), any(), any(), any(), any(), any())).thenReturn(1);
+        // 不启用 Redis，事件和限流都只在本进程内
+        StaticListableBeanFactory noRedis = new StaticListableBeanFactory();
+        TaskEventBroker eventBroker = new TaskEventBroker(noRedis.getBeanProvider(ReactiveStringRedisTemplate.class),
+                noRedis.getBeanProvider(RedisMessageListenerContainer.class));
+        ReflectionTestUtils.setField(eventBroker, "replaySize", 1000);
+        ReflectionTestUtils.setField(eventBroker, "subscriberBuffer", 256);
+        // 与 application.yml 的默认值一致
+        ModuleRateLimiter rateLimiter = new ModuleRateLimiter(noRedis.getBeanProvider(ReactiveStringRedisTemplate.class));
+        ReflectionTestUtils.setField(rateLimiter, "executorMode", "platform");
+        ModuleResilience resilience = new ModuleResilience();
+        ReflectionTestUtils.setField(resilience, "breakerEnabled", true);
+        ReflectionTestUtils.setField(resilience, "failureRateThreshold", 50);
+        ReflectionTestUtils.setField(resilience, "minimumCalls", 20);
+        ReflectionTestUtils.setField(resilience, "windowSize", 50);
+        ReflectionTestUtils.setField(resilience, "openMs", 30_000L);
+        ReflectionTestUtils.setField(resilience, "latencyWindow", 200);
+        ReflectionTestUtils.setField(resilience, "hedgeMinSamples", 20);
+        ModuleBatcher batcher = new ModuleBatcher(rateLimiter, resilience);
+        ReflectionTestUtils.setField(batcher, "apiTimeout", 30_000L);
+        
+        executionService = new WorkflowExecutionService(
+                taskRepository,
+                mock(TaskLogWriter.class, withSettings().stubOnly()),
+                planCache,
+                blockingScheduler,
+                rateLimiter,
+                resilience,
+                batcher,
+                new NodeResultCache(null),
+                eventBroker,
+                new WorkflowMetrics(new SimpleMeterRegistry()),
+                mock(TaskCheckpointStore.class, withSettings().stubOnly()));
+        ReflectionTestUtils.setField(executionService, "apiTimeout", 30_000L);
+        ReflectionTestUtils.setField(executionService, "maxAggregateChars", 1_048_576);
+        ReflectionTestUtils.setField(executionService, "maxAggregateChunks", 10_000);
+        
+        input = Map.of("prompt", "请总结以下内容", "text", "内容".repeat(200));
+    }
+    
+    @TearDown
+    public void tearDown() {
+        upstream.close();
+        blockingScheduler.dispose();
+    }
+    
+    @Benchmark
+    public Task execute() {
+        Task task = new Task();
+        task.setId(UUID.randomUUID().toString());
+        task.setWorkflowId(workflowId);
+        task.setStatus(Task.TaskStatus.PENDING);
+        executionService.execute(task, input).block();
+        if (task.getStatus() != Task.TaskStatus.COMPLETED) {
+            throw new IllegalStateException("工作流执行失败: " + task.getError());
+        }
+        return task;
+    }
+    
+    @Benchmark
+    public Object executeQuietly() {
+        return executionService.executeQuietly("benchmark-job", plan, input).block();
+    }
+}
@@ -0,0 +1,52 @@
+package com.aidragdrop.service;
+
+import com.aidragdrop.benchmark.BenchmarkFixtures;
+import com.aidragdrop.entity.Workflow;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
+import org.springframework.web.reactive.function.client.WebClient;
+import java.util.concurrent.TimeUnit;
+
+// 节点解析: 构建依赖图、拓扑排序、逐节点解析模块和 WebClient，即执行计划缓存未命中时的编译开销
+// 模块和 WebClient 均已在缓存中，与稳定运行时一致
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class WorkflowPlanBenchmark {
+    
+    @Param({"8", "64", "256"})
+    private int nodeCount;
+    
+    private WorkflowPlanCache planCache;
+    private Workflow workflow;
+    
+    @Setup
+    public void setUp() {
+        ModuleNearCache moduleNearCache = new ModuleNearCache(null, 10_000, 3600);
+        for (int i = 0; i < 16; i++) {
+            String moduleId = BenchmarkFixtures.moduleId(i);
+            moduleNearCache.getCache().put(moduleId, BenchmarkFixtures.module(moduleId, "http://127.0.0.1:8080/echo"));
+        }
+        planCache = new WorkflowPlanCache(null, moduleNearCache,
+                new ModuleClientRegistry(WebClient.builder(), new ReactorClientHttpConnector()), 1000, 3600);
+        workflow = BenchmarkFixtures.workflow(nodeCount, 16);
+    }
+    
+    @Benchmark
+    public CompiledWorkflowPlan compile() {
+        return planCache.compile(workflow);
+    }
+}
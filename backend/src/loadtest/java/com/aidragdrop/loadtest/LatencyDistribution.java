@@ -0,0 +1,58 @@
+package com.aidragdrop.loadtest;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+// 模拟上游的响应耗时分布（毫秒），格式:
+//   fixed:200                 固定 200ms
+//   uniform:50-400            50 ~ 400ms 均匀分布
+//   exponential:200           均值 200ms 的指数分布
+//   lognormal:200,0.5         中位数 200ms、sigma 0.5 的对数正态分布（接近真实模型接口的长尾）
+public final class LatencyDistribution {
+    
+    private final String spec;
+    private final String type;
+    private final double a;
+    private final double b;
+    
+    private LatencyDistribution(String spec, String type, double a, double b) {
+        this.spec = spec;
+        this.type = type;
+        this.a = a;
+        this.b = b;
+    }
+    
+    public static LatencyDistribution parse(String spec) {
+        String[] parts = spec.split(":", 2);
+        if (parts.length != 2) {
+            throw new IllegalArgumentException("无效的耗时分布: " + spec);
+        }
+        String type = parts[0].trim();
+        String[] args = parts[1].split("[-,]");
+        try {
+            return switch (type) {
+                case "fixed", "exponential" -> new LatencyDistribution(spec, type, Double.parseDouble(args[0]), 0);
+                case "uniform", "lognormal" -> new LatencyDistribution(spec, type,
+                        Double.parseDouble(args[0]), Double.parseDouble(args[1]));
+                default -> throw new IllegalArgumentException("未知的耗时分布类型: " + type);
+            };
+        } catch (NumberFormatException | ArrayIndexOutOfBoundsException e) {
+            throw new IllegalArgumentException("无效的耗时分布: " + spec, e);
+        }
+    }
+    
+    public long sampleMillis() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        double value = switch (type) {
+            case "fixed" -> a;
+            case "uniform" -> a + random.nextDouble() * (b - a);
+            case "exponential" -> -a * Math.log(1 - random.nextDouble());
+            default -> a * Math.exp(b * random.nextGaussian());
+        };
+        return Math.max(0, Math.round(value));
+    }
+    
+    @Override
+    public String toString() {
+        return spec;
+    }
+}
@@ -0,0 +1,324 @@
+package com.aidragdrop.loadtest;
+
+import com.aidragdrop.AiDragDropPlatformApplication;
+import com.aidragdrop.dto.AIModuleDTO;
+import com.aidragdrop.dto.ProjectDTO;
+import com.aidragdrop.dto.TaskDTO;
+import com.aidragdrop.dto.TaskEventDTO;
+import com.aidragdrop.dto.WorkflowDTO;
+import com.aidragdrop.entity.JsonSupport;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
+import org.springframework.http.codec.ServerSentEvent;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
+import reactor.netty.resources.LoopResources;
+import java.nio.file.Files;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+// 端到端压测: 启动模拟模型接口和后端（H2 内存库、standalone 无 Redis），按固定速率开环提交
+// POST /workflows/{id}/execute，经 /tasks/{id}/events 等待任务结束，报告吞吐、端到端耗时分位数和执行器饱和度
+// 耗时从计划的提交时刻算起，系统跟不上时排队等待的时间也计入（避免协调遗漏）
+// 用法: mvn -P loadtest verify -Dloadtest.args="rate=50 duration=60 modes=platform,virtual"
+public final class LoadTestHarness {
+    
+    private static final Set<String> TERMINAL_STATUSES = Set.of("COMPLETED", "FAILED", "CANCELLED");
+    private static final ParameterizedTypeReference<ServerSentEvent<TaskEventDTO>> TASK_EVENTS =
+            new ParameterizedTypeReference<>() { };
+    private static final long MAX_TRACKED_MICROS = TimeUnit.MINUTES.toMicros(30);
+    
+    private final LoadTestOptions options;
+    private final MockModelServer upstream;
+    private final WebClient client;
+    
+    private LoadTestHarness(LoadTestOptions options, MockModelServer upstream) {
+        this.options = options;
+        this.upstream = upstream;
+        // 开环压测下未完成的请求数不设上限，连接池同样不能成为瓶颈；使用独立的事件循环，不随后端关闭而释放
+        ConnectionProvider connections = ConnectionProvider.builder("loadtest")
+                .maxConnections(20_000)
+                .pendingAcquireMaxCount(-1)
+                .build();
+        this.client = WebClient.builder()
+                .clientConnector(new ReactorClientHttpConnector(HttpClient.create(connections)
+                        .runOn(LoopResources.create("loadtest-client"))))
+                .codecs(codecs -> codecs.defaultCodecs().maxInMemorySize(16 * 1024 * 1024))
+                .build();
+    }
+    
+    public static void main(String[] args) throws Exception {
+        LoadTestOptions options = LoadTestOptions.parse(args);
+        List<Map<String, Object>> results = new ArrayList<>();
+        try (MockModelServer upstream = MockModelServer.start(options.latency, options.errorRate, options.chunks)) {
+            LoadTestHarness harness = new LoadTestHarness(options, upstream);
+            for (String mode : options.modes) {
+                results.add(harness.run(mode.trim()));
+            }
+        }
+        
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put("options", options.toMap());
+        report.put("results", results);
+        Files.createDirectories(options.report.toAbsolutePath().getParent());
+        JsonSupport.MAPPER.writerWithDefaultPrettyPrinter().writeValue(options.report.toFile(), report);
+        printSummary(results);
+        System.out.println("报告已写入 " + options.report.toAbsolutePath());
+        System.exit(0);
+    }
+    
+    private Map<String, Object> run(String mode) throws Exception {
+        System.out.printf("%n=== 执行模式 %s: %.1f 次/秒, 预热 %ds, 测量 %ds ===%n",
+                mode, options.rate, options.warmup.toSeconds(), options.duration.toSeconds());
+        try (ConfigurableApplicationContext context = startBackend(mode);
+             SaturationSampler sampler = new SaturationSampler(
+                     context.getBean(MeterRegistry.class), options.workerConcurrency)) {
+            String api = "http://127.0.0.1:" + ((WebServerApplicationContext) context).getWebServer().getPort() + "/api";
+            String workflowId = createWorkflow(api);
+            long upstreamRequestsBefore = upstream.getRequests();
+            
+            Histogram endToEnd = new ConcurrentHistogram(MAX_TRACKED_MICROS, 3);
+            Histogram submit = new ConcurrentHistogram(MAX_TRACKED_MICROS, 3);
+            LongAdder completed = new LongAdder();
+            LongAdder failed = new LongAdder();
+            LongAdder timedOut = new LongAdder();
+            LongAdder errors = new LongAdder();
+            // 测量窗口内结束的任务数（不论何时提交），用于计算吞吐
+            LongAdder finishedInWindow = new LongAdder();
+            AtomicLong outstanding = new AtomicLong();
+            
+            long start = System.nanoTime();
+            long measureStart = start + options.warmup.toNanos();
+            long measureEnd = measureStart + options.duration.toNanos();
+            double meanIntervalNanos = TimeUnit.SECONDS.toNanos(1) / options.rate;
+            long intended = start;
+            long sent = 0;
+            long maxLag = 0;
+            boolean recordingStarted = false;
+            while (intended < measureEnd) {
+                long delay = intended - System.nanoTime();
+                if (delay > 0) {
+                    LockSupport.parkNanos(delay);
+                }
+                maxLag = Math.max(maxLag, System.nanoTime() - intended);
+                if (!recordingStarted && intended >= measureStart) {
+                    sampler.startRecording();
+                    recordingStarted = true;
+                }
+                long scheduledAt = intended;
+                boolean measured = scheduledAt >= measureStart;
+                outstanding.incrementAndGet();
+                sent++;
+                client.post()
+                        .uri(api + "/workflows/{id}/execute", workflowId)
+                        .bodyValue(Map.of("prompt", "请总结以下内容", "text", "压测输入。".repeat(50)))
+                        .retrieve()
+                        .bodyToMono(TaskDTO.class)
+                        .doOnNext(task -> {
+                            if (measured) {
+                                submit.recordValue(micros(System.nanoTime() - scheduledAt));
+                            }
+                        })
+                        .flatMap(task -> client.get()
+                                .uri(api + "/tasks/{id}/events", task.getId())
+                                .retrieve()
+                                .bodyToFlux(TASK_EVENTS)
+                                .mapNotNull(ServerSentEvent::data)
+                                .filter(event -> event.getType() == TaskEventDTO.EventType.STATUS
+                                        && TERMINAL_STATUSES.contains(event.getStatus()))
+                                .next())
+                        .timeout(remaining(scheduledAt))
+                        .doFinally(signal -> outstanding.decrementAndGet())
+                        .subscribe(event -> {
+                            long now = System.nanoTime();
+                            if (now >= measureStart && now < measureEnd) {
+                                finishedInWindow.increment();
+                            }
+                            if (!measured) {
+                                return;
+                            }
+                            endToEnd.recordValue(Math.min(MAX_TRACKED_MICROS, micros(now - scheduledAt)));
+                            if ("COMPLETED".equals(event.getStatus())) {
+                                completed.increment();
+                            } else {
+                                failed.increment();
+                            }
+                        }, error -> {
+                            if (!measured) {
+                                return;
+                            }
+                            if (error instanceof TimeoutException) {
+                                timedOut.increment();
+                            } else {
+                                errors.increment();
+                            }
+                        });
+                intended += "constant".equals(options.arrival)
+                        ? (long) meanIntervalNanos
+                        : (long) (-meanIntervalNanos * Math.log(1 - ThreadLocalRandom.current().nextDouble()));
+            }
+            
+            long drainDeadline = System.nanoTime() + options.drain.toNanos();
+            while (outstanding.get() > 0 && System.nanoTime() < drainDeadline) {
+                Thread.sleep(100);
+            }
+            
+            Map<String, Object> result = new LinkedHashMap<>();
+            result.put("mode", mode);
+            result.put("offeredRate", options.rate);
+            result.put("sent", sent);
+            result.put("throughput", round(finishedInWindow.sum() / (double) options.duration.toSeconds()));
+            result.put("completed", completed.sum());
+            result.put("failed", failed.sum());
+            result.put("timedOut", timedOut.sum());
+            result.put("errors", errors.sum());
+            result.put("unfinished", outstanding.get());
+            result.put("endToEndMs", percentiles(endToEnd));
+            result.put("submitMs", percentiles(submit));
+            result.put("saturation", sampler.summary());
+            result.put("upstreamRequests", upstream.getRequests() - upstreamRequestsBefore);
+            // 发送线程落后于计划时刻的最大值，过大说明压测端本身不足以产生目标速率
+            result.put("senderMaxLagMs", round(maxLag / 1e6));
+            return result;
+        }
+    }
+    
+    private ConfigurableApplicationContext startBackend(String mode) {
+        Map<String, Object> properties = new LinkedHashMap<>();
+        properties.put("server.port", 0);
+        properties.put("server.tomcat.mbeanregistry.enabled", true);
+        properties.put("spring.datasource.url", "jdbc:h2:mem:loadtest-" + mode + ";MODE=MySQL;DB_CLOSE_DELAY=-1");
+        properties.put("spring.datasource.driver-class-name", "org.h2.Driver");
+        properties.put("spring.datasource.username", "sa");
+        properties.put("spring.datasource.password", "");
+        properties.put("spring.jpa.hibernate.ddl-auto", "create-drop");
+        properties.put("spring.jpa.show-sql", false);
+        properties.put("spring.jpa.properties.hibernate.dialect", "org.hibernate.dialect.H2Dialect");
+        properties.put("spring.main.banner-mode", "off");
+        properties.put("logging.level.root", "WARN");
+        properties.put("logging.level.com.aidragdrop", "WARN");
+        properties.put("logging.file.name", "target/loadtest-backend.log");
+        properties.put("app.executor.mode", mode);
+        properties.put("app.queue.worker-concurrency", options.workerConcurrency);
+        properties.put("app.queue.poll-timeout", 200);
+        properties.putAll(options.appProperties);
+        // 以命令行参数传入，优先于 application.yml
+        String[] args = properties.entrySet().stream()
+                .map(entry -> "--" + entry.getKey() + "=" + entry.getValue())
+                .toArray(String[]::new);
+        return new SpringApplicationBuilder(AiDragDropPlatformApplication.class)
+                .profiles("standalone")
+                .run(args);
+    }
+    
+    private String createWorkflow(String api) {
+        ProjectDTO project = new ProjectDTO();
+        project.setName("压测项目");
+        String projectId = client.post().uri(api + "/projects").bodyValue(project)
+                .retrieve().bodyToMono(ProjectDTO.class).block().getId();
+        
+        AIModuleDTO module = new AIModuleDTO();
+        module.setName("模拟模型");
+        module.setType("llm");
+        module.setCategory("basic");
+        module.setVersion("1.0.0");
+        Map<String, Object> apiConfig = new LinkedHashMap<>();
+        apiConfig.put("method", "POST");
+        apiConfig.put("timeout", options.timeout.toMillis());
+        if (options.stream) {
+            apiConfig.put("url", upstream.baseUrl() + MockModelServer.STREAM_PATH);
+            apiConfig.put("responseMode", "sse");
+            apiConfig.put("streamTextPath", "choices.0.delta.content");
+        } else {
+            apiConfig.put("url", upstream.baseUrl() + MockModelServer.COMPLETIONS_PATH);
+        }
+        module.setApiConfig(apiConfig);
+        String moduleId = client.post().uri(api + "/modules").bodyValue(module)
+                .retrieve().bodyToMono(AIModuleDTO.class).block().getId();
+        
+        List<Map<String, Object>> nodes = new ArrayList<>();
+        List<Map<String, Object>> connections = new ArrayList<>();
+        for (int i = 0; i < options.nodes; i++) {
+            nodes.add(Map.of("id", "node-" + i, "moduleId", moduleId, "config", Map.of()));
+            if (i > 0) {
+                connections.add(Map.of("fromNodeId", "node-" + (i - 1), "toNodeId", "node-" + i));
+            }
+        }
+        WorkflowDTO workflow = new WorkflowDTO();
+        workflow.setName("压测工作流");
+        workflow.setProjectId(projectId);
+        workflow.setNodes(nodes);
+        workflow.setConnections(connections);
+        return client.post().uri(api + "/workflows").bodyValue(workflow)
+                .retrieve().bodyToMono(WorkflowDTO.class).block().getId();
+    }
+    
+    private static Map<String, Object> percentiles(Histogram histogram) {
+        Map<String, Object> percentiles = new LinkedHashMap<>();
+        percentiles.put("count", histogram.getTotalCount());
+        if (histogram.getTotalCount() == 0) {
+            return percentiles;
+        }
+        percentiles.put("p50", round(histogram.getValueAtPercentile(50) / 1000.0));
+        percentiles.put("p90", round(histogram.getValueAtPercentile(90) / 1000.0));
+        percentiles.put("p99", round(histogram.getValueAtPercentile(99) / 1000.0));
+        percentiles.put("p999", round(histogram.getValueAtPercentile(99.9) / 1000.0));
+        percentiles.put("max", round(histogram.getMaxValue() / 1000.0));
+        return percentiles;
+    }
+    
+    @SuppressWarnings("unchecked")
+    private static void printSummary(List<Map<String, Object>> results) {
+        System.out.printf("%n%-10s %10s %10s %8s %8s %8s %10s %10s %10s %10s %12s %10s%n",
+                "mode", "offered/s", "done/s", "ok", "failed", "timeout", "p50 ms", "p99 ms", "max ms",
+                "submit p99", "worker max", "queue max");
+        for (Map<String, Object> result : results) {
+            Map<String, Object> endToEnd = (Map<String, Object>) result.get("endToEndMs");
+            Map<String, Object> submit = (Map<String, Object>) result.get("submitMs");
+            Map<String, Object> saturation = (Map<String, Object>) result.get("saturation");
+            System.out.printf("%-10s %10s %10s %8s %8s %8s %10s %10s %10s %10s %12s %10s%n",
+                    result.get("mode"), result.get("offeredRate"), result.get("throughput"),
+                    result.get("completed"), result.get("failed"),
+                    (long) result.get("timedOut") + (long) result.get("errors") + (long) result.get("unfinished"),
+                    endToEnd.getOrDefault("p50", "-"), endToEnd.getOrDefault("p99", "-"),
+                    endToEnd.getOrDefault("max", "-"), submit.getOrDefault("p99", "-"),
+                    max(saturation, "workerUtilization"), max(saturation, "tasksQueued"));
+        }
+    }
+    
+    @SuppressWarnings("unchecked")
+    private static Object max(Map<String, Object> saturation, String name) {
+        Object series = saturation.get(name);
+        return series != null ? ((Map<String, Object>) series).get("max") : "-";
+    }
+    
+    private Duration remaining(long scheduledAt) {
+        Duration remaining = options.timeout.minusNanos(System.nanoTime() - scheduledAt);
+        return remaining.isNegative() ? Duration.ZERO : remaining;
+    }
+    
+    private static long micros(long nanos) {
+        return Math.max(0, TimeUnit.NANOSECONDS.toMicros(nanos));
+    }
+    
+    private static double round(double value) {
+        return Math.round(value * 100) / 100.0;
+    }
+}
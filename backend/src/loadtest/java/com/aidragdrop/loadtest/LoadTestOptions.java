@@ -0,0 +1,89 @@
+package com.aidragdrop.loadtest;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+// 压测参数，命令行以 key=value 传入；以 app. / spring. / server. 开头的参数原样传给后端
+public final class LoadTestOptions {
+    
+    // 每秒到达的工作流执行请求数（开环，不受响应速度影响）
+    final double rate;
+    // constant: 等间隔到达; poisson: 指数分布的到达间隔
+    final String arrival;
+    final Duration warmup;
+    final Duration duration;
+    // 单个请求从计划发出到任务结束的最长等待时间，超过记为超时
+    final Duration timeout;
+    // 发送结束后等待未完成请求的最长时间
+    final Duration drain;
+    // 工作流为串行的模块节点链
+    final int nodes;
+    final LatencyDistribution latency;
+    final double errorRate;
+    final boolean stream;
+    final int chunks;
+    // 依次对比的执行模式: platform / virtual
+    final List<String> modes;
+    final int workerConcurrency;
+    final Path report;
+    final Map<String, String> appProperties = new LinkedHashMap<>();
+    
+    private LoadTestOptions(Map<String, String> args) {
+        this.rate = Double.parseDouble(args.getOrDefault("rate", "20"));
+        this.arrival = args.getOrDefault("arrival", "poisson");
+        this.warmup = Duration.ofSeconds(Long.parseLong(args.getOrDefault("warmup", "10")));
+        this.duration = Duration.ofSeconds(Long.parseLong(args.getOrDefault("duration", "60")));
+        this.timeout = Duration.ofSeconds(Long.parseLong(args.getOrDefault("timeout", "120")));
+        this.drain = Duration.ofSeconds(Long.parseLong(args.getOrDefault("drain", "60")));
+        this.nodes = Integer.parseInt(args.getOrDefault("nodes", "3"));
+        this.latency = LatencyDistribution.parse(args.getOrDefault("latency", "lognormal:200,0.5"));
+        this.errorRate = Double.parseDouble(args.getOrDefault("errorRate", "0"));
+        this.stream = Boolean.parseBoolean(args.getOrDefault("stream", "false"));
+        this.chunks = Integer.parseInt(args.getOrDefault("chunks", "20"));
+        this.modes = List.of(args.getOrDefault("modes", "platform").split(","));
+        this.workerConcurrency = Integer.parseInt(args.getOrDefault("workerConcurrency", "10"));
+        this.report = Path.of(args.getOrDefault("report", "target/loadtest-report.json"));
+        if (rate <= 0 || nodes <= 0 || chunks <= 0 || workerConcurrency <= 0) {
+            throw new IllegalArgumentException("rate、nodes、chunks、workerConcurrency 必须大于 0");
+        }
+        if (!"constant".equals(arrival) && !"poisson".equals(arrival)) {
+            throw new IllegalArgumentException("arrival 只能为 constant 或 poisson: " + arrival);
+        }
+        args.forEach((key, value) -> {
+            if (key.startsWith("app.") || key.startsWith("spring.") || key.startsWith("server.")) {
+                appProperties.put(key, value);
+            }
+        });
+    }
+    
+    public static LoadTestOptions parse(String[] args) {
+        Map<String, String> values = new LinkedHashMap<>();
+        for (String arg : args) {
+            int separator = arg.indexOf('=');
+            if (separator <= 0) {
+                throw new IllegalArgumentException("参数格式应为 key=value: " + arg);
+            }
+            values.put(arg.substring(0, separator), arg.substring(separator + 1));
+        }
+        return new LoadTestOptions(values);
+    }
+    
+    Map<String, Object> toMap() {
+        Map<String, Object> map = new LinkedHashMap<>();
+        map.put("rate", rate);
+        map.put("arrival", arrival);
+        map.put("warmupSeconds", warmup.toSeconds());
+        map.put("durationSeconds", duration.toSeconds());
+        map.put("nodes", nodes);
+        map.put("latency", latency.toString());
+        map.put("errorRate", errorRate);
+        map.put("stream", stream);
+        map.put("chunks", chunks);
+        map.put("workerConcurrency", workerConcurrency);
+        map.put("appProperties", appProperties);
+        return map;
+    }
+}
@@ -0,0 +1,129 @@
+package com.aidragdrop.loadtest;
+
+import com.aidragdrop.entity.JsonSupport;
+import io.netty.handler.codec.http.HttpHeaderNames;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.netty.DisposableServer;
+import reactor.netty.http.server.HttpServer;
+import reactor.netty.http.server.HttpServerResponse;
+import reactor.netty.resources.LoopResources;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+
+// 本地模拟的模型接口，响应格式与 OpenAI Chat Completions 一致
+//   POST /v1/chat/completions         按耗时分布延迟后返回完整 JSON
+//   POST /v1/chat/completions/stream  以 SSE 分片返回，分片均匀分布在采样的耗时内
+// 按 errorRate 的概率返回 503（错误同样先等待采样的耗时）
+public final class MockModelServer implements AutoCloseable {
+    
+    public static final String COMPLETIONS_PATH = "/v1/chat/completions";
+    public static final String STREAM_PATH = "/v1/chat/completions/stream";
+    
+    // 独立的事件循环: 后端关闭时会释放 Reactor Netty 的全局资源，模拟接口需跨多轮压测存活
+    private final LoopResources loops = LoopResources.create("mock-upstream");
+    private final DisposableServer server;
+    private final LongAdder requests = new LongAdder();
+    private final LongAdder errors = new LongAdder();
+    
+    private MockModelServer(LatencyDistribution latency, double errorRate, int chunks, String content) {
+        byte[] completion = json(Map.of(
+                "id", "chatcmpl-mock",
+                "model", "mock-model",
+                "choices", List.of(Map.of(
+                        "index", 0,
+                        "finish_reason", "stop",
+                        "message", Map.of("role", "assistant", "content", content))),
+                "usage", Map.of("prompt_tokens", 200, "completion_tokens", content.length(), "total_tokens",
+                        200 + content.length())));
+        List<String> streamEvents = new ArrayList<>();
+        int chunkSize = Math.max(1, content.length() / chunks);
+        for (int i = 0; i < chunks; i++) {
+            int end = i == chunks - 1 ? content.length() : Math.min(content.length(), (i + 1) * chunkSize);
+            String delta = content.substring(Math.min(end, i * chunkSize), end);
+            streamEvents.add("data: " + new String(json(Map.of("choices", List.of(Map.of(
+                    "index", 0,
+                    "delta", Map.of("content", delta))))), StandardCharsets.UTF_8) + "\n\n");
+        }
+        streamEvents.add("data: [DONE]\n\n");
+        this.server = HttpServer.create()
+                .runOn(loops)
+                .host("127.0.0.1")
+                .port(0)
+                .route(routes -> routes
+                        .post(COMPLETIONS_PATH, (request, response) -> request.receive().then()
+                                .then(Mono.defer(() -> {
+                                    long delay = latency.sampleMillis();
+                                    return Mono.delay(Duration.ofMillis(delay))
+                                            .then(failed(errorRate)
+                                                    ? error(response)
+                                                    : response.header(HttpHeaderNames.CONTENT_TYPE, "application/json")
+                                                            .sendByteArray(Mono.just(completion)).then());
+                                })))
+                        .post(STREAM_PATH, (request, response) -> request.receive().then()
+                                .then(Mono.defer(() -> {
+                                    long delay = latency.sampleMillis();
+                                    if (failed(errorRate)) {
+                                        return Mono.delay(Duration.ofMillis(delay)).then(error(response));
+                                    }
+                                    Duration interval = Duration.ofMillis(Math.max(1, delay / streamEvents.size()));
+                                    Flux<String> events = Flux.fromIterable(streamEvents).delayElements(interval);
+                                    return response.header(HttpHeaderNames.CONTENT_TYPE, "text/event-stream")
+                                            .sendString(events, StandardCharsets.UTF_8)
+                                            .then();
+                                }))))
+                .bindNow();
+    }
+    
+    public static MockModelServer start(LatencyDistribution latency, double errorRate, int chunks) {
+        return new MockModelServer(latency, errorRate, chunks, "模拟的模型输出内容。".repeat(40));
+    }
+    
+    private boolean failed(double errorRate) {
+        requests.increment();
+        if (errorRate > 0 && ThreadLocalRandom.current().nextDouble() < errorRate) {
+            errors.increment();
+            return true;
+        }
+        return false;
+    }
+    
+    private static Mono<Void> error(HttpServerResponse response) {
+        return response.status(HttpResponseStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaderNames.CONTENT_TYPE, "application/json")
+                .sendString(Mono.just("{\"error\":{\"message\":\"mock upstream overloaded\"}}"))
+                .then();
+    }
+    
+    private static byte[] json(Object value) {
+        try {
+            return JsonSupport.MAPPER.writeValueAsBytes(value);
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+    
+    public String baseUrl() {
+        return "http://127.0.0.1:" + server.port();
+    }
+    
+    public long getRequests() {
+        return requests.sum();
+    }
+    
+    public long getErrors() {
+        return errors.sum();
+    }
+    
+    @Override
+    public void close() {
+        server.disposeNow();
+        loops.dispose();
+    }
+}
@@ -0,0 +1,91 @@
+package com.aidragdrop.loadtest;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+// 每秒从后端的指标注册表采样执行器饱和度: 任务 worker 名额、队列积压、模块限流排队、Tomcat 线程、CPU
+final class SaturationSampler implements AutoCloseable {
+    
+    private final MeterRegistry registry;
+    private final int workerConcurrency;
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "loadtest-sampler");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final Map<String, Series> series = new LinkedHashMap<>();
+    private volatile boolean recording;
+    
+    SaturationSampler(MeterRegistry registry, int workerConcurrency) {
+        this.registry = registry;
+        this.workerConcurrency = workerConcurrency;
+        scheduler.scheduleAtFixedRate(this::sample, 1, 1, TimeUnit.SECONDS);
+    }
+    
+    // 预热期间不计入
+    void startRecording() {
+        recording = true;
+    }
+    
+    private synchronized void sample() {
+        if (!recording) {
+            return;
+        }
+        double active = gauge("workflow.tasks.active");
+        record("workerUtilization", Double.isNaN(active) ? Double.NaN : active / workerConcurrency);
+        record("tasksQueued", gauge("workflow.tasks.queued"));
+        record("moduleCallsWaiting", gauge("workflow.module.calls.waiting"));
+        record("moduleCallsActive", gauge("workflow.module.calls.active"));
+        record("taskLogBuffered", gauge("workflow.task.log.buffered"));
+        record("tomcatThreadsBusy", gauge("tomcat.threads.busy"));
+        record("jvmThreadsLive", gauge("jvm.threads.live"));
+        record("processCpuUsage", gauge("process.cpu.usage"));
+    }
+    
+    private double gauge(String name) {
+        Gauge gauge = registry.find(name).gauge();
+        return gauge != null ? gauge.value() : Double.NaN;
+    }
+    
+    private void record(String name, double value) {
+        // 指标不可用时为 NaN 或负数（如未注册 Tomcat MBean）
+        if (!Double.isNaN(value) && value >= 0) {
+            series.computeIfAbsent(name, key -> new Series()).add(value);
+        }
+    }
+    
+    synchronized Map<String, Object> summary() {
+        Map<String, Object> summary = new LinkedHashMap<>();
+        series.forEach((name, values) -> summary.put(name, Map.of(
+                "avg", round(values.sum / values.count),
+                "max", round(values.max))));
+        return summary;
+    }
+    
+    private static double round(double value) {
+        return Math.round(value * 1000) / 1000.0;
+    }
+    
+    @Override
+    public void close() {
+        scheduler.shutdownNow();
+    }
+    
+    private static final class Series {
+        
+        private long count;
+        private double sum;
+        private double max = Double.NEGATIVE_INFINITY;
+        
+        void add(double value) {
+            count++;
+            sum += value;
+            max = Math.max(max, value);
+        }
+    }
+}
@@ -3,11 +3,9 @@ package com.aidragdrop;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.cache.annotation.EnableCaching;
-import org.springframework.scheduling.annotation.EnableAsync;
 
 @SpringBootApplication
 @EnableCaching
-@EnableAsync
 public class AiDragDropPlatformApplication {
 
     public static void main(String[] args) {
@@ -1,28 +1,45 @@
 package com.aidragdrop.config;
 
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.jvm.ExecutorServiceMetrics;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
-import org.springframework.scheduling.annotation.EnableAsync;
-import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
-import java.util.concurrent.Executor;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
 
 @Configuration
-@EnableAsync
 public class AsyncConfig {
     
-    @Value("${app.task-pool-size:10}")
-    private int taskPoolSize;
+    public static final String MODE_VIRTUAL = "virtual";
+    private static final String BLOCKING_SCHEDULER = "workflow-blocking";
+    // 虚拟线程几乎没有创建成本，上限只防止失控；实际并发受数据库连接池限制
+    private static final int VIRTUAL_MAX_THREADS = 10_000;
     
-    @Bean(name = "taskExecutor")
-    public Executor taskExecutor() {
-        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
-        executor.setCorePoolSize(taskPoolSize);
-        executor.setMaxPoolSize(taskPoolSize * 2);
-        executor.setQueueCapacity(100);
-        executor.setThreadNamePrefix("task-executor-");
-        executor.initialize();
-        return executor;
+    // 执行模式，只决定 blockingScheduler 的线程类型和模块默认并发上限（见 ModuleRateLimiter）
+    // platform: 阻塞调用在有界的平台线程池上运行; virtual: 阻塞调用在虚拟线程上运行，线程数上限远高于平台线程
+    @Value("${app.executor.mode:platform}")
+    private String executorMode;
+    
+    // 执行管道中的 JPA 等阻塞调用在此调度器上运行，远程模块调用本身不占用线程
+    // 两种模式都用 ScheduledThreadPoolExecutor: 批量任务的进度定时器需要周期调度，线程池指标（executor_* 标签
+    // name=workflow-blocking）也只能从显式线程池导出，actuator 只自动绑定 ThreadPoolTaskExecutor
+    @Bean(name = "blockingScheduler", destroyMethod = "dispose")
+    public Scheduler blockingScheduler(MeterRegistry registry) {
+        boolean virtual = MODE_VIRTUAL.equals(executorMode);
+        ThreadFactory threadFactory = virtual
+                ? Thread.ofVirtual().name(BLOCKING_SCHEDULER + "-", 0).factory()
+                : Thread.ofPlatform().name(BLOCKING_SCHEDULER + "-", 0).daemon(true).factory();
+        // 平台线程上限和空闲回收与 boundedElastic 一致
+        ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(
+                virtual ? VIRTUAL_MAX_THREADS : Schedulers.DEFAULT_BOUNDED_ELASTIC_SIZE, threadFactory);
+        executor.setKeepAliveTime(60, TimeUnit.SECONDS);
+        executor.allowCoreThreadTimeOut(true);
+        executor.setRemoveOnCancelPolicy(true);
+        return Schedulers.fromExecutorService(
+                ExecutorServiceMetrics.monitor(registry, executor, BLOCKING_SCHEDULER), BLOCKING_SCHEDULER);
     }
 }
-
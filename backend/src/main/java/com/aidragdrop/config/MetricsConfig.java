@@ -0,0 +1,90 @@
+package com.aidragdrop.config;
+
+import com.aidragdrop.service.ModuleBatcher;
+import com.aidragdrop.service.ModuleNearCache;
+import com.aidragdrop.service.ModuleRateLimiter;
+import com.aidragdrop.service.ModuleResilience;
+import com.aidragdrop.service.NodeResultCache;
+import com.aidragdrop.service.TaskCancellationRegistry;
+import com.aidragdrop.service.TaskEventBroker;
+import com.aidragdrop.service.TaskLogWriter;
+import com.aidragdrop.service.TaskQueueWorker;
+import com.aidragdrop.service.WorkflowPlanCache;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.FunctionTimer;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import java.util.concurrent.TimeUnit;
+
+// 执行引擎各组件的状态指标；节点耗时见 WorkflowMetrics，blockingScheduler 线程池指标见 AsyncConfig，Redis 缓存指标由 actuator 自动导出
+@Configuration
+public class MetricsConfig {
+    
+    @Bean
+    public MeterBinder workflowEngineMetrics(
+            TaskQueueWorker queueWorker,
+            TaskLogWriter taskLogWriter,
+            ModuleNearCache moduleNearCache,
+            WorkflowPlanCache planCache,
+            NodeResultCache resultCache,
+            ModuleRateLimiter rateLimiter,
+            ModuleResilience resilience,
+            ModuleBatcher batcher,
+            TaskEventBroker eventBroker,
+            TaskCancellationRegistry cancellationRegistry) {
+        return registry -> {
+            Gauge.builder("workflow.tasks.active", queueWorker, TaskQueueWorker::getInFlightCount)
+                    .description("本实例正在执行的任务数")
+                    .register(registry);
+            Gauge.builder("workflow.tasks.queued", queueWorker, TaskQueueWorker::getQueueDepth)
+                    .description("任务队列中等待执行的任务数")
+                    .register(registry);
+            Gauge.builder("workflow.tasks.cancellable", cancellationRegistry, TaskCancellationRegistry::getActiveCount)
+                    .register(registry);
+            Gauge.builder("workflow.events.channels", eventBroker, TaskEventBroker::getChannelCount)
+                    .register(registry);
+            
+            Gauge.builder("workflow.task.log.buffered", taskLogWriter, TaskLogWriter::getQueueDepth)
+                    .description("等待批量写入的任务日志数")
+                    .register(registry);
+            FunctionTimer.builder("workflow.task.log.flush", taskLogWriter,
+                            TaskLogWriter::getFlushCount, TaskLogWriter::getTotalFlushNanos, TimeUnit.NANOSECONDS)
+                    .description("任务日志批量写库耗时")
+                    .register(registry);
+            FunctionCounter.builder("workflow.task.log.written", taskLogWriter, TaskLogWriter::getFlushedLogs)
+                    .register(registry);
+            FunctionCounter.builder("workflow.task.log.failed", taskLogWriter, TaskLogWriter::getFailedLogs)
+                    .register(registry);
+            FunctionCounter.builder("workflow.task.log.caller.runs", taskLogWriter, TaskLogWriter::getCallerRunsCount)
+                    .description("缓冲区写满后由调用方同步写库的次数")
+                    .register(registry);
+            
+            CaffeineCacheMetrics.monitor(registry, moduleNearCache.getCache(), "module-near-cache");
+            CaffeineCacheMetrics.monitor(registry, planCache.getCache(), "workflow-plans");
+            FunctionCounter.builder("workflow.node.result.cache.gets", resultCache, NodeResultCache::getLocalHits)
+                    .tag("result", "local_hit")
+                    .register(registry);
+            FunctionCounter.builder("workflow.node.result.cache.gets", resultCache, NodeResultCache::getRedisHits)
+                    .tag("result", "redis_hit")
+                    .register(registry);
+            FunctionCounter.builder("workflow.node.result.cache.gets", resultCache, NodeResultCache::getMisses)
+                    .tag("result", "miss")
+                    .register(registry);
+            
+            Gauge.builder("workflow.module.calls.waiting", rateLimiter, ModuleRateLimiter::getWaitingCount)
+                    .description("在模块限流处排队的调用数")
+                    .register(registry);
+            Gauge.builder("workflow.module.calls.active", rateLimiter, ModuleRateLimiter::getInFlightCount)
+                    .description("本实例持有模块并发名额的调用数")
+                    .register(registry);
+            Gauge.builder("workflow.module.circuits.open", resilience, ModuleResilience::getOpenCircuitCount)
+                    .register(registry);
+            Gauge.builder("workflow.module.batch.pending", batcher, ModuleBatcher::getPendingCount)
+                    .description("等待凑批的模块调用数")
+                    .register(registry);
+        };
+    }
+}
@@ -1,21 +1,31 @@
 package com.aidragdrop.config;
 
+import com.aidragdrop.service.NodeResultCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.cache.CacheManager;
 import org.springframework.cache.annotation.EnableCaching;
+import org.springframework.cache.caffeine.CaffeineCacheManager;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.data.redis.cache.RedisCacheConfiguration;
 import org.springframework.data.redis.cache.RedisCacheManager;
 import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
 import org.springframework.data.redis.serializer.GenericJackson2JsonRedisSerializer;
 import org.springframework.data.redis.serializer.RedisSerializationContext;
 import org.springframework.data.redis.serializer.StringRedisSerializer;
 import java.time.Duration;
+import java.util.List;
+import java.util.Set;
 
+// app.redis.enabled=false 时为单实例运行（standalone profile）: 缓存只在进程内，跨实例的广播和共享限流均不启用
 @Configuration
 @EnableCaching
 public class RedisConfig {
     
     @Bean
+    @ConditionalOnProperty(name = "app.redis.enabled", havingValue = "true", matchIfMissing = true)
     public RedisCacheManager cacheManager(RedisConnectionFactory connectionFactory) {
         RedisCacheConfiguration config = RedisCacheConfiguration.defaultCacheConfig()
                 .entryTtl(Duration.ofHours(1))
@@ -27,7 +37,32 @@ public class RedisConfig {
         
         return RedisCacheManager.builder(connectionFactory)
                 .cacheDefaults(config)
+                // 节点结果缓存的 TTL 由各模块配置决定
+                .withCacheConfiguration(NodeResultCache.CACHE_NAME, config.entryTtl(NodeResultCache.redisTtl()))
+                // 启动时即创建并开启命中统计，由 actuator 导出为 cache.gets 等指标
+                .initialCacheNames(Set.of("modules"))
+                .enableStatistics()
                 .build();
     }
+    
+    // 只创建模块缓存；节点结果缓存没有 Redis 层，只使用 NodeResultCache 的本地层
+    @Bean
+    @ConditionalOnProperty(name = "app.redis.enabled", havingValue = "false")
+    public CacheManager localCacheManager() {
+        CaffeineCacheManager cacheManager = new CaffeineCacheManager();
+        cacheManager.setCaffeine(Caffeine.newBuilder()
+                .expireAfterWrite(Duration.ofHours(1))
+                .recordStats());
+        cacheManager.setCacheNames(List.of("modules"));
+        return cacheManager;
+    }
+    
+    @Bean
+    @ConditionalOnProperty(name = "app.redis.enabled", havingValue = "true", matchIfMissing = true)
+    public RedisMessageListenerContainer redisMessageListenerContainer(RedisConnectionFactory connectionFactory) {
+        RedisMessageListenerContainer container = new RedisMessageListenerContainer();
+        container.setConnectionFactory(connectionFactory);
+        return container;
+    }
 }
 
@@ -0,0 +1,60 @@
+package com.aidragdrop.config;
+
+import io.netty.channel.ChannelOption;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
+import java.time.Duration;
+
+@Configuration
+public class WebClientConfig {
+    
+    // 每个目标主机的最大连接数（Reactor Netty 按远程地址分池）
+    @Value("${app.http-client.max-connections:200}")
+    private int maxConnections;
+    
+    @Value("${app.http-client.pending-acquire-max-count:1000}")
+    private int pendingAcquireMaxCount;
+    
+    @Value("${app.http-client.pending-acquire-timeout:45000}")
+    private long pendingAcquireTimeout;
+    
+    @Value("${app.http-client.max-idle-time:30000}")
+    private long maxIdleTime;
+    
+    @Value("${app.http-client.max-life-time:300000}")
+    private long maxLifeTime;
+    
+    @Value("${app.http-client.evict-interval:30000}")
+    private long evictInterval;
+    
+    @Value("${app.http-client.connect-timeout:5000}")
+    private int connectTimeout;
+    
+    @Bean(destroyMethod = "dispose")
+    public ConnectionProvider moduleConnectionProvider() {
+        return ConnectionProvider.builder("ai-modules")
+                .maxConnections(maxConnections)
+                .pendingAcquireMaxCount(pendingAcquireMaxCount)
+                .pendingAcquireTimeout(Duration.ofMillis(pendingAcquireTimeout))
+                .maxIdleTime(Duration.ofMillis(maxIdleTime))
+                .maxLifeTime(Duration.ofMillis(maxLifeTime))
+                .evictInBackground(Duration.ofMillis(evictInterval))
+                .lifo()
+                .build();
+    }
+    
+    // 所有模块共享同一个连接池，相同端点的连接和 TLS 会话得以复用
+    @Bean
+    public ReactorClientHttpConnector moduleHttpConnector(ConnectionProvider moduleConnectionProvider) {
+        HttpClient httpClient = HttpClient.create(moduleConnectionProvider)
+                .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, connectTimeout)
+                .option(ChannelOption.SO_KEEPALIVE, true)
+                .keepAlive(true)
+                .compress(true);
+        return new ReactorClientHttpConnector(httpClient);
+    }
+}
@@ -1,11 +1,21 @@
 package com.aidragdrop.controller;
 
 import com.aidragdrop.dto.TaskDTO;
+import com.aidragdrop.dto.TaskEventDTO;
+import com.aidragdrop.dto.TaskPageDTO;
 import com.aidragdrop.entity.TaskLog;
+import com.aidragdrop.service.BulkExecutionService;
 import com.aidragdrop.service.TaskService;
 import lombok.RequiredArgsConstructor;
+import org.springframework.core.io.Resource;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.http.codec.ServerSentEvent;
 import org.springframework.web.bind.annotation.*;
+import reactor.core.publisher.Flux;
+import java.time.Duration;
+import java.time.LocalDateTime;
 import java.util.List;
 
 @RestController
@@ -14,12 +24,21 @@ import java.util.List;
 @CrossOrigin(origins = "*")
 public class TaskController {
     
+    private static final Duration HEARTBEAT_INTERVAL = Duration.ofSeconds(15);
+    
     private final TaskService taskService;
+    private final BulkExecutionService bulkExecutionService;
     
     @GetMapping
-    public ResponseEntity<List<TaskDTO>> getTasks(
-            @RequestParam(required = false) String workflowId) {
-        return ResponseEntity.ok(taskService.getTasks(workflowId));
+    public ResponseEntity<TaskPageDTO> getTasks(
+            @RequestParam(required = false) String workflowId,
+            @RequestParam(required = false) String status,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Integer limit,
+            @RequestParam(defaultValue = "false") boolean includeDetails) {
+        return ResponseEntity.ok(taskService.getTasks(workflowId, status, from, to, cursor, limit, includeDetails));
     }
     
     @GetMapping("/{id}")
@@ -32,10 +51,59 @@ public class TaskController {
         return ResponseEntity.ok(taskService.getTaskLogs(id));
     }
     
+    // 节点级执行时间线；format=otlp 时返回 OTLP/JSON，可直接导入 Jaeger、Tempo 等追踪系统
+    @GetMapping("/{id}/timeline")
+    public ResponseEntity<Object> getTaskTimeline(
+            @PathVariable String id,
+            @RequestParam(required = false) String format) {
+        return ResponseEntity.ok(taskService.getTimeline(id, format));
+    }
+    
+    // 任务进度推送，支持通过 Last-Event-ID 请求头或 lastEventId 参数断点续传
+    @GetMapping(value = "/{id}/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public Flux<ServerSentEvent<TaskEventDTO>> streamTaskEvents(
+            @PathVariable String id,
+            @RequestHeader(value = "Last-Event-ID", required = false) String lastEventIdHeader,
+            @RequestParam(required = false) Long lastEventId) {
+        long cursor = lastEventId != null ? lastEventId : parseEventId(lastEventIdHeader);
+        return taskService.streamTaskEvents(id, cursor)
+                .map(event -> ServerSentEvent.builder(event)
+                        .id(String.valueOf(event.getId()))
+                        .event(event.getType().name())
+                        .build())
+                // 空闲时定期发送注释行，防止代理断开长连接
+                .publish(events -> Flux.merge(events, Flux.interval(HEARTBEAT_INTERVAL)
+                        .map(tick -> ServerSentEvent.<TaskEventDTO>builder().comment("heartbeat").build())
+                        .takeUntilOther(events.then())));
+    }
+    
+    // 批量任务（output=file）的结果文件，每行一条记录结果
+    @GetMapping(value = "/{id}/results", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<Resource> getTaskResults(@PathVariable String id) {
+        return ResponseEntity.ok(bulkExecutionService.getResults(id));
+    }
+    
     @PostMapping("/{id}/cancel")
     public ResponseEntity<Void> cancelTask(@PathVariable String id) {
         taskService.cancelTask(id);
         return ResponseEntity.noContent().build();
     }
+    
+    // 从失败或未完成的节点继续执行，已完成节点的结果取自检查点
+    @PostMapping("/{id}/resume")
+    public ResponseEntity<TaskDTO> resumeTask(@PathVariable String id) {
+        return ResponseEntity.ok(taskService.resumeTask(id));
+    }
+    
+    private static long parseEventId(String value) {
+        if (value == null || value.isEmpty()) {
+            return 0;
+        }
+        try {
+            return Long.parseLong(value.trim());
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
 }
 
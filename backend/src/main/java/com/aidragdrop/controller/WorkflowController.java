@@ -1,13 +1,23 @@
 package com.aidragdrop.controller;
 
+import com.aidragdrop.dto.BulkRecordDTO;
 import com.aidragdrop.dto.WorkflowDTO;
 import com.aidragdrop.dto.TaskDTO;
+import com.aidragdrop.service.BulkExecutionService;
 import com.aidragdrop.service.WorkflowService;
 import com.aidragdrop.service.TaskService;
 import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.multipart.MultipartHttpServletRequest;
+import reactor.core.publisher.Flux;
+import jakarta.servlet.http.HttpServletRequest;
 import jakarta.validation.Valid;
+import java.io.IOException;
+import java.io.InputStream;
 import java.util.List;
 import java.util.Map;
 
@@ -19,6 +29,7 @@ public class WorkflowController {
     
     private final WorkflowService workflowService;
     private final TaskService taskService;
+    private final BulkExecutionService bulkExecutionService;
     
     @GetMapping
     public ResponseEntity<List<WorkflowDTO>> getAllWorkflows(
@@ -58,5 +69,40 @@ public class WorkflowController {
             @RequestBody(required = false) Map<String, Object> input) {
         return ResponseEntity.ok(taskService.executeWorkflow(id, input));
     }
+    
+    // 批量执行: 请求体为 NDJSON（每行一条输入），或 multipart 上传的 file 文件；结果按输入顺序以 NDJSON 流式返回
+    @PostMapping(value = "/{id}/bulk-executions", params = "output!=file", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<Flux<BulkRecordDTO>> executeBulkStreaming(
+            @PathVariable String id,
+            @RequestParam(required = false) Integer parallelism,
+            HttpServletRequest request) throws IOException {
+        BulkExecutionService.BulkExecution execution =
+                bulkExecutionService.executeStreaming(id, openBulkInput(request), parallelism);
+        return ResponseEntity.ok()
+                .header("X-Task-Id", execution.taskId())
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .body(execution.records());
+    }
+    
+    // output=file 时在后台执行并立即返回父任务，结果通过 GET /tasks/{id}/results 下载
+    @PostMapping(value = "/{id}/bulk-executions", params = "output=file")
+    public ResponseEntity<TaskDTO> executeBulkToFile(
+            @PathVariable String id,
+            @RequestParam(required = false) Integer parallelism,
+            HttpServletRequest request) throws IOException {
+        String taskId = bulkExecutionService.executeToFile(id, openBulkInput(request), parallelism);
+        return ResponseEntity.status(HttpStatus.ACCEPTED).body(taskService.getTaskById(taskId));
+    }
+    
+    private static InputStream openBulkInput(HttpServletRequest request) throws IOException {
+        if (request instanceof MultipartHttpServletRequest multipart) {
+            MultipartFile file = multipart.getFile("file");
+            if (file == null) {
+                throw new RuntimeException("缺少上传文件: file");
+            }
+            return file.getInputStream();
+        }
+        return request.getInputStream();
+    }
 }
 
@@ -0,0 +1,30 @@
+package com.aidragdrop.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.Data;
+
+// 批量执行中单条记录的结果，按输入顺序输出为 NDJSON 的一行
+@Data
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class BulkRecordDTO {
+    private long line; // 输入文件中的行号，从 1 开始
+    private String status; // COMPLETED / FAILED
+    private Object result;
+    private String error;
+    
+    public static BulkRecordDTO completed(long line, Object result) {
+        BulkRecordDTO record = new BulkRecordDTO();
+        record.setLine(line);
+        record.setStatus("COMPLETED");
+        record.setResult(result);
+        return record;
+    }
+    
+    public static BulkRecordDTO failed(long line, String error) {
+        BulkRecordDTO record = new BulkRecordDTO();
+        record.setLine(line);
+        record.setStatus("FAILED");
+        record.setError(error);
+        return record;
+    }
+}
@@ -12,5 +12,6 @@ public class TaskDTO {
     private String error;
     private LocalDateTime startTime;
     private LocalDateTime endTime;
+    private LocalDateTime createdAt;
 }
 
@@ -0,0 +1,24 @@
+package com.aidragdrop.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.Data;
+import java.time.LocalDateTime;
+
+@Data
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class TaskEventDTO {
+    private long id; // 任务内单调递增，作为 SSE 的 Last-Event-ID
+    private String taskId;
+    private EventType type;
+    private String status;
+    private String nodeId;
+    private String moduleId;
+    private String level;
+    private String message;
+    private Object data;
+    private LocalDateTime timestamp;
+    
+    public enum EventType {
+        STATUS, NODE_STARTED, NODE_CHUNK, NODE_COMPLETED, NODE_FAILED, NODE_SKIPPED, LOG, PROGRESS
+    }
+}
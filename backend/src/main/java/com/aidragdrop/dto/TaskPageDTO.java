@@ -0,0 +1,10 @@
+package com.aidragdrop.dto;
+
+import lombok.Data;
+import java.util.List;
+
+@Data
+public class TaskPageDTO {
+    private List<TaskDTO> items;
+    private String nextCursor; // 为空表示没有下一页
+}
@@ -35,8 +35,8 @@ public class AIModule {
     private Map<String, Object> config;
     
     @Column(columnDefinition = "TEXT", nullable = false)
-    @Convert(converter = JsonConverter.class)
-    private Map<String, Object> apiConfig;
+    @Convert(converter = ApiConfigConverter.class)
+    private ApiConfig apiConfig;
     
     @Column(columnDefinition = "TEXT")
     @Convert(converter = JsonConverter.class)
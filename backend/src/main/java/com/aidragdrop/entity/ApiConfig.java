@@ -0,0 +1,137 @@
+package com.aidragdrop.entity;
+
+import com.fasterxml.jackson.annotation.JsonAnyGetter;
+import com.fasterxml.jackson.annotation.JsonAnySetter;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.Data;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+@Data
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class ApiConfig {
+    
+    private String url;
+    
+    private String method;
+    
+    private Map<String, String> headers;
+    
+    // 单次调用超时（毫秒），未设置时使用 app.api-timeout；流式响应按相邻分片间的空闲时间计算
+    private Long timeout;
+    
+    private Auth auth;
+    
+    // 响应模式: json(默认) / sse / ndjson，后两者按分片流式读取
+    private String responseMode;
+    
+    // 从每个流式分片中提取文本增量的路径，如 choices.0.delta.content
+    private String streamTextPath;
+    
+    // 为 true 且唯一前驱为流式节点时，直接以前驱的分片流作为 NDJSON 请求体
+    private Boolean streamingInput;
+    
+    // 重复调用无副作用时才会重试和对冲请求；未设置时 GET 视为幂等
+    private Boolean idempotent;
+    
+    private Retry retry;
+    
+    private Hedge hedge;
+    
+    private CircuitBreaker circuitBreaker;
+    
+    private Batch batch;
+    
+    // 未建模的配置项原样保留
+    private Map<String, Object> attributes = new LinkedHashMap<>();
+    
+    @JsonIgnore
+    public String getMethodOrDefault() {
+        return method != null ? method.toUpperCase() : "POST";
+    }
+    
+    @JsonIgnore
+    public boolean isStreamingResponse() {
+        return "sse".equalsIgnoreCase(responseMode) || "ndjson".equalsIgnoreCase(responseMode);
+    }
+    
+    @JsonIgnore
+    public boolean isStreamingInputEnabled() {
+        return Boolean.TRUE.equals(streamingInput);
+    }
+    
+    // 幂等、可安全重发；不命名为 isIdempotent，避免 @JsonIgnore 连带忽略 idempotent 属性
+    @JsonIgnore
+    public boolean isReplayable() {
+        return idempotent != null ? idempotent : "GET".equals(getMethodOrDefault());
+    }
+    
+    @JsonIgnore
+    public boolean isBatched() {
+        return batch != null && batch.getMaxSize() != null && batch.getMaxSize() > 1;
+    }
+    
+    @JsonIgnore
+    public long getTimeoutOrDefault(long defaultTimeout) {
+        return timeout != null && timeout > 0 ? timeout : defaultTimeout;
+    }
+    
+    @JsonAnyGetter
+    public Map<String, Object> getAttributes() {
+        return attributes;
+    }
+    
+    @JsonAnySetter
+    public void putAttribute(String key, Object value) {
+        attributes.put(key, value);
+    }
+    
+    @Data
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    public static class Auth {
+        private String type; // none, basic, bearer, apiKey
+        private Map<String, String> credentials;
+    }
+    
+    // 超时、连接失败、429 和 5xx 时按指数退避重试，jitter 为退避时间的随机浮动比例
+    @Data
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    public static class Retry {
+        private Integer maxAttempts;
+        private Long backoffMs;
+        private Long maxBackoffMs;
+        private Double jitter;
+    }
+    
+    // 调用超过最近耗时的 percentile 分位仍未返回时再发一个相同请求，先返回者胜出；样本不足时使用 delayMs
+    @Data
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    public static class Hedge {
+        private Boolean enabled;
+        private Integer percentile;
+        private Long delayMs;
+    }
+    
+    // 模块接受数组输入时，把多个任务的并发调用合并为一次请求，响应数组按位置分发回各调用方
+    // inputField: 请求体中放置输入数组的字段，未设置时请求体即数组；outputPath: 响应中结果数组的路径
+    @Data
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    public static class Batch {
+        private Integer maxSize;
+        private Long maxLingerMs;
+        private String inputField;
+        private String outputPath;
+    }
+    
+    // 覆盖 app.resilience.circuit-breaker 的默认值
+    @Data
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    public static class CircuitBreaker {
+        private Boolean enabled;
+        private Integer failureRateThreshold;
+        private Integer minimumCalls;
+        private Integer windowSize;
+        private Long openMs;
+    }
+}
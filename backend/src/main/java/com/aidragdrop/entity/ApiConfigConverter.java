@@ -0,0 +1,13 @@
+package com.aidragdrop.entity;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import jakarta.persistence.Converter;
+
+@Converter
+public class ApiConfigConverter extends TypedJsonConverter<ApiConfig> {
+    
+    public ApiConfigConverter() {
+        super(new TypeReference<>() {
+        });
+    }
+}
@@ -1,16 +1,13 @@
 package com.aidragdrop.entity;
 
-import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import jakarta.persistence.AttributeConverter;
 import jakarta.persistence.Converter;
-import java.util.List;
-import java.util.Map;
 
 @Converter
 public class JsonConverter implements AttributeConverter<Object, String> {
     
-    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final ObjectMapper objectMapper = JsonSupport.MAPPER;
     
     @Override
     public String convertToDatabaseColumn(Object attribute) {
@@ -0,0 +1,38 @@
+package com.aidragdrop.entity;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.fasterxml.jackson.module.blackbird.BlackbirdModule;
+import java.util.List;
+import java.util.Map;
+
+// 所有 JSON 列共享的 ObjectMapper，Blackbird 用 LambdaMetafactory 生成访问器代替反射
+public final class JsonSupport {
+    
+    public static final ObjectMapper MAPPER = JsonMapper.builder()
+            .addModule(new BlackbirdModule())
+            .addModule(new JavaTimeModule())
+            .disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES)
+            .build();
+    
+    private JsonSupport() {
+    }
+    
+    // 按点分路径在反序列化后的 Map/List 结构中取值，数字段作为数组下标；路径不存在时返回 null
+    public static Object valueAt(Object root, String path) {
+        Object current = root;
+        for (String segment : path.split("\\.")) {
+            if (current instanceof Map<?, ?> map) {
+                current = map.get(segment);
+            } else if (current instanceof List<?> list && segment.chars().allMatch(Character::isDigit)) {
+                int index = Integer.parseInt(segment);
+                current = index < list.size() ? list.get(index) : null;
+            } else {
+                return null;
+            }
+        }
+        return current;
+    }
+}
@@ -0,0 +1,70 @@
+package com.aidragdrop.entity;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.JsonSerializer;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import java.io.IOException;
+
+// 延迟解析的 JSON 值: 从数据库加载时只保存原始字符串，读取 get() 时才解析
+// 直接输出到 HTTP 响应时原样写出，不经过解析再序列化
+@JsonSerialize(using = LazyJson.Serializer.class)
+public final class LazyJson {
+    
+    private volatile String raw;
+    private volatile Object value;
+    private volatile boolean parsed;
+    
+    private LazyJson(String raw, Object value, boolean parsed) {
+        this.raw = raw;
+        this.value = value;
+        this.parsed = parsed;
+    }
+    
+    public static LazyJson ofRaw(String raw) {
+        return new LazyJson(raw, null, false);
+    }
+    
+    public static LazyJson of(Object value) {
+        return value == null ? null : new LazyJson(null, value, true);
+    }
+    
+    public Object get() {
+        if (!parsed) {
+            try {
+                value = JsonSupport.MAPPER.readValue(raw, Object.class);
+            } catch (IOException e) {
+                throw new RuntimeException("Error converting to entity attribute: " + e.getMessage(), e);
+            }
+            parsed = true;
+        }
+        return value;
+    }
+    
+    public String toJson() {
+        if (raw == null) {
+            try {
+                raw = JsonSupport.MAPPER.writeValueAsString(value);
+            } catch (IOException e) {
+                throw new RuntimeException("Error converting to database column", e);
+            }
+        }
+        return raw;
+    }
+    
+    @Override
+    public String toString() {
+        return toJson();
+    }
+    
+    public static class Serializer extends JsonSerializer<LazyJson> {
+        @Override
+        public void serialize(LazyJson json, JsonGenerator gen, SerializerProvider serializers) throws IOException {
+            if (json.raw != null) {
+                gen.writeRawValue(json.raw);
+            } else {
+                serializers.defaultSerializeValue(json.value, gen);
+            }
+        }
+    }
+}
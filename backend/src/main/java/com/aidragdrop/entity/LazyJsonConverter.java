@@ -0,0 +1,24 @@
+package com.aidragdrop.entity;
+
+import jakarta.persistence.AttributeConverter;
+import jakarta.persistence.Converter;
+import org.hibernate.annotations.Immutable;
+
+// LazyJson 创建后不再修改，声明为不可变类型，Hibernate 无需为脏检查复制快照
+@Converter
+@Immutable
+public class LazyJsonConverter implements AttributeConverter<LazyJson, String> {
+    
+    @Override
+    public String convertToDatabaseColumn(LazyJson attribute) {
+        return attribute == null ? null : attribute.toJson();
+    }
+    
+    @Override
+    public LazyJson convertToEntityAttribute(String dbData) {
+        if (dbData == null || dbData.trim().isEmpty()) {
+            return null;
+        }
+        return LazyJson.ofRaw(dbData);
+    }
+}
@@ -6,7 +6,11 @@ import java.time.LocalDateTime;
 import java.util.List;
 
 @Entity
-@Table(name = "tasks")
+@Table(name = "tasks", indexes = {
+        @Index(name = "idx_tasks_created_id", columnList = "created_at, id"),
+        @Index(name = "idx_tasks_status_created_id", columnList = "status, created_at, id"),
+        @Index(name = "idx_tasks_workflow_created_id", columnList = "workflow_id, created_at, id")
+})
 @Data
 public class Task {
     
@@ -21,17 +25,31 @@ public class Task {
     @Column(nullable = false)
     private TaskStatus status;
     
+    // 执行输入随任务持久化，任意实例的 worker 都能从队列取出后执行
     @Column(columnDefinition = "TEXT")
-    @Convert(converter = JsonConverter.class)
-    private Object result;
+    @Convert(converter = LazyJsonConverter.class)
+    private LazyJson input;
+    
+    // 列表查询不会解析结果 JSON，直到真正读取
+    @Column(columnDefinition = "TEXT")
+    @Convert(converter = LazyJsonConverter.class)
+    private LazyJson result;
     
     @Column(columnDefinition = "TEXT")
     private String error;
     
+    // 节点级执行时间线（TaskTimeline），任务结束时写入
+    @Column(columnDefinition = "TEXT")
+    @Convert(converter = LazyJsonConverter.class)
+    private LazyJson timeline;
+    
     private LocalDateTime startTime;
     
     private LocalDateTime endTime;
     
+    // 批量任务执行期间随进度定期刷新，超时未刷新说明所在实例已失效
+    private LocalDateTime heartbeatAt;
+    
     @OneToMany(mappedBy = "taskId", cascade = CascadeType.ALL, fetch = FetchType.LAZY)
     private List<TaskLog> logs;
     
@@ -0,0 +1,41 @@
+package com.aidragdrop.entity;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import java.time.LocalDateTime;
+
+// 节点执行结果的检查点，任务恢复执行时已完成的节点直接取用，不再调用模块
+@Entity
+@Table(name = "task_checkpoints", uniqueConstraints = {
+        @UniqueConstraint(name = "uk_task_checkpoints_task_node", columnNames = {"task_id", "node_id"})
+})
+@Data
+public class TaskCheckpoint {
+    
+    // 由任务ID和节点ID派生，同一节点重新写入时覆盖原记录
+    @Id
+    private String id;
+    
+    @Column(nullable = false)
+    private String taskId;
+    
+    @Column(nullable = false)
+    private String nodeId;
+    
+    // 工作流版本和节点模块版本，任一变化后检查点作废
+    @Column(nullable = false, columnDefinition = "TEXT")
+    private String fingerprint;
+    
+    // 结果 JSON 的字节数
+    @Column(nullable = false)
+    private long size;
+    
+    // 紧凑 JSON；超过内联上限的结果写入 blob 存储，此列为空
+    @Column(columnDefinition = "TEXT")
+    private String output;
+    
+    private String blobKey;
+    
+    @Column(nullable = false)
+    private LocalDateTime createdAt;
+}
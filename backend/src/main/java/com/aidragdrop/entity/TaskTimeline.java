@@ -0,0 +1,67 @@
+package com.aidragdrop.entity;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.Data;
+import java.util.ArrayList;
+import java.util.List;
+
+// 任务执行时间线: 每个节点一个 span，时间为相对 startedAt 的毫秒偏移，任务结束时随状态一起写入
+@Data
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class TaskTimeline {
+    
+    // 执行开始时间（epoch 毫秒）
+    private long startedAt;
+    
+    private List<Span> spans = new ArrayList<>();
+    
+    @Data
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    public static class Span {
+        
+        private String nodeId;
+        
+        private String moduleId;
+        
+        // 节点开始（前驱全部完成）和结束的偏移
+        private long start;
+        
+        private long end;
+        
+        // OK / ERROR / SKIPPED（条件分支未选中，未执行）
+        private String status;
+        
+        // 在模块限流处的排队时间，重试和对冲时为各次之和
+        private Long queueWaitMs;
+        
+        private Integer attempts;
+        
+        // 命中结果缓存时的缓存层: local / redis
+        private String cacheHit;
+        
+        private Integer batchSize;
+        
+        // 最后一次上游响应的 HTTP 状态码
+        private Integer upstreamStatus;
+        
+        // 请求体 / 响应体字节数，流式响应为各分片数据之和
+        private Long bytesIn;
+        
+        private Long bytesOut;
+        
+        private Integer chunks;
+        
+        // 映射节点处理的元素数和其中失败的元素数
+        private Integer items;
+        
+        private Integer failedItems;
+        
+        // 条件节点选中的输出端口
+        private String branch;
+        
+        // 恢复执行时取自检查点，本次未执行
+        private Boolean restored;
+        
+        private String error;
+    }
+}
@@ -0,0 +1,42 @@
+package com.aidragdrop.entity;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import jakarta.persistence.AttributeConverter;
+
+// 按目标类型直接反序列化，避免先转成 Object 树再强制转换
+public abstract class TypedJsonConverter<T> implements AttributeConverter<T, String> {
+    
+    private final ObjectReader reader;
+    private final ObjectWriter writer;
+    
+    protected TypedJsonConverter(TypeReference<T> type) {
+        this.reader = JsonSupport.MAPPER.readerFor(type);
+        this.writer = JsonSupport.MAPPER.writerFor(type);
+    }
+    
+    @Override
+    public String convertToDatabaseColumn(T attribute) {
+        if (attribute == null) {
+            return null;
+        }
+        try {
+            return writer.writeValueAsString(attribute);
+        } catch (Exception e) {
+            throw new RuntimeException("Error converting to database column", e);
+        }
+    }
+    
+    @Override
+    public T convertToEntityAttribute(String dbData) {
+        if (dbData == null || dbData.trim().isEmpty()) {
+            return null;
+        }
+        try {
+            return reader.readValue(dbData);
+        } catch (Exception e) {
+            throw new RuntimeException("Error converting to entity attribute: " + e.getMessage(), e);
+        }
+    }
+}
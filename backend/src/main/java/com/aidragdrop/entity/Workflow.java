@@ -24,12 +24,12 @@ public class Workflow {
     private String projectId;
     
     @Column(columnDefinition = "TEXT")
-    @Convert(converter = JsonConverter.class)
-    private List<Object> nodes;
+    @Convert(converter = WorkflowNodesConverter.class)
+    private List<WorkflowNode> nodes;
     
     @Column(columnDefinition = "TEXT")
-    @Convert(converter = JsonConverter.class)
-    private List<Object> connections;
+    @Convert(converter = WorkflowConnectionsConverter.class)
+    private List<WorkflowConnection> connections;
     
     @Column(nullable = false, updatable = false)
     private LocalDateTime createdAt;
@@ -0,0 +1,35 @@
+package com.aidragdrop.entity;
+
+import com.fasterxml.jackson.annotation.JsonAnyGetter;
+import com.fasterxml.jackson.annotation.JsonAnySetter;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.Data;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+@Data
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class WorkflowConnection {
+    
+    private String id;
+    
+    private String fromNodeId;
+    
+    private String fromPort;
+    
+    private String toNodeId;
+    
+    private String toPort;
+    
+    private Map<String, Object> attributes = new LinkedHashMap<>();
+    
+    @JsonAnyGetter
+    public Map<String, Object> getAttributes() {
+        return attributes;
+    }
+    
+    @JsonAnySetter
+    public void putAttribute(String key, Object value) {
+        attributes.put(key, value);
+    }
+}
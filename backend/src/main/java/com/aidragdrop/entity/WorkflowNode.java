@@ -0,0 +1,43 @@
+package com.aidragdrop.entity;
+
+import com.fasterxml.jackson.annotation.JsonAnyGetter;
+import com.fasterxml.jackson.annotation.JsonAnySetter;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.Data;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+@Data
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class WorkflowNode {
+    
+    // 内置的列表映射节点，config.body 为逐元素执行的子链节点ID
+    public static final String TYPE_MAP = "map";
+    
+    // 内置的条件节点，按 config 中的条件选择一个输出端口，只有从该端口连出的后继执行
+    public static final String TYPE_SWITCH = "switch";
+    
+    public static final String TYPE_IF = "if";
+    
+    private String id;
+    
+    // 省略为模块节点，内置节点没有 moduleId
+    private String type;
+    
+    private String moduleId;
+    
+    private Map<String, Object> config;
+    
+    // position 等前端字段不参与执行，原样保留
+    private Map<String, Object> attributes = new LinkedHashMap<>();
+    
+    @JsonAnyGetter
+    public Map<String, Object> getAttributes() {
+        return attributes;
+    }
+    
+    @JsonAnySetter
+    public void putAttribute(String key, Object value) {
+        attributes.put(key, value);
+    }
+}
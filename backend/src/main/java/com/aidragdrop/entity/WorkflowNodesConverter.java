@@ -0,0 +1,14 @@
+package com.aidragdrop.entity;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import jakarta.persistence.Converter;
+import java.util.List;
+
+@Converter
+public class WorkflowNodesConverter extends TypedJsonConverter<List<WorkflowNode>> {
+    
+    public WorkflowNodesConverter() {
+        super(new TypeReference<>() {
+        });
+    }
+}
@@ -0,0 +1,22 @@
+package com.aidragdrop.repository;
+
+import com.aidragdrop.entity.TaskCheckpoint;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Repository
+public interface TaskCheckpointRepository extends JpaRepository<TaskCheckpoint, String> {
+    List<TaskCheckpoint> findByTaskId(String taskId);
+    List<TaskCheckpoint> findTop100ByCreatedAtBefore(LocalDateTime before);
+    
+    @Modifying
+    @Transactional
+    @Query("delete from TaskCheckpoint c where c.taskId = :taskId")
+    int deleteByTaskId(@Param("taskId") String taskId);
+}
@@ -1,13 +1,102 @@
 package com.aidragdrop.repository;
 
+import com.aidragdrop.entity.LazyJson;
 import com.aidragdrop.entity.Task;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 
 @Repository
-public interface TaskRepository extends JpaRepository<Task, String> {
+public interface TaskRepository extends JpaRepository<Task, String>, TaskRepositoryCustom {
     List<Task> findByWorkflowId(String workflowId);
     List<Task> findByStatus(Task.TaskStatus status);
+    
+    // 条件状态迁移: 只有任务仍处于 from 状态时才更新，执行引擎与取消操作互不覆盖
+    @Modifying
+    @Transactional
+    @Query("update Task t set t.status = :to, t.startTime = :time where t.id = :id and t.status in :from")
+    int markStarted(@Param("id") String id,
+                    @Param("from") Collection<Task.TaskStatus> from,
+                    @Param("to") Task.TaskStatus to,
+                    @Param("time") LocalDateTime time);
+    
+    @Modifying
+    @Transactional
+    @Query("update Task t set t.status = :to, t.result = :result, t.error = :error, t.timeline = :timeline, "
+            + "t.endTime = :time where t.id = :id and t.status in :from")
+    int markFinished(@Param("id") String id,
+                     @Param("from") Collection<Task.TaskStatus> from,
+                     @Param("to") Task.TaskStatus to,
+                     @Param("result") LazyJson result,
+                     @Param("error") String error,
+                     @Param("timeline") LazyJson timeline,
+                     @Param("time") LocalDateTime time);
+    
+    // 只更新状态，保留已写入的结果和时间线；取消时由执行实例写回截至取消时的时间线
+    @Modifying
+    @Transactional
+    @Query("update Task t set t.status = :to, t.error = :error, t.endTime = :time "
+            + "where t.id = :id and t.status in :from")
+    int markTerminated(@Param("id") String id,
+                       @Param("from") Collection<Task.TaskStatus> from,
+                       @Param("to") Task.TaskStatus to,
+                       @Param("error") String error,
+                       @Param("time") LocalDateTime time);
+    
+    @Modifying
+    @Transactional
+    @Query("update Task t set t.timeline = :timeline where t.id = :id and t.status = :status")
+    int updateTimeline(@Param("id") String id,
+                       @Param("status") Task.TaskStatus status,
+                       @Param("timeline") LazyJson timeline);
+    
+    // 恢复执行: 回到 PENDING 并清除上次的结果和错误，开始时间在重新执行时更新
+    @Modifying
+    @Transactional
+    @Query("update Task t set t.status = :to, t.result = null, t.error = null, t.endTime = null "
+            + "where t.id = :id and t.status in :from")
+    int markResumed(@Param("id") String id,
+                    @Param("from") Collection<Task.TaskStatus> from,
+                    @Param("to") Task.TaskStatus to);
+    
+    // 批量任务执行期间定期写回进度计数，同时刷新心跳
+    @Modifying
+    @Transactional
+    @Query("update Task t set t.result = :result, t.heartbeatAt = :time where t.id = :id and t.status = :status")
+    int updateProgress(@Param("id") String id,
+                       @Param("status") Task.TaskStatus status,
+                       @Param("result") LazyJson result,
+                       @Param("time") LocalDateTime time);
+    
+    @Modifying
+    @Transactional
+    @Query("update Task t set t.heartbeatAt = :time where t.id = :id and t.status = :status")
+    int heartbeat(@Param("id") String id,
+                  @Param("status") Task.TaskStatus status,
+                  @Param("time") LocalDateTime time);
+    
+    // 只有批量任务写心跳，按心跳筛选即可找出失效的批量任务，不必加载和解析任务输入
+    @Query("select t.id from Task t where t.status = :status and t.heartbeatAt is not null "
+            + "and t.heartbeatAt < :deadline")
+    List<String> findIdsByHeartbeatBefore(@Param("status") Task.TaskStatus status,
+                                          @Param("deadline") LocalDateTime deadline);
+    
+    // 心跳早于 deadline 的任务标记失败，保留最后写回的进度；多个实例同时清理时只有一个成功
+    @Modifying
+    @Transactional
+    @Query("update Task t set t.status = :to, t.error = :error, t.endTime = :time where t.id = :id "
+            + "and t.status = :from and t.heartbeatAt < :deadline")
+    int markStale(@Param("id") String id,
+                  @Param("from") Task.TaskStatus from,
+                  @Param("to") Task.TaskStatus to,
+                  @Param("error") String error,
+                  @Param("deadline") LocalDateTime deadline,
+                  @Param("time") LocalDateTime time);
 }
 
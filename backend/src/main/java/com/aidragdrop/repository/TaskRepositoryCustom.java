@@ -0,0 +1,9 @@
+package com.aidragdrop.repository;
+
+import com.aidragdrop.entity.Task;
+import java.util.List;
+
+public interface TaskRepositoryCustom {
+    List<TaskSummary> findSummaries(TaskSearchCriteria criteria);
+    List<Task> findPage(TaskSearchCriteria criteria);
+}
@@ -0,0 +1,75 @@
+package com.aidragdrop.repository;
+
+import com.aidragdrop.entity.Task;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.CriteriaQuery;
+import jakarta.persistence.criteria.Predicate;
+import jakarta.persistence.criteria.Root;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+// 只生成实际传入的过滤条件，保证查询能命中 (status|workflow_id, created_at, id) 复合索引
+public class TaskRepositoryImpl implements TaskRepositoryCustom {
+    
+    @PersistenceContext
+    private EntityManager entityManager;
+    
+    @Override
+    public List<TaskSummary> findSummaries(TaskSearchCriteria criteria) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<TaskSummary> query = cb.createQuery(TaskSummary.class);
+        Root<Task> task = query.from(Task.class);
+        query.select(cb.construct(TaskSummary.class,
+                task.get("id"),
+                task.get("workflowId"),
+                task.get("status"),
+                task.get("startTime"),
+                task.get("endTime"),
+                task.get("createdAt")));
+        query.where(predicates(cb, task, criteria));
+        query.orderBy(cb.desc(task.get("createdAt")), cb.desc(task.get("id")));
+        return entityManager.createQuery(query)
+                .setMaxResults(criteria.limit())
+                .getResultList();
+    }
+    
+    @Override
+    public List<Task> findPage(TaskSearchCriteria criteria) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Task> query = cb.createQuery(Task.class);
+        Root<Task> task = query.from(Task.class);
+        query.where(predicates(cb, task, criteria));
+        query.orderBy(cb.desc(task.get("createdAt")), cb.desc(task.get("id")));
+        return entityManager.createQuery(query)
+                .setMaxResults(criteria.limit())
+                .getResultList();
+    }
+    
+    private Predicate[] predicates(CriteriaBuilder cb, Root<Task> task, TaskSearchCriteria criteria) {
+        List<Predicate> predicates = new ArrayList<>();
+        if (criteria.workflowId() != null) {
+            predicates.add(cb.equal(task.get("workflowId"), criteria.workflowId()));
+        }
+        if (criteria.status() != null) {
+            predicates.add(cb.equal(task.get("status"), criteria.status()));
+        }
+        if (criteria.from() != null) {
+            predicates.add(cb.greaterThanOrEqualTo(task.<LocalDateTime>get("createdAt"), criteria.from()));
+        }
+        if (criteria.to() != null) {
+            predicates.add(cb.lessThan(task.<LocalDateTime>get("createdAt"), criteria.to()));
+        }
+        if (criteria.cursorCreatedAt() != null) {
+            // (created_at, id) < (cursorCreatedAt, cursorId)
+            predicates.add(cb.or(
+                    cb.lessThan(task.<LocalDateTime>get("createdAt"), criteria.cursorCreatedAt()),
+                    cb.and(
+                            cb.equal(task.get("createdAt"), criteria.cursorCreatedAt()),
+                            cb.lessThan(task.<String>get("id"), criteria.cursorId()))));
+        }
+        return predicates.toArray(new Predicate[0]);
+    }
+}
@@ -0,0 +1,15 @@
+package com.aidragdrop.repository;
+
+import com.aidragdrop.entity.Task;
+import java.time.LocalDateTime;
+
+// 按 (createdAt, id) 倒序的游标分页条件，cursor 为上一页最后一条记录
+public record TaskSearchCriteria(
+        String workflowId,
+        Task.TaskStatus status,
+        LocalDateTime from,
+        LocalDateTime to,
+        LocalDateTime cursorCreatedAt,
+        String cursorId,
+        int limit) {
+}
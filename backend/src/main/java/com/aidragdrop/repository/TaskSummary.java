@@ -0,0 +1,14 @@
+package com.aidragdrop.repository;
+
+import com.aidragdrop.entity.Task;
+import java.time.LocalDateTime;
+
+// 任务列表使用的精简投影，不包含 result / error 大字段
+public record TaskSummary(
+        String id,
+        String workflowId,
+        Task.TaskStatus status,
+        LocalDateTime startTime,
+        LocalDateTime endTime,
+        LocalDateTime createdAt) {
+}
@@ -2,12 +2,19 @@ package com.aidragdrop.repository;
 
 import com.aidragdrop.entity.Workflow;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Optional;
 
 @Repository
 public interface WorkflowRepository extends JpaRepository<Workflow, String> {
     List<Workflow> findByProjectId(String projectId);
+    
+    @Query("select w.updatedAt from Workflow w where w.id = :id")
+    Optional<LocalDateTime> findUpdatedAtById(@Param("id") String id);
 }
 
@@ -2,20 +2,30 @@ package com.aidragdrop.service;
 
 import com.aidragdrop.dto.AIModuleDTO;
 import com.aidragdrop.entity.AIModule;
+import com.aidragdrop.entity.ApiConfig;
+import com.aidragdrop.entity.JsonSupport;
 import com.aidragdrop.repository.AIModuleRepository;
+import com.fasterxml.jackson.core.type.TypeReference;
 import lombok.RequiredArgsConstructor;
 import org.springframework.cache.annotation.CacheEvict;
 import org.springframework.cache.annotation.Cacheable;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 import java.util.List;
+import java.util.Map;
 import java.util.stream.Collectors;
 
 @Service
 @RequiredArgsConstructor
 public class AIModuleService {
     
+    private static final TypeReference<Map<String, Object>> API_CONFIG_MAP = new TypeReference<>() {
+    };
+    
     private final AIModuleRepository moduleRepository;
+    private final ModuleCacheInvalidator cacheInvalidator;
     
     @Cacheable(value = "modules", key = "'all'")
     public List<AIModuleDTO> getAllModules() {
@@ -54,10 +64,11 @@ public class AIModuleService {
         module.setIcon(dto.getIcon());
         module.setVersion(dto.getVersion());
         module.setConfig(dto.getConfig());
-        module.setApiConfig(dto.getApiConfig());
+        module.setApiConfig(JsonSupport.MAPPER.convertValue(dto.getApiConfig(), ApiConfig.class));
         module.setProperties(dto.getProperties());
         
         module = moduleRepository.save(module);
+        invalidateAfterCommit(id);
         return toDTO(module);
     }
     
@@ -68,6 +79,17 @@ public class AIModuleService {
             throw new RuntimeException("模組不存在: " + id);
         }
         moduleRepository.deleteById(id);
+        invalidateAfterCommit(id);
+    }
+    
+    // 提交后再失效，避免并发调用在提交前用旧数据重新填充缓存
+    private void invalidateAfterCommit(String id) {
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                cacheInvalidator.invalidate(id);
+            }
+        });
     }
     
     private AIModuleDTO toDTO(AIModule module) {
@@ -80,7 +102,7 @@ public class AIModuleService {
         dto.setIcon(module.getIcon());
         dto.setVersion(module.getVersion());
         dto.setConfig(module.getConfig());
-        dto.setApiConfig(module.getApiConfig());
+        dto.setApiConfig(JsonSupport.MAPPER.convertValue(module.getApiConfig(), API_CONFIG_MAP));
         dto.setProperties(module.getProperties());
         return dto;
     }
@@ -99,7 +121,7 @@ public class AIModuleService {
         module.setIcon(dto.getIcon());
         module.setVersion(dto.getVersion());
         module.setConfig(dto.getConfig());
-        module.setApiConfig(dto.getApiConfig());
+        module.setApiConfig(JsonSupport.MAPPER.convertValue(dto.getApiConfig(), ApiConfig.class));
         module.setProperties(dto.getProperties());
         return module;
     }
@@ -0,0 +1,14 @@
+package com.aidragdrop.service;
+
+import java.io.IOException;
+
+// 大对象存储，键为 / 分隔的相对路径；默认实现写本地目录，多实例部署时需替换为共享存储的实现
+public interface BlobStore {
+    
+    void put(String key, byte[] data) throws IOException;
+    
+    byte[] get(String key) throws IOException;
+    
+    // 不存在时忽略
+    void delete(String key);
+}
@@ -0,0 +1,474 @@
+package com.aidragdrop.service;
+
+import com.aidragdrop.dto.BulkRecordDTO;
+import com.aidragdrop.dto.TaskEventDTO;
+import com.aidragdrop.entity.JsonSupport;
+import com.aidragdrop.entity.LazyJson;
+import com.aidragdrop.entity.Task;
+import com.aidragdrop.entity.TaskLog;
+import com.aidragdrop.repository.TaskRepository;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+import org.springframework.stereotype.Service;
+import reactor.core.Disposable;
+import reactor.core.Disposables;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.SignalType;
+import reactor.core.publisher.Sinks;
+import reactor.core.scheduler.Scheduler;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Stream;
+
+// 批量执行: 一个父任务承载整个数据集，NDJSON 输入先落盘再逐行按有限并行度执行编译后的工作流
+// 单条记录不建任务、不写日志，只有失败记录写一条 ERROR 日志；进度计数定期写回父任务结果并推送 PROGRESS 事件
+@Service
+@Slf4j
+public class BulkExecutionService {
+    
+    private static final String SPOOL_PREFIX = "bulk-";
+    private static final String SPOOL_SUFFIX = ".ndjson";
+    
+    private final TaskRepository taskRepository;
+    private final TaskLogWriter taskLogWriter;
+    private final WorkflowPlanCache planCache;
+    private final WorkflowExecutionService executionService;
+    private final TaskEventBroker eventBroker;
+    private final TaskCancellationRegistry cancellationRegistry;
+    private final Scheduler blockingScheduler;
+    
+    @Value("${app.bulk.spool-dir:${java.io.tmpdir}/ai-drag-drop/bulk/spool}")
+    private String spoolDir;
+    
+    @Value("${app.bulk.output-dir:${java.io.tmpdir}/ai-drag-drop/bulk/results}")
+    private String outputDir;
+    
+    @Value("${app.bulk.default-parallelism:16}")
+    private int defaultParallelism;
+    
+    @Value("${app.bulk.max-parallelism:256}")
+    private int maxParallelism;
+    
+    @Value("${app.bulk.progress-interval:1000}")
+    private long progressInterval;
+    
+    @Value("${app.bulk.heartbeat-timeout:60000}")
+    private long heartbeatTimeout;
+    
+    private Disposable sweeper;
+    
+    public BulkExecutionService(
+            TaskRepository taskRepository,
+            TaskLogWriter taskLogWriter,
+            WorkflowPlanCache planCache,
+            WorkflowExecutionService executionService,
+            TaskEventBroker eventBroker,
+            TaskCancellationRegistry cancellationRegistry,
+            @Qualifier("blockingScheduler") Scheduler blockingScheduler) {
+        this.taskRepository = taskRepository;
+        this.taskLogWriter = taskLogWriter;
+        this.planCache = planCache;
+        this.executionService = executionService;
+        this.eventBroker = eventBroker;
+        this.cancellationRegistry = cancellationRegistry;
+        this.blockingScheduler = blockingScheduler;
+    }
+    
+    // 父任务不经过任务队列，所在实例失效后没有实例接手，由各实例定期清理
+    @PostConstruct
+    public void startSweeper() {
+        sweeper = Flux.interval(Duration.ZERO, Duration.ofMillis(heartbeatTimeout), blockingScheduler)
+                .subscribe(tick -> sweep());
+    }
+    
+    @PreDestroy
+    public void stopSweeper() {
+        sweeper.dispose();
+    }
+    
+    // 结果随响应按输入顺序流式返回；客户端断开即取消整个批量任务
+    public BulkExecution executeStreaming(String workflowId, InputStream body, Integer parallelism) {
+        Job job = start(workflowId, body, parallelism, "stream");
+        return new BulkExecution(job.task().getId(), supervise(job, records(job)));
+    }
+    
+    // 结果写入本实例的结果文件，通过 GET /tasks/{id}/results 下载；返回父任务 ID
+    public String executeToFile(String workflowId, InputStream body, Integer parallelism) {
+        Job job = start(workflowId, body, parallelism, "file");
+        Path resultFile = resultFile(job.task().getId());
+        Flux<BulkRecordDTO> written = Flux.using(
+                () -> {
+                    Files.createDirectories(resultFile.getParent());
+                    return Files.newBufferedWriter(resultFile, StandardCharsets.UTF_8);
+                },
+                writer -> records(job)
+                        .publishOn(blockingScheduler)
+                        .doOnNext(record -> writeLine(writer, record)),
+                BulkExecutionService::closeQuietly);
+        supervise(job, written).subscribe(
+                record -> { },
+                e -> log.error("批量执行失败: {}", job.task().getId(), e));
+        return job.task().getId();
+    }
+    
+    public Resource getResults(String taskId) {
+        if (!taskRepository.existsById(taskId)) {
+            throw new RuntimeException("任务不存在: " + taskId);
+        }
+        Path file = resultFile(taskId);
+        if (!Files.isRegularFile(file)) {
+            throw new RuntimeException("批量结果文件不存在: " + taskId);
+        }
+        return new FileSystemResource(file);
+    }
+    
+    // 批量任务的输入只记录批量参数，记录本身不落库，无法重新执行
+    public static boolean isBulk(Task task) {
+        return task.getInput() != null && task.getInput().get() instanceof Map<?, ?> input
+                && input.get("bulk") instanceof Map;
+    }
+    
+    private Job start(String workflowId, InputStream body, Integer parallelism, String output) {
+        // 工作流不存在时在读取请求体之前失败
+        CompiledWorkflowPlan plan = planCache.getPlan(workflowId);
+        int effectiveParallelism = parallelism == null
+                ? defaultParallelism
+                : Math.max(1, Math.min(parallelism, maxParallelism));
+        
+        Path input = spool(body);
+        long total;
+        try (Stream<String> lines = Files.lines(input, StandardCharsets.UTF_8)) {
+            total = lines.filter(line -> !line.isBlank()).count();
+        } catch (IOException | RuntimeException e) {
+            deleteQuietly(input);
+            throw new RuntimeException("读取批量输入失败: " + e.getMessage(), e);
+        }
+        
+        Progress progress = new Progress(total);
+        Map<String, Object> metadata = new LinkedHashMap<>();
+        metadata.put("records", total);
+        metadata.put("parallelism", effectiveParallelism);
+        metadata.put("output", output);
+        
+        Task task = new Task();
+        task.setWorkflowId(workflowId);
+        task.setStatus(Task.TaskStatus.RUNNING);
+        LocalDateTime now = LocalDateTime.now();
+        task.setCreatedAt(now);
+        task.setStartTime(now);
+        task.setHeartbeatAt(now);
+        task.setInput(LazyJson.of(Map.of("bulk", metadata)));
+        task.setResult(LazyJson.of(progress.snapshot()));
+        task = taskRepository.save(task);
+        input = claimSpool(input, task.getId());
+        publishStatus(task.getId(), Task.TaskStatus.RUNNING, null);
+        
+        return new Job(task, plan, input, effectiveParallelism, progress);
+    }
+    
+    // 先把请求体完整落盘: 上传尽快结束，也能在执行前统计记录总数
+    private Path spool(InputStream body) {
+        Path file = null;
+        try (body) {
+            Path dir = Paths.get(spoolDir);
+            Files.createDirectories(dir);
+            file = Files.createTempFile(dir, SPOOL_PREFIX, SPOOL_SUFFIX);
+            Files.copy(body, file, StandardCopyOption.REPLACE_EXISTING);
+            return file;
+        } catch (IOException e) {
+            if (file != null) {
+                deleteQuietly(file);
+            }
+            throw new RuntimeException("读取批量输入失败: " + e.getMessage(), e);
+        }
+    }
+    
+    // 暂存文件改用任务ID命名，所在实例失效时其他实例或重启后的实例可以按任务状态清理
+    private Path claimSpool(Path file, String taskId) {
+        try {
+            return Files.move(file, file.resolveSibling(taskId + SPOOL_SUFFIX), StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            log.warn("重命名批量暂存文件失败: {}", file, e);
+            return file;
+        }
+    }
+    
+    // 记录按行号顺序输出，最多 parallelism 条同时执行；模块调用在限流队列中共用父任务的名额
+    private Flux<BulkRecordDTO> records(Job job) {
+        return Flux.using(
+                        () -> Files.newBufferedReader(job.input(), StandardCharsets.UTF_8),
+                        reader -> Flux.fromStream(reader.lines()).index(),
+                        BulkExecutionService::closeQuietly)
+                // 读文件是阻塞的，下游请求也切到 blockingScheduler 上读取
+                .subscribeOn(blockingScheduler)
+                .filter(line -> !line.getT2().isBlank())
+                .flatMapSequential(line -> executeRecord(job, line.getT1() + 1, line.getT2()), job.parallelism())
+                .doOnNext(job.progress()::record);
+    }
+    
+    private Mono<BulkRecordDTO> executeRecord(Job job, long line, String json) {
+        Object input;
+        try {
+            input = JsonSupport.MAPPER.readValue(json, Object.class);
+        } catch (JsonProcessingException e) {
+            return Mono.just(failed(job, line, "无效的 JSON: " + e.getOriginalMessage()));
+        }
+        return executionService.executeQuietly(job.task().getId(), job.plan(), input)
+                .map(result -> BulkRecordDTO.completed(line, result))
+                .switchIfEmpty(Mono.fromSupplier(() -> BulkRecordDTO.completed(line, null)))
+                .onErrorResume(e -> Mono.just(failed(job, line, e.getMessage())));
+    }
+    
+    private BulkRecordDTO failed(Job job, long line, String error) {
+        TaskLog log = new TaskLog();
+        log.setTaskId(job.task().getId());
+        log.setModuleId("");
+        log.setLevel(TaskLog.LogLevel.ERROR);
+        log.setMessage("第 " + line + " 行执行失败: " + error);
+        log.setTimestamp(LocalDateTime.now());
+        log.setData(Map.of("line", line));
+        taskLogWriter.append(log);
+        return BulkRecordDTO.failed(line, error);
+    }
+    
+    // 父任务的生命周期: 注册取消、定期上报进度，结束时写回最终计数并清理暂存文件
+    private <T> Flux<T> supervise(Job job, Flux<T> pipeline) {
+        String jobId = job.task().getId();
+        Sinks.One<Boolean> cancelled = Sinks.one();
+        Disposable cancel = () -> cancelled.tryEmitValue(Boolean.TRUE);
+        Disposable.Swap ticker = Disposables.swap();
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        
+        return pipeline
+                .takeUntilOther(cancelled.asMono())
+                .doOnSubscribe(subscription -> {
+                    cancellationRegistry.register(jobId, cancel);
+                    Duration interval = Duration.ofMillis(progressInterval);
+                    ticker.update(Flux.interval(interval, interval, blockingScheduler)
+                            .subscribe(tick -> reportProgress(jobId, job.progress())));
+                })
+                .doOnError(failure::set)
+                .doFinally(signal -> {
+                    ticker.dispose();
+                    cancellationRegistry.unregister(jobId, cancel);
+                    blockingScheduler.schedule(() -> {
+                        deleteQuietly(job.input());
+                        finish(jobId, job.progress(), signal, failure.get());
+                    });
+                });
+    }
+    
+    // 进度没有变化时只刷新心跳，单条记录执行很久也不会被当作失效任务
+    private void reportProgress(String jobId, Progress progress) {
+        if (!progress.hasChanged()) {
+            try {
+                taskRepository.heartbeat(jobId, Task.TaskStatus.RUNNING, LocalDateTime.now());
+            } catch (Exception e) {
+                log.warn("刷新批量任务心跳失败: {}", e.getMessage());
+            }
+            return;
+        }
+        Map<String, Object> snapshot = progress.snapshot();
+        try {
+            taskRepository.updateProgress(jobId, Task.TaskStatus.RUNNING, LazyJson.of(snapshot), LocalDateTime.now());
+        } catch (Exception e) {
+            log.warn("更新批量任务进度失败: {}", e.getMessage());
+        }
+        TaskEventDTO event = new TaskEventDTO();
+        event.setTaskId(jobId);
+        event.setType(TaskEventDTO.EventType.PROGRESS);
+        event.setData(snapshot);
+        eventBroker.publish(event);
+    }
+    
+    // 通过取消接口取消时数据库已是 CANCELLED，这里的条件更新不会覆盖
+    private void finish(String jobId, Progress progress, SignalType signal, Throwable failure) {
+        Task.TaskStatus status = switch (signal) {
+            case ON_ERROR -> Task.TaskStatus.FAILED;
+            case CANCEL -> Task.TaskStatus.CANCELLED;
+            default -> Task.TaskStatus.COMPLETED;
+        };
+        String error = failure != null ? failure.getMessage() : null;
+        Map<String, Object> snapshot = progress.snapshot();
+        try {
+            if (taskRepository.markFinished(jobId, List.of(Task.TaskStatus.RUNNING), status,
+                    LazyJson.of(snapshot), error, null, LocalDateTime.now()) == 0) {
+                return;
+            }
+        } catch (Exception e) {
+            log.error("更新批量任务状态失败: {}", jobId, e);
+            return;
+        }
+        
+        TaskLog log = new TaskLog();
+        log.setTaskId(jobId);
+        log.setModuleId("");
+        log.setLevel(status == Task.TaskStatus.COMPLETED ? TaskLog.LogLevel.INFO : TaskLog.LogLevel.WARN);
+        log.setMessage("批量执行结束: " + status.name());
+        log.setTimestamp(LocalDateTime.now());
+        log.setData(snapshot);
+        taskLogWriter.append(log);
+        publishStatus(jobId, status, error);
+    }
+    
+    private void sweep() {
+        try {
+            failStaleJobs();
+            cleanSpool();
+        } catch (Exception e) {
+            log.warn("清理失效的批量任务失败: {}", e.getMessage());
+        }
+    }
+    
+    // 心跳超时的父任务标记失败，进度计数保留最后一次写回的值
+    private void failStaleJobs() {
+        LocalDateTime now = LocalDateTime.now();
+        LocalDateTime deadline = now.minus(Duration.ofMillis(heartbeatTimeout));
+        for (String taskId : taskRepository.findIdsByHeartbeatBefore(Task.TaskStatus.RUNNING, deadline)) {
+            // 查询之后可能刚刷新过心跳，条件更新会再次校验
+            String error = "批量任务心跳超时，执行实例已失效";
+            if (taskRepository.markStale(taskId, Task.TaskStatus.RUNNING, Task.TaskStatus.FAILED,
+                    error, deadline, now) == 0) {
+                continue;
+            }
+            log.warn("{}: {}", error, taskId);
+            
+            TaskLog taskLog = new TaskLog();
+            taskLog.setTaskId(taskId);
+            taskLog.setModuleId("");
+            taskLog.setLevel(TaskLog.LogLevel.WARN);
+            taskLog.setMessage(error);
+            taskLog.setTimestamp(now);
+            taskLogWriter.append(taskLog);
+            publishStatus(taskId, Task.TaskStatus.FAILED, error);
+        }
+    }
+    
+    // 删除已不在执行中的任务留下的暂存文件；上传中的临时文件尚未关联任务，不清理
+    private void cleanSpool() throws IOException {
+        Path dir = Paths.get(spoolDir);
+        if (!Files.isDirectory(dir)) {
+            return;
+        }
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(dir, "*" + SPOOL_SUFFIX)) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                if (name.startsWith(SPOOL_PREFIX)) {
+                    continue;
+                }
+                String taskId = name.substring(0, name.length() - SPOOL_SUFFIX.length());
+                boolean running = taskRepository.findById(taskId)
+                        .map(task -> task.getStatus() == Task.TaskStatus.RUNNING)
+                        .orElse(false);
+                if (!running) {
+                    deleteQuietly(file);
+                }
+            }
+        }
+    }
+    
+    private void publishStatus(String jobId, Task.TaskStatus status, String error) {
+        TaskEventDTO event = new TaskEventDTO();
+        event.setTaskId(jobId);
+        event.setType(TaskEventDTO.EventType.STATUS);
+        event.setStatus(status.name());
+        event.setMessage(error);
+        eventBroker.publish(event);
+    }
+    
+    private Path resultFile(String taskId) {
+        return Paths.get(outputDir).resolve(taskId + ".ndjson");
+    }
+    
+    private static void writeLine(BufferedWriter writer, BulkRecordDTO record) {
+        try {
+            writer.write(JsonSupport.MAPPER.writeValueAsString(record));
+            writer.newLine();
+        } catch (IOException e) {
+            throw new RuntimeException("写入批量结果失败: " + e.getMessage(), e);
+        }
+    }
+    
+    private static void closeQuietly(AutoCloseable closeable) {
+        try {
+            closeable.close();
+        } catch (Exception e) {
+            log.warn("关闭批量文件失败: {}", e.getMessage());
+        }
+    }
+    
+    private static void deleteQuietly(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            log.warn("删除批量暂存文件失败: {}", file, e);
+        }
+    }
+    
+    public record BulkExecution(String taskId, Flux<BulkRecordDTO> records) {
+    }
+    
+    private record Job(Task task, CompiledWorkflowPlan plan, Path input, int parallelism, Progress progress) {
+    }
+    
+    private static final class Progress {
+        
+        private final long total;
+        private final LongAdder succeeded = new LongAdder();
+        private final LongAdder failed = new LongAdder();
+        private volatile long reported;
+        
+        Progress(long total) {
+            this.total = total;
+        }
+        
+        void record(BulkRecordDTO record) {
+            if ("COMPLETED".equals(record.getStatus())) {
+                succeeded.increment();
+            } else {
+                failed.increment();
+            }
+        }
+        
+        boolean hasChanged() {
+            long processed = succeeded.sum() + failed.sum();
+            if (processed == reported) {
+                return false;
+            }
+            reported = processed;
+            return true;
+        }
+        
+        Map<String, Object> snapshot() {
+            long ok = succeeded.sum();
+            long failures = failed.sum();
+            Map<String, Object> snapshot = new LinkedHashMap<>();
+            snapshot.put("total", total);
+            snapshot.put("processed", ok + failures);
+            snapshot.put("succeeded", ok);
+            snapshot.put("failed", failures);
+            return snapshot;
+        }
+    }
+}
@@ -0,0 +1,140 @@
+package com.aidragdrop.service;
+
+import com.aidragdrop.entity.AIModule;
+import com.aidragdrop.entity.WorkflowNode;
+import org.springframework.http.HttpMethod;
+import org.springframework.web.reactive.function.client.WebClient;
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+// 编译后的工作流执行计划: 拓扑顺序、已解析的模块和预构建的请求模板，只读且可在多次执行间共享
+public class CompiledWorkflowPlan {
+    
+    private final String workflowId;
+    private final LocalDateTime updatedAt;
+    private final List<PlanNode> nodes;
+    private final Map<String, PlanNode> nodesById;
+    private final List<String> sinks;
+    private final Set<String> moduleIds;
+    
+    public CompiledWorkflowPlan(String workflowId, LocalDateTime updatedAt, List<PlanNode> nodes, List<String> sinks) {
+        this.workflowId = workflowId;
+        this.updatedAt = updatedAt;
+        this.nodes = List.copyOf(nodes);
+        Map<String, PlanNode> byId = new LinkedHashMap<>();
+        nodes.forEach(node -> byId.put(node.nodeId(), node));
+        this.nodesById = Map.copyOf(byId);
+        this.sinks = List.copyOf(sinks);
+        this.moduleIds = nodes.stream()
+                .flatMap(node -> node.map() != null ? node.map().body().stream() : Stream.of(node))
+                .map(PlanNode::moduleId)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toUnmodifiableSet());
+    }
+    
+    public String getWorkflowId() {
+        return workflowId;
+    }
+    
+    public LocalDateTime getUpdatedAt() {
+        return updatedAt;
+    }
+    
+    // 按拓扑顺序排列
+    public List<PlanNode> getNodes() {
+        return nodes;
+    }
+    
+    public PlanNode getNode(String nodeId) {
+        return nodesById.get(nodeId);
+    }
+    
+    public List<String> getSinks() {
+        return sinks;
+    }
+    
+    public boolean usesModule(String moduleId) {
+        return moduleIds.contains(moduleId);
+    }
+    
+    public boolean isEmpty() {
+        return nodes.isEmpty();
+    }
+    
+    // method + client 即该节点的 HTTP 请求模板，认证和自定义请求头已在 client 中配置好
+    // streamSource: 以分片流作为输入时的前驱节点ID；streamConsumers: 直接消费本节点分片流的后继数
+    // map / route: 映射节点和条件节点的配置，内置节点没有模块和请求模板
+    public record PlanNode(
+            String nodeId,
+            String moduleId,
+            AIModule module,
+            HttpMethod method,
+            WebClient client,
+            List<String> predecessors,
+            WorkflowNode definition,
+            String streamSource,
+            int streamConsumers,
+            MapSpec map,
+            RouteSpec route) {
+        
+        public boolean streamingResponse() {
+            return module != null && module.getApiConfig().isStreamingResponse();
+        }
+        
+        // 批量调用把多个输入放进一个请求体，只适用于非流式的 POST 请求
+        public boolean batched() {
+            return module != null && module.getApiConfig().isBatched()
+                    && HttpMethod.POST.equals(method) && !streamingResponse();
+        }
+    }
+    
+    // 对输入列表的每个元素依次执行 body 中的模块节点，最多 parallelism 个元素同时执行
+    // itemsPath 为空时输入本身即列表；ordered 为 false 时结果按完成顺序排列
+    // maxFailures 只在 onError 为 SKIP / COLLECT 时生效，负数表示不限制
+    public record MapSpec(
+            List<PlanNode> body,
+            String itemsPath,
+            int parallelism,
+            boolean ordered,
+            FailurePolicy onError,
+            int maxFailures) {
+    }
+    
+    // 条件节点: 按顺序匹配 branches，都不匹配时选择 defaultPort；输入原样传给选中端口连出的后继，其余后继跳过
+    // targets: 后继节点ID -> 可激活该后继的端口
+    public record RouteSpec(List<Branch> branches, String defaultPort, Map<String, Set<String>> targets) {
+        
+        public String choose(Object input) {
+            for (Branch branch : branches) {
+                if (branch.when().test(input)) {
+                    return branch.port();
+                }
+            }
+            return defaultPort;
+        }
+        
+        public boolean routes(String port, String successor) {
+            return targets.getOrDefault(successor, Set.of()).contains(port);
+        }
+        
+        // 选中的端口没有连接时工作流在此提前结束，本节点的结果计入工作流结果
+        public boolean hasTargets(String port) {
+            return targets.values().stream().anyMatch(ports -> ports.contains(port));
+        }
+    }
+    
+    public record Branch(String port, Predicate<Object> when) {
+    }
+    
+    // 元素失败时: FAIL 中止整个节点并取消其余元素，SKIP 从结果中去掉，COLLECT 在结果中以 {"error": ...} 占位
+    public enum FailurePolicy {
+        FAIL, SKIP, COLLECT
+    }
+}
@@ -0,0 +1,61 @@
+package com.aidragdrop.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+
+// 本地文件系统实现: 先写临时文件再原子替换，读到的总是完整内容
+// 只有挂载到同一共享目录时，其他实例才能读到本实例写入的对象
+@Component
+@Slf4j
+@ConditionalOnProperty(name = "app.blob-store.type", havingValue = "file", matchIfMissing = true)
+public class FileBlobStore implements BlobStore {
+    
+    private final Path root;
+    
+    public FileBlobStore(@Value("${app.blob-store.dir:${java.io.tmpdir}/ai-drag-drop/blobs}") String dir) {
+        this.root = Paths.get(dir).toAbsolutePath().normalize();
+    }
+    
+    @Override
+    public void put(String key, byte[] data) throws IOException {
+        Path file = resolve(key);
+        Files.createDirectories(file.getParent());
+        Path temp = Files.createTempFile(file.getParent(), file.getFileName().toString(), ".tmp");
+        try {
+            Files.write(temp, data);
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+    
+    @Override
+    public byte[] get(String key) throws IOException {
+        return Files.readAllBytes(resolve(key));
+    }
+    
+    @Override
+    public void delete(String key) {
+        try {
+            Files.deleteIfExists(resolve(key));
+        } catch (IOException e) {
+            log.warn("删除 blob 失败: {}: {}", key, e.getMessage());
+        }
+    }
+    
+    // 键不能指向存储目录之外
+    private Path resolve(String key) {
+        Path file = root.resolve(key).normalize();
+        if (!file.startsWith(root) || file.equals(root)) {
+            throw new IllegalArgumentException("无效的 blob 键: " + key);
+        }
+        return file;
+    }
+}
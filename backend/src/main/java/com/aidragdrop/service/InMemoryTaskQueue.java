@@ -0,0 +1,93 @@
+package com.aidragdrop.service;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+// 单实例 / 测试用的进程内实现，语义与 Redis Streams 实现一致，但重启后队列丢失
+@Component
+@ConditionalOnProperty(name = "app.queue.type", havingValue = "memory")
+public class InMemoryTaskQueue implements TaskQueue {
+    
+    private final LinkedBlockingQueue<QueuedTask> ready = new LinkedBlockingQueue<>();
+    private final Map<String, InFlight> inFlight = new ConcurrentHashMap<>();
+    private final AtomicLong sequence = new AtomicLong();
+    
+    @Override
+    public void enqueue(String taskId) {
+        ready.add(new QueuedTask(String.valueOf(sequence.incrementAndGet()), taskId, 0));
+    }
+    
+    @Override
+    public List<QueuedTask> poll(int max, Duration timeout) {
+        List<QueuedTask> batch = new ArrayList<>();
+        try {
+            QueuedTask first = ready.poll(timeout.toMillis(), TimeUnit.MILLISECONDS);
+            if (first == null) {
+                return batch;
+            }
+            batch.add(first);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return batch;
+        }
+        ready.drainTo(batch, max - 1);
+        
+        List<QueuedTask> delivered = new ArrayList<>(batch.size());
+        for (QueuedTask message : batch) {
+            QueuedTask delivery = new QueuedTask(message.messageId(), message.taskId(), message.deliveryCount() + 1);
+            inFlight.put(delivery.messageId(), new InFlight(delivery, System.nanoTime()));
+            delivered.add(delivery);
+        }
+        return delivered;
+    }
+    
+    @Override
+    public List<QueuedTask> claimStale(Duration visibilityTimeout, int max) {
+        List<QueuedTask> claimed = new ArrayList<>();
+        long now = System.nanoTime();
+        for (String messageId : inFlight.keySet()) {
+            if (claimed.size() >= max) {
+                break;
+            }
+            InFlight renewed = inFlight.computeIfPresent(messageId, (id, entry) ->
+                    now - entry.deliveredAt() >= visibilityTimeout.toNanos()
+                            ? new InFlight(new QueuedTask(id, entry.message().taskId(), entry.message().deliveryCount() + 1), now)
+                            : entry);
+            if (renewed != null && renewed.deliveredAt() == now) {
+                claimed.add(renewed.message());
+            }
+        }
+        return claimed;
+    }
+    
+    @Override
+    public void heartbeat(QueuedTask message) {
+        inFlight.computeIfPresent(message.messageId(), (id, entry) -> new InFlight(entry.message(), System.nanoTime()));
+    }
+    
+    @Override
+    public void ack(QueuedTask message) {
+        inFlight.remove(message.messageId());
+    }
+    
+    @Override
+    public boolean isDurable() {
+        return false;
+    }
+    
+    @Override
+    public long size() {
+        return ready.size();
+    }
+    
+    private record InFlight(QueuedTask message, long deliveredAt) {
+    }
+}
@@ -0,0 +1,205 @@
+package com.aidragdrop.service;
+
+import com.aidragdrop.entity.AIModule;
+import com.aidragdrop.entity.ApiConfig;
+import com.aidragdrop.entity.JsonSupport;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import reactor.core.Disposable;
+import reactor.core.Disposables;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.MonoSink;
+import reactor.core.publisher.Sinks;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// 微批处理: 同一模块版本的并发调用（可来自不同任务）在 maxLingerMs 内最多凑 maxSize 个，合并为一次上游请求
+// 整批作为一次调用经过模块限流和容错策略，响应数组按位置分发回各调用方，失败时批内调用一起失败
+@Component
+@Slf4j
+public class ModuleBatcher {
+    
+    private static final long DEFAULT_MAX_LINGER_MS = 10;
+    // 批请求不属于单个任务，在模块限流处共用一个轮询队列
+    private static final String BATCH_QUEUE = "batch";
+    
+    private final ModuleRateLimiter rateLimiter;
+    private final ModuleResilience resilience;
+    private final Map<String, Batcher> batchers = new ConcurrentHashMap<>();
+    
+    @Value("${app.api-timeout:30000}")
+    private long apiTimeout;
+    
+    public ModuleBatcher(ModuleRateLimiter rateLimiter, ModuleResilience resilience) {
+        this.rateLimiter = rateLimiter;
+        this.resilience = resilience;
+    }
+    
+    // 取消订阅即退出所在批次，批内调用全部取消时中断批请求
+    public Mono<BatchedResult> submit(CompiledWorkflowPlan.PlanNode node, Object input) {
+        AIModule module = node.module();
+        String key = module.getId() + ":" + module.getVersion();
+        return Mono.create(sink -> {
+            Item item = new Item(input, sink);
+            sink.onCancel(item::cancel);
+            // 批处理器在模块变更时关闭，此时换用新版本的批处理器
+            while (!batchers.computeIfAbsent(key, k -> new Batcher(node)).add(item)) {
+                Thread.onSpinWait();
+            }
+        });
+    }
+    
+    // 模块配置变化后关闭旧的批处理器，已排队的调用按旧配置发出
+    public void invalidate(String moduleId) {
+        String prefix = moduleId + ":";
+        batchers.keySet().removeIf(key -> {
+            if (!key.startsWith(prefix)) {
+                return false;
+            }
+            Batcher batcher = batchers.get(key);
+            if (batcher != null) {
+                batcher.close();
+            }
+            return true;
+        });
+    }
+    
+    public int getPendingCount() {
+        return batchers.values().stream().mapToInt(batcher -> batcher.pending.get()).sum();
+    }
+    
+    private final class Batcher {
+        
+        private final CompiledWorkflowPlan.PlanNode node;
+        private final Sinks.Many<Item> queue = Sinks.many().unicast().onBackpressureBuffer();
+        private final AtomicInteger pending = new AtomicInteger();
+        
+        Batcher(CompiledWorkflowPlan.PlanNode node) {
+            this.node = node;
+            ApiConfig.Batch batch = node.module().getApiConfig().getBatch();
+            long linger = batch.getMaxLingerMs() != null ? batch.getMaxLingerMs() : DEFAULT_MAX_LINGER_MS;
+            queue.asFlux()
+                    .bufferTimeout(batch.getMaxSize(), Duration.ofMillis(linger))
+                    .subscribe(this::dispatch);
+        }
+        
+        // 多个任务并发提交，对 sink 的发射需要串行化
+        synchronized boolean add(Item item) {
+            if (!queue.tryEmitNext(item).isSuccess()) {
+                return false;
+            }
+            pending.incrementAndGet();
+            return true;
+        }
+        
+        synchronized void close() {
+            queue.tryEmitComplete();
+        }
+        
+        private void dispatch(List<Item> items) {
+            pending.addAndGet(-items.size());
+            List<Item> live = items.stream().filter(item -> !item.cancelled).toList();
+            if (live.isEmpty()) {
+                return;
+            }
+            
+            BatchCall call = new BatchCall(live.size());
+            for (Item item : live) {
+                item.batch = call;
+                // 分批期间取消的调用由这里负责离开批次
+                if (item.cancelled) {
+                    item.leave();
+                }
+            }
+            call.subscription.update(send(live).subscribe(
+                    results -> {
+                        for (int i = 0; i < live.size(); i++) {
+                            live.get(i).sink.success(new BatchedResult(results.get(i), live.size()));
+                        }
+                    },
+                    e -> live.forEach(item -> item.sink.error(e))));
+        }
+        
+        private Mono<List<?>> send(List<Item> items) {
+            AIModule module = node.module();
+            ApiConfig apiConfig = module.getApiConfig();
+            ApiConfig.Batch batch = apiConfig.getBatch();
+            
+            List<Object> inputs = new ArrayList<>(items.size());
+            items.forEach(item -> inputs.add(item.input));
+            Object body = batch.getInputField() != null ? Map.of(batch.getInputField(), inputs) : inputs;
+            Duration timeout = Duration.ofMillis(apiConfig.getTimeoutOrDefault(apiTimeout));
+            
+            Mono<Object> attempt = rateLimiter.acquire(module, BATCH_QUEUE, body)
+                    .flatMap(permit -> node.client().post()
+                            .bodyValue(body)
+                            .retrieve()
+                            .bodyToMono(Object.class)
+                            .timeout(timeout)
+                            .doFinally(signal -> permit.release()));
+            
+            return resilience.execute(module, apiConfig.isReplayable(), attempt)
+                    .switchIfEmpty(Mono.error(() -> new IllegalStateException("批量响应为空")))
+                    .map(response -> {
+                        Object results = batch.getOutputPath() != null
+                                ? JsonSupport.valueAt(response, batch.getOutputPath())
+                                : response;
+                        if (!(results instanceof List<?> list) || list.size() != items.size()) {
+                            throw new IllegalStateException("批量响应与请求数量不一致: 请求 " + items.size() + " 个");
+                        }
+                        return list;
+                    });
+        }
+    }
+    
+    private static final class BatchCall {
+        
+        private final AtomicInteger remaining;
+        private final Disposable.Swap subscription = Disposables.swap();
+        
+        BatchCall(int size) {
+            this.remaining = new AtomicInteger(size);
+        }
+        
+        void leave() {
+            if (remaining.decrementAndGet() == 0) {
+                subscription.dispose();
+            }
+        }
+    }
+    
+    private static final class Item {
+        
+        private final Object input;
+        private final MonoSink<BatchedResult> sink;
+        private final AtomicBoolean left = new AtomicBoolean();
+        private volatile boolean cancelled;
+        private volatile BatchCall batch;
+        
+        Item(Object input, MonoSink<BatchedResult> sink) {
+            this.input = input;
+            this.sink = sink;
+        }
+        
+        void cancel() {
+            cancelled = true;
+            leave();
+        }
+        
+        void leave() {
+            BatchCall call = batch;
+            if (call != null && left.compareAndSet(false, true)) {
+                call.leave();
+            }
+        }
+    }
+    
+    public record BatchedResult(Object value, int batchSize) {
+    }
+}
@@ -0,0 +1,96 @@
+package com.aidragdrop.service;
+
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.stereotype.Component;
+import java.nio.charset.StandardCharsets;
+import java.util.UUID;
+
+// 模块变更后失效本实例的所有模块级缓存，并通过 Redis pub/sub 通知其他实例；未启用 Redis 时只失效本实例
+@Component
+@Slf4j
+public class ModuleCacheInvalidator implements MessageListener {
+    
+    private final String instanceId = UUID.randomUUID().toString();
+    
+    private final ModuleNearCache nearCache;
+    private final ModuleClientRegistry clientRegistry;
+    private final NodeResultCache resultCache;
+    private final WorkflowPlanCache planCache;
+    private final ModuleResilience resilience;
+    private final ModuleBatcher batcher;
+    private final StringRedisTemplate redisTemplate;
+    private final RedisMessageListenerContainer listenerContainer;
+    
+    @Value("${app.module-cache.channel:ai-drag-drop:module-invalidation}")
+    private String channel;
+    
+    public ModuleCacheInvalidator(
+            ModuleNearCache nearCache,
+            ModuleClientRegistry clientRegistry,
+            NodeResultCache resultCache,
+            WorkflowPlanCache planCache,
+            ModuleResilience resilience,
+            ModuleBatcher batcher,
+            ObjectProvider<StringRedisTemplate> redisTemplate,
+            ObjectProvider<RedisMessageListenerContainer> listenerContainer) {
+        this.nearCache = nearCache;
+        this.clientRegistry = clientRegistry;
+        this.resultCache = resultCache;
+        this.planCache = planCache;
+        this.resilience = resilience;
+        this.batcher = batcher;
+        this.redisTemplate = redisTemplate.getIfAvailable();
+        this.listenerContainer = listenerContainer.getIfAvailable();
+    }
+    
+    @PostConstruct
+    public void subscribe() {
+        if (listenerContainer == null) {
+            return;
+        }
+        listenerContainer.addMessageListener(this, new ChannelTopic(channel));
+    }
+    
+    public void invalidate(String moduleId) {
+        invalidateLocal(moduleId);
+        if (redisTemplate == null) {
+            return;
+        }
+        try {
+            redisTemplate.convertAndSend(channel, instanceId + "|" + moduleId);
+        } catch (Exception e) {
+            // 广播失败时其他实例依靠过期时间兜底
+            log.warn("广播模块缓存失效消息失败: {}", e.getMessage());
+        }
+    }
+    
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        String payload = new String(message.getBody(), StandardCharsets.UTF_8);
+        int separator = payload.indexOf('|');
+        if (separator < 0) {
+            return;
+        }
+        if (!instanceId.equals(payload.substring(0, separator))) {
+            invalidateLocal(payload.substring(separator + 1));
+        }
+    }
+    
+    private void invalidateLocal(String moduleId) {
+        nearCache.invalidate(moduleId);
+        clientRegistry.invalidate(moduleId);
+        resultCache.invalidate(moduleId);
+        planCache.invalidateModule(moduleId);
+        resilience.invalidate(moduleId);
+        batcher.invalidate(moduleId);
+        log.debug("已失效模块缓存: {}", moduleId);
+    }
+}
@@ -0,0 +1,83 @@
+package com.aidragdrop.service;
+
+import com.aidragdrop.entity.AIModule;
+import com.aidragdrop.entity.ApiConfig;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.client.WebClient;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+// 按 模块ID + 版本 缓存已配置好认证和请求头的 WebClient，模块更新或删除时失效
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class ModuleClientRegistry {
+    
+    private final WebClient.Builder webClientBuilder;
+    private final ReactorClientHttpConnector moduleHttpConnector;
+    private final Map<String, WebClient> clients = new ConcurrentHashMap<>();
+    
+    public WebClient getClient(AIModule module) {
+        return clients.computeIfAbsent(cacheKey(module.getId(), module.getVersion()), key -> build(module));
+    }
+    
+    public void invalidate(String moduleId) {
+        String prefix = moduleId + ":";
+        if (clients.keySet().removeIf(key -> key.startsWith(prefix))) {
+            log.debug("已失效模块 {} 的 WebClient", moduleId);
+        }
+    }
+    
+    private WebClient build(AIModule module) {
+        ApiConfig apiConfig = module.getApiConfig();
+        
+        WebClient.Builder clientBuilder = webClientBuilder.clone()
+                .clientConnector(moduleHttpConnector)
+                .baseUrl(apiConfig.getUrl())
+                .defaultHeader(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE);
+        
+        // 设置认证
+        setAuthHeaders(clientBuilder, apiConfig.getAuth());
+        
+        // 设置自定义请求头
+        if (apiConfig.getHeaders() != null) {
+            apiConfig.getHeaders().forEach(clientBuilder::defaultHeader);
+        }
+        
+        return clientBuilder.build();
+    }
+    
+    void setAuthHeaders(WebClient.Builder builder, ApiConfig.Auth auth) {
+        if (auth == null || auth.getType() == null) {
+            return;
+        }
+        
+        String type = auth.getType();
+        Map<String, String> credentials = auth.getCredentials();
+        
+        if ("bearer".equals(type)) {
+            String token = credentials.get("token");
+            builder.defaultHeader(HttpHeaders.AUTHORIZATION, "Bearer " + token);
+        } else if ("basic".equals(type)) {
+            String username = credentials.get("username");
+            String password = credentials.get("password");
+            // Basic Auth 需要 Base64 编码
+            String authHeader = java.util.Base64.getEncoder()
+                    .encodeToString((username + ":" + password).getBytes());
+            builder.defaultHeader(HttpHeaders.AUTHORIZATION, "Basic " + authHeader);
+        } else if ("apiKey".equals(type)) {
+            String key = credentials.get("key");
+            String value = credentials.get("value");
+            builder.defaultHeader(key, value);
+        }
+    }
+    
+    private static String cacheKey(String moduleId, String version) {
+        return moduleId + ":" + version;
+    }
+}
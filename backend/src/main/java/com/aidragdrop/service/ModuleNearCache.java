@@ -0,0 +1,47 @@
+package com.aidragdrop.service;
+
+import com.aidragdrop.entity.AIModule;
+import com.aidragdrop.repository.AIModuleRepository;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import java.time.Duration;
+
+// 执行引擎使用的进程内模块定义缓存，省去每个节点一次数据库或 Redis 往返
+// 模块变更时由 ModuleCacheInvalidator 在所有实例上失效
+@Component
+public class ModuleNearCache {
+    
+    private final AIModuleRepository moduleRepository;
+    private final Cache<String, AIModule> modules;
+    
+    public ModuleNearCache(
+            AIModuleRepository moduleRepository,
+            @Value("${app.module-cache.max-size:10000}") long maxSize,
+            @Value("${app.module-cache-expire:3600}") long expireSeconds) {
+        this.moduleRepository = moduleRepository;
+        this.modules = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(Duration.ofSeconds(expireSeconds))
+                .recordStats()
+                .build();
+    }
+    
+    // 未命中时会查询数据库，调用方需在阻塞调度器上执行
+    public AIModule get(String moduleId) {
+        AIModule module = modules.get(moduleId, id -> moduleRepository.findById(id).orElse(null));
+        if (module == null) {
+            throw new RuntimeException("模块不存在: " + moduleId);
+        }
+        return module;
+    }
+    
+    public void invalidate(String moduleId) {
+        modules.invalidate(moduleId);
+    }
+    
+    public Cache<String, AIModule> getCache() {
+        return modules;
+    }
+}
@@ -0,0 +1,442 @@
+package com.aidragdrop.service;
+
+import com.aidragdrop.config.AsyncConfig;
+import com.aidragdrop.entity.AIModule;
+import com.aidragdrop.entity.JsonSupport;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.ReactiveStringRedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.MonoSink;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+// 模块级限流: 最大并发调用数（舱壁）+ 每秒请求数 / 每分钟 token 数令牌桶，按模块 config.limits 配置
+// 同一模块的等待者按任务轮询放行，单个任务的大量节点不会饿死共享该模块的其他任务
+// 令牌桶和并发租约存放在 Redis 中由所有实例共享，Redis 不可用或未启用（app.redis.enabled=false）时退化为本实例内限流
+@Component
+@Slf4j
+public class ModuleRateLimiter {
+    
+    // 原子地检查并发租约和两个令牌桶，全部满足时一并扣减并返回 0；否则返回需等待的毫秒数，并发已满返回 -1
+    // KEYS: 并发租约(ZSET, 分数为到期时间), 请求桶, token 桶; ARGV: maxInFlight, rps, tpm, tokens, leaseMs, member
+    private static final RedisScript<Long> ACQUIRE_SCRIPT = RedisScript.of("""
+            local time = redis.call('TIME')
+            local now = tonumber(time[1]) * 1000 + math.floor(tonumber(time[2]) / 1000)
+            local maxInFlight = tonumber(ARGV[1])
+            local rps = tonumber(ARGV[2])
+            local tpm = tonumber(ARGV[3])
+            local tokens = tonumber(ARGV[4])
+            
+            if maxInFlight > 0 then
+              redis.call('ZREMRANGEBYSCORE', KEYS[1], '-inf', now)
+              if redis.call('ZCARD', KEYS[1]) >= maxInFlight then
+                return -1
+              end
+            end
+            
+            local function level(key, capacity, perMs)
+              local bucket = redis.call('HMGET', key, 'tokens', 'ts')
+              if not bucket[1] then
+                return capacity
+              end
+              return math.min(capacity, tonumber(bucket[1]) + math.max(0, now - tonumber(bucket[2])) * perMs)
+            end
+            
+            local wait = 0
+            local requests = 0
+            local budget = 0
+            if rps > 0 then
+              requests = level(KEYS[2], math.max(1, rps), rps / 1000)
+              if requests < 1 then
+                wait = math.max(wait, math.ceil((1 - requests) * 1000 / rps))
+              end
+            end
+            if tpm > 0 then
+              budget = level(KEYS[3], tpm, tpm / 60000)
+              if budget < tokens then
+                wait = math.max(wait, math.ceil((tokens - budget) * 60000 / tpm))
+              end
+            end
+            if wait > 0 then
+              return wait
+            end
+            
+            if rps > 0 then
+              redis.call('HSET', KEYS[2], 'tokens', requests - 1, 'ts', now)
+              redis.call('PEXPIRE', KEYS[2], math.ceil(math.max(1, rps) * 1000 / rps) + 1000)
+            end
+            if tpm > 0 then
+              redis.call('HSET', KEYS[3], 'tokens', budget - tokens, 'ts', now)
+              redis.call('PEXPIRE', KEYS[3], 61000)
+            end
+            if maxInFlight > 0 then
+              redis.call('ZADD', KEYS[1], now + tonumber(ARGV[5]), ARGV[6])
+              redis.call('PEXPIRE', KEYS[1], tonumber(ARGV[5]))
+            end
+            return 0
+            """, Long.class);
+    
+    private static final Duration REDIS_TIMEOUT = Duration.ofSeconds(1);
+    // 无法得知真实用量时按输入 JSON 长度估算 token 数
+    private static final int CHARS_PER_TOKEN = 4;
+    private static final Permit UNLIMITED = new Permit(0, null);
+    
+    private final ReactiveStringRedisTemplate redisTemplate;
+    private final Map<String, Gate> gates = new ConcurrentHashMap<>();
+    private final String instanceId = UUID.randomUUID().toString();
+    private final AtomicLong leaseSequence = new AtomicLong();
+    // Redis 出错后在该时间点之前只使用本地限流
+    private volatile long redisRetryAt;
+    
+    @Value("${app.executor.mode:platform}")
+    private String executorMode;
+    
+    @Value("${app.executor.module-max-concurrency:32}")
+    private int defaultMaxInFlight;
+    
+    @Value("${app.module-limits.key-prefix:ai-drag-drop:module-limits:}")
+    private String keyPrefix;
+    
+    // 并发租约的有效期，持有租约的实例失效后名额在此之后释放
+    @Value("${app.module-limits.lease-timeout:300000}")
+    private long leaseTimeout;
+    
+    // 集群并发已满时重新检查的间隔（毫秒）
+    @Value("${app.module-limits.poll-interval:50}")
+    private long pollInterval;
+    
+    @Value("${app.module-limits.fallback-duration:30000}")
+    private long fallbackDuration;
+    
+    public ModuleRateLimiter(ObjectProvider<ReactiveStringRedisTemplate> redisTemplate) {
+        this.redisTemplate = redisTemplate.getIfAvailable();
+    }
+    
+    @SuppressWarnings("unchecked")
+    public Limits limitsOf(AIModule module) {
+        Map<String, Object> config = module.getConfig();
+        if (config == null || !(config.get("limits") instanceof Map)) {
+            return Limits.NONE;
+        }
+        Map<String, Object> limits = (Map<String, Object>) config.get("limits");
+        int maxInFlight = limits.get("maxInFlight") instanceof Number n ? n.intValue() : 0;
+        double requestsPerSecond = limits.get("requestsPerSecond") instanceof Number n ? n.doubleValue() : 0;
+        long tokensPerMinute = limits.get("tokensPerMinute") instanceof Number n ? n.longValue() : 0;
+        return new Limits(maxInFlight, requestsPerSecond, tokensPerMinute);
+    }
+    
+    // 放行后返回许可，调用结束（包括失败和取消）时必须 release；在等待中取消订阅即退出排队
+    public Mono<Permit> acquire(AIModule module, String taskId, Object input) {
+        Limits limits = limitsOf(module);
+        int localMaxInFlight = limits.maxInFlight() > 0 ? limits.maxInFlight() : implicitMaxInFlight();
+        if (!limits.shared() && localMaxInFlight <= 0) {
+            return Mono.just(UNLIMITED);
+        }
+        Gate gate = gates.computeIfAbsent(module.getId(), Gate::new);
+        gate.limits = limits;
+        gate.localMaxInFlight = localMaxInFlight;
+        int tokens = estimateTokens(limits, input);
+        return Mono.<Permit>create(sink -> gate.enqueue(new Waiter(taskId, tokens, sink)))
+                // 放行的同时被取消时许可会被丢弃，此处归还名额
+                .doOnDiscard(Permit.class, Permit::release);
+    }
+    
+    // 未配置 limits.maxInFlight 时，虚拟线程模式下仍按 module-max-concurrency 限制本实例的并发
+    private int implicitMaxInFlight() {
+        return AsyncConfig.MODE_VIRTUAL.equals(executorMode) ? defaultMaxInFlight : 0;
+    }
+    
+    private int estimateTokens(Limits limits, Object input) {
+        if (limits.tokensPerMinute() <= 0 || input == null || input instanceof Flux) {
+            return 0;
+        }
+        try {
+            long tokens = Math.max(1, JsonSupport.MAPPER.writeValueAsString(input).length() / CHARS_PER_TOKEN);
+            // 超过桶容量的请求永远等不到足够的 token
+            return (int) Math.min(tokens, limits.tokensPerMinute());
+        } catch (Exception e) {
+            return 1;
+        }
+    }
+    
+    public int getWaitingCount() {
+        return gates.values().stream().mapToInt(Gate::waitingCount).sum();
+    }
+    
+    public int getInFlightCount() {
+        return gates.values().stream().mapToInt(Gate::inFlightCount).sum();
+    }
+    
+    // 单个模块的排队和放行；同一时刻只为一个等待者申请配额，保证按轮询顺序放行
+    private final class Gate {
+        
+        private final String moduleId;
+        private final Map<String, ArrayDeque<Waiter>> waiting = new HashMap<>();
+        private final ArrayDeque<String> rotation = new ArrayDeque<>();
+        private volatile Limits limits = Limits.NONE;
+        private volatile int localMaxInFlight;
+        private int queued;
+        private int inFlight;
+        private boolean admitting;
+        // 本地令牌桶，仅在 Redis 不可用或只有本地并发限制时使用
+        private double requests;
+        private double budget;
+        private long refilledAt;
+        
+        Gate(String moduleId) {
+            this.moduleId = moduleId;
+        }
+        
+        void enqueue(Waiter waiter) {
+            synchronized (this) {
+                waiting.computeIfAbsent(waiter.taskId, taskId -> {
+                    rotation.add(taskId);
+                    return new ArrayDeque<>();
+                }).add(waiter);
+                queued++;
+            }
+            waiter.sink.onCancel(() -> {
+                if (waiter.cancel()) {
+                    synchronized (this) {
+                        queued--;
+                    }
+                }
+            });
+            drain();
+        }
+        
+        void drain() {
+            Waiter next;
+            synchronized (this) {
+                if (admitting || (localMaxInFlight > 0 && inFlight >= localMaxInFlight)) {
+                    return;
+                }
+                next = poll();
+                if (next == null) {
+                    return;
+                }
+                admitting = true;
+                inFlight++;
+            }
+            admit(next);
+        }
+        
+        // 按任务轮询取下一个未取消的等待者
+        private Waiter poll() {
+            while (!rotation.isEmpty()) {
+                String taskId = rotation.poll();
+                ArrayDeque<Waiter> queue = waiting.get(taskId);
+                Waiter waiter = queue.poll();
+                while (waiter != null && !waiter.take()) {
+                    waiter = queue.poll();
+                }
+                if (queue.isEmpty()) {
+                    waiting.remove(taskId);
+                } else {
+                    rotation.add(taskId);
+                }
+                if (waiter != null) {
+                    queued--;
+                    return waiter;
+                }
+            }
+            return null;
+        }
+        
+        // 已占用本地名额，等待集群配额；配额不足时延迟后为同一等待者重试
+        private void admit(Waiter waiter) {
+            if (waiter.cancelled) {
+                release(null);
+                return;
+            }
+            String lease = instanceId + ":" + leaseSequence.incrementAndGet();
+            reserve(waiter.tokens, lease).subscribe(reservation -> {
+                if (reservation.waitMillis() != 0) {
+                    long delay = reservation.waitMillis() > 0 ? reservation.waitMillis() : pollInterval;
+                    Mono.delay(Duration.ofMillis(delay)).subscribe(tick -> admit(waiter));
+                    return;
+                }
+                synchronized (this) {
+                    admitting = false;
+                }
+                long queueWait = (System.nanoTime() - waiter.enqueuedAt) / 1_000_000;
+                Permit permit = new Permit(queueWait, () -> release(reservation.lease()));
+                if (!waiter.grant(permit)) {
+                    permit.release();
+                }
+                drain();
+            }, e -> {
+                log.error("模块限流放行失败: {}", moduleId, e);
+                release(null);
+                waiter.sink.error(e);
+            });
+        }
+        
+        private void release(String lease) {
+            synchronized (this) {
+                inFlight--;
+                admitting = false;
+            }
+            if (lease != null) {
+                redisTemplate.opsForZSet().remove(leaseKey(), lease)
+                        .subscribe(removed -> { }, e -> log.warn("释放模块并发租约失败: {}", e.getMessage()));
+            }
+            drain();
+        }
+        
+        private Mono<Reservation> reserve(int tokens, String lease) {
+            Limits current = limits;
+            if (!current.shared() || redisTemplate == null || System.currentTimeMillis() < redisRetryAt) {
+                return Mono.fromCallable(() -> new Reservation(reserveLocally(current, tokens), null));
+            }
+            List<String> keys = List.of(leaseKey(), key("requests"), key("tokens"));
+            List<String> args = List.of(
+                    String.valueOf(current.maxInFlight()),
+                    String.valueOf(current.requestsPerSecond()),
+                    String.valueOf(current.tokensPerMinute()),
+                    String.valueOf(tokens),
+                    String.valueOf(leaseTimeout),
+                    lease);
+            return redisTemplate.execute(ACQUIRE_SCRIPT, keys, args)
+                    .next()
+                    .timeout(REDIS_TIMEOUT)
+                    .map(wait -> new Reservation(wait, wait == 0 && current.maxInFlight() > 0 ? lease : null))
+                    .onErrorResume(e -> {
+                        if (System.currentTimeMillis() >= redisRetryAt) {
+                            log.warn("Redis 模块限流不可用，{} 毫秒内改用本实例限流: {}", fallbackDuration, e.getMessage());
+                        }
+                        redisRetryAt = System.currentTimeMillis() + fallbackDuration;
+                        return Mono.fromCallable(() -> new Reservation(reserveLocally(current, tokens), null));
+                    });
+        }
+        
+        private synchronized long reserveLocally(Limits current, int tokens) {
+            long now = System.currentTimeMillis();
+            long elapsed = refilledAt == 0 ? Long.MAX_VALUE : now - refilledAt;
+            refilledAt = now;
+            double rps = current.requestsPerSecond();
+            double tpm = current.tokensPerMinute();
+            requests = Math.min(Math.max(1, rps), requests + elapsed * rps / 1000);
+            budget = Math.min(tpm, budget + elapsed * tpm / 60000);
+            
+            long wait = 0;
+            if (rps > 0 && requests < 1) {
+                wait = Math.max(wait, (long) Math.ceil((1 - requests) * 1000 / rps));
+            }
+            if (tpm > 0 && budget < tokens) {
+                wait = Math.max(wait, (long) Math.ceil((tokens - budget) * 60000 / tpm));
+            }
+            if (wait > 0) {
+                return wait;
+            }
+            requests -= rps > 0 ? 1 : 0;
+            budget -= tpm > 0 ? tokens : 0;
+            return 0;
+        }
+        
+        // hash tag 保证同一模块的键在 Redis Cluster 中落在同一 slot
+        private String key(String suffix) {
+            return keyPrefix + "{" + moduleId + "}:" + suffix;
+        }
+        
+        private String leaseKey() {
+            return key("in-flight");
+        }
+        
+        synchronized int waitingCount() {
+            return queued;
+        }
+        
+        synchronized int inFlightCount() {
+            return inFlight;
+        }
+    }
+    
+    private record Reservation(long waitMillis, String lease) {
+    }
+    
+    // 放行与取消竞争时只有一方生效，放行给已取消的等待者时由放行方归还名额
+    private static final class Waiter {
+        
+        private static final int WAITING = 0;
+        private static final int TAKEN = 1;
+        private static final int CANCELLED = 2;
+        
+        private final String taskId;
+        private final int tokens;
+        private final MonoSink<Permit> sink;
+        private final long enqueuedAt = System.nanoTime();
+        private final AtomicInteger state = new AtomicInteger(WAITING);
+        private volatile boolean cancelled;
+        
+        Waiter(String taskId, int tokens, MonoSink<Permit> sink) {
+            this.taskId = taskId;
+            this.tokens = tokens;
+            this.sink = sink;
+        }
+        
+        // 出队时调用，返回 false 表示已在排队中取消
+        boolean take() {
+            return state.compareAndSet(WAITING, TAKEN);
+        }
+        
+        // 返回 true 表示取消时仍在排队
+        boolean cancel() {
+            cancelled = true;
+            return state.compareAndSet(WAITING, CANCELLED);
+        }
+        
+        boolean grant(Permit permit) {
+            if (cancelled) {
+                return false;
+            }
+            sink.success(permit);
+            return true;
+        }
+    }
+    
+    // maxInFlight 为 0 表示不限制集群并发；三项均为 0 时只受本实例的默认并发限制
+    public record Limits(int maxInFlight, double requestsPerSecond, long tokensPerMinute) {
+        static final Limits NONE = new Limits(0, 0, 0);
+        
+        boolean shared() {
+            return maxInFlight > 0 || requestsPerSecond > 0 || tokensPerMinute > 0;
+        }
+    }
+    
+    public static final class Permit {
+        
+        private final long queueWaitMillis;
+        private final Runnable onRelease;
+        private final AtomicBoolean released = new AtomicBoolean();
+        
+        Permit(long queueWaitMillis, Runnable onRelease) {
+            this.queueWaitMillis = queueWaitMillis;
+            this.onRelease = onRelease;
+        }
+        
+        // 从申请到放行的排队时间，与模块调用耗时分开统计
+        public long getQueueWaitMillis() {
+            return queueWaitMillis;
+        }
+        
+        public void release() {
+            if (onRelease != null && released.compareAndSet(false, true)) {
+                onRelease.run();
+            }
+        }
+    }
+}
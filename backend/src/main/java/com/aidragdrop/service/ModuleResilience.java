@@ -0,0 +1,338 @@
+package com.aidragdrop.service;
+
+import com.aidragdrop.entity.AIModule;
+import com.aidragdrop.entity.ApiConfig;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.client.WebClientRequestException;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+import reactor.core.Disposable;
+import reactor.core.Disposables;
+import reactor.core.publisher.Mono;
+import reactor.util.retry.Retry;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// 模块调用的容错策略: 熔断、对冲请求和带抖动的指数退避重试，按模块 apiConfig 配置
+// 重试和对冲会重复发送请求，只用于可重放（幂等且非流式）的调用
+@Component
+@Slf4j
+public class ModuleResilience {
+    
+    private static final int DEFAULT_MAX_ATTEMPTS = 3;
+    private static final long DEFAULT_BACKOFF_MS = 200;
+    private static final long DEFAULT_MAX_BACKOFF_MS = 5000;
+    private static final double DEFAULT_JITTER = 0.5;
+    private static final int DEFAULT_HEDGE_PERCENTILE = 95;
+    
+    private final Map<String, ModuleState> states = new ConcurrentHashMap<>();
+    
+    @Value("${app.resilience.circuit-breaker.enabled:true}")
+    private boolean breakerEnabled;
+    
+    // 窗口内失败率达到该百分比时熔断
+    @Value("${app.resilience.circuit-breaker.failure-rate-threshold:50}")
+    private int failureRateThreshold;
+    
+    @Value("${app.resilience.circuit-breaker.minimum-calls:20}")
+    private int minimumCalls;
+    
+    @Value("${app.resilience.circuit-breaker.window-size:50}")
+    private int windowSize;
+    
+    @Value("${app.resilience.circuit-breaker.open-ms:30000}")
+    private long openMs;
+    
+    // 计算对冲延迟时保留的最近成功调用耗时样本数
+    @Value("${app.resilience.latency-window:200}")
+    private int latencyWindow;
+    
+    @Value("${app.resilience.hedge-min-samples:20}")
+    private int hedgeMinSamples;
+    
+    // attempt 每次订阅发起一次完整调用（包括限流排队），熔断、对冲和重试都以单次调用为单位
+    public <T> Mono<T> execute(AIModule module, boolean replayable, Mono<T> attempt) {
+        ApiConfig apiConfig = module.getApiConfig();
+        ModuleState state = states.computeIfAbsent(module.getId(), id -> new ModuleState(latencyWindow));
+        BreakerSettings breaker = breakerSettings(apiConfig.getCircuitBreaker());
+        
+        Mono<T> guarded = Mono.defer(() -> {
+            if (breaker.enabled() && !state.breaker.tryAcquire(breaker)) {
+                return Mono.error(new RuntimeException("模块已熔断，暂停调用: " + module.getName()));
+            }
+            long startedAt = System.nanoTime();
+            AtomicBoolean recorded = new AtomicBoolean();
+            return attempt
+                    .doOnSuccess(value -> {
+                        recorded.set(true);
+                        state.breaker.onSuccess(breaker);
+                        state.latencies.record((System.nanoTime() - startedAt) / 1_000_000);
+                    })
+                    .doOnError(e -> {
+                        recorded.set(true);
+                        if (isUpstreamFailure(e)) {
+                            state.breaker.onFailure(breaker);
+                        } else {
+                            state.breaker.onSuccess(breaker);
+                        }
+                    })
+                    // 对冲中落败或任务取消的调用不计入统计，但要归还半开状态的探测名额
+                    .doOnCancel(() -> {
+                        if (!recorded.get()) {
+                            state.breaker.onCancel();
+                        }
+                    });
+        });
+        
+        if (!replayable) {
+            return guarded;
+        }
+        
+        Mono<T> hedged = guarded;
+        ApiConfig.Hedge hedge = apiConfig.getHedge();
+        if (hedge != null && !Boolean.FALSE.equals(hedge.getEnabled())) {
+            int percentile = hedge.getPercentile() != null ? hedge.getPercentile() : DEFAULT_HEDGE_PERCENTILE;
+            Mono<T> call = guarded;
+            hedged = Mono.defer(() -> {
+                long delay = state.latencies.percentile(percentile, hedgeMinSamples);
+                if (delay < 0) {
+                    delay = hedge.getDelayMs() != null ? hedge.getDelayMs() : -1;
+                }
+                return delay >= 0 ? hedge(call, Duration.ofMillis(delay)) : call;
+            });
+        }
+        
+        ApiConfig.Retry retry = apiConfig.getRetry();
+        if (retry == null) {
+            return hedged;
+        }
+        int maxAttempts = retry.getMaxAttempts() != null ? retry.getMaxAttempts() : DEFAULT_MAX_ATTEMPTS;
+        if (maxAttempts <= 1) {
+            return hedged;
+        }
+        return hedged.retryWhen(Retry
+                .backoff(maxAttempts - 1,
+                        Duration.ofMillis(retry.getBackoffMs() != null ? retry.getBackoffMs() : DEFAULT_BACKOFF_MS))
+                .maxBackoff(Duration.ofMillis(
+                        retry.getMaxBackoffMs() != null ? retry.getMaxBackoffMs() : DEFAULT_MAX_BACKOFF_MS))
+                .jitter(retry.getJitter() != null ? retry.getJitter() : DEFAULT_JITTER)
+                .filter(ModuleResilience::isTransient)
+                .doBeforeRetry(signal -> log.debug("重试模块调用 {} (第 {} 次): {}",
+                        module.getName(), signal.totalRetries() + 1, signal.failure().getMessage()))
+                .onRetryExhaustedThrow((spec, signal) -> signal.failure()));
+    }
+    
+    // 主请求超过 delay 仍未返回时再发一次，先成功者胜出并取消另一个
+    // 主请求在发出对冲请求前失败时直接失败交给重试处理，已发出时等待另一个请求的结果
+    private static <T> Mono<T> hedge(Mono<T> call, Duration delay) {
+        return Mono.create(sink -> {
+            Disposable.Composite inFlight = Disposables.composite();
+            AtomicBoolean settled = new AtomicBoolean();
+            AtomicInteger pending = new AtomicInteger(1);
+            
+            Runnable launch = () -> inFlight.add(call.subscribe(
+                    value -> {
+                        if (settled.compareAndSet(false, true)) {
+                            sink.success(value);
+                        }
+                    },
+                    e -> {
+                        if (pending.decrementAndGet() == 0 && settled.compareAndSet(false, true)) {
+                            sink.error(e);
+                        }
+                    },
+                    () -> {
+                        if (settled.compareAndSet(false, true)) {
+                            sink.success();
+                        }
+                    }));
+            
+            sink.onDispose(inFlight);
+            launch.run();
+            inFlight.add(Mono.delay(delay).subscribe(tick -> {
+                if (!settled.get() && pending.getAndIncrement() > 0) {
+                    launch.run();
+                }
+            }));
+        });
+    }
+    
+    // 超时、连接失败、429 和 5xx 视为暂时性错误
+    static boolean isTransient(Throwable e) {
+        if (e instanceof TimeoutException || e instanceof WebClientRequestException) {
+            return true;
+        }
+        if (e instanceof WebClientResponseException response) {
+            return response.getStatusCode().is5xxServerError() || response.getStatusCode().value() == 429;
+        }
+        return false;
+    }
+    
+    // 429 说明上游正常但在限流，不触发熔断；4xx 等调用方错误同样不计入失败率
+    private static boolean isUpstreamFailure(Throwable e) {
+        return isTransient(e)
+                && !(e instanceof WebClientResponseException response && response.getStatusCode().value() == 429);
+    }
+    
+    private BreakerSettings breakerSettings(ApiConfig.CircuitBreaker config) {
+        if (config == null) {
+            return new BreakerSettings(breakerEnabled, failureRateThreshold, minimumCalls, windowSize, openMs);
+        }
+        return new BreakerSettings(
+                config.getEnabled() != null ? config.getEnabled() : breakerEnabled,
+                config.getFailureRateThreshold() != null ? config.getFailureRateThreshold() : failureRateThreshold,
+                config.getMinimumCalls() != null ? config.getMinimumCalls() : minimumCalls,
+                config.getWindowSize() != null ? config.getWindowSize() : windowSize,
+                config.getOpenMs() != null ? config.getOpenMs() : openMs);
+    }
+    
+    // 模块配置变化后重新统计
+    public void invalidate(String moduleId) {
+        states.remove(moduleId);
+    }
+    
+    public int getOpenCircuitCount() {
+        return (int) states.values().stream().filter(state -> state.breaker.isOpen()).count();
+    }
+    
+    private record BreakerSettings(boolean enabled, int failureRateThreshold, int minimumCalls,
+                                   int windowSize, long openMs) {
+    }
+    
+    private static final class ModuleState {
+        
+        private final CircuitBreaker breaker = new CircuitBreaker();
+        private final LatencyWindow latencies;
+        
+        ModuleState(int latencyWindow) {
+            this.latencies = new LatencyWindow(latencyWindow);
+        }
+    }
+    
+    // 基于最近 windowSize 次调用结果的熔断器: 关闭 -> 打开（拒绝调用 openMs）-> 半开（放行一次探测）
+    private static final class CircuitBreaker {
+        
+        private enum State { CLOSED, OPEN, HALF_OPEN }
+        
+        private State state = State.CLOSED;
+        private boolean[] outcomes = new boolean[0];
+        private int next;
+        private int recorded;
+        private int failures;
+        private long openedAt;
+        private boolean probing;
+        
+        synchronized boolean tryAcquire(BreakerSettings settings) {
+            if (state == State.OPEN) {
+                if (System.currentTimeMillis() - openedAt < settings.openMs()) {
+                    return false;
+                }
+                state = State.HALF_OPEN;
+            }
+            if (state == State.HALF_OPEN) {
+                if (probing) {
+                    return false;
+                }
+                probing = true;
+            }
+            return true;
+        }
+        
+        synchronized void onSuccess(BreakerSettings settings) {
+            if (state == State.HALF_OPEN) {
+                state = State.CLOSED;
+                probing = false;
+                reset(settings.windowSize());
+                return;
+            }
+            record(settings, false);
+        }
+        
+        synchronized void onFailure(BreakerSettings settings) {
+            if (state == State.HALF_OPEN) {
+                open();
+                return;
+            }
+            record(settings, true);
+            if (recorded >= settings.minimumCalls()
+                    && failures * 100 >= settings.failureRateThreshold() * recorded) {
+                open();
+            }
+        }
+        
+        synchronized void onCancel() {
+            probing = false;
+        }
+        
+        synchronized boolean isOpen() {
+            return state == State.OPEN;
+        }
+        
+        private void open() {
+            state = State.OPEN;
+            openedAt = System.currentTimeMillis();
+            probing = false;
+            reset(outcomes.length);
+        }
+        
+        private void record(BreakerSettings settings, boolean failure) {
+            if (state == State.OPEN) {
+                // 熔断前已发出的调用在打开后才返回
+                return;
+            }
+            if (outcomes.length != Math.max(1, settings.windowSize())) {
+                reset(settings.windowSize());
+            }
+            if (recorded == outcomes.length) {
+                failures -= outcomes[next] ? 1 : 0;
+            } else {
+                recorded++;
+            }
+            outcomes[next] = failure;
+            failures += failure ? 1 : 0;
+            next = (next + 1) % outcomes.length;
+        }
+        
+        private void reset(int size) {
+            outcomes = new boolean[Math.max(1, size)];
+            next = 0;
+            recorded = 0;
+            failures = 0;
+        }
+    }
+    
+    // 最近成功调用耗时的环形缓冲区
+    private static final class LatencyWindow {
+        
+        private final long[] samples;
+        private int next;
+        private int size;
+        
+        LatencyWindow(int capacity) {
+            this.samples = new long[Math.max(1, capacity)];
+        }
+        
+        synchronized void record(long millis) {
+            samples[next] = millis;
+            next = (next + 1) % samples.length;
+            size = Math.min(size + 1, samples.length);
+        }
+        
+        // 样本不足时返回 -1
+        synchronized long percentile(int percentile, int minSamples) {
+            if (size == 0 || size < minSamples) {
+                return -1;
+            }
+            long[] sorted = Arrays.copyOf(samples, size);
+            Arrays.sort(sorted);
+            int index = (int) Math.ceil(percentile / 100.0 * size) - 1;
+            return sorted[Math.max(0, Math.min(index, size - 1))];
+        }
+    }
+}
@@ -0,0 +1,174 @@
+package com.aidragdrop.service;
+
+import com.aidragdrop.entity.AIModule;
+import com.fasterxml.jackson.databind.MapperFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.cache.CacheManager;
+import org.springframework.data.redis.cache.RedisCacheWriter;
+import org.springframework.stereotype.Component;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+// 确定性模块的节点结果缓存: 本地 Caffeine 在前，Redis 在后
+// 键为 (模块ID, 模块版本, 规范化输入JSON) 的 SHA-256，按模块 config.cache 开启
+@Component
+@Slf4j
+public class NodeResultCache {
+    
+    public static final String CACHE_NAME = "nodeResults";
+    
+    private static final long DEFAULT_TTL_SECONDS = 3600;
+    private static final long DEFAULT_MAX_SIZE = 1000;
+    
+    private final CacheManager cacheManager;
+    private final Map<String, Cache<String, CachedNodeResult>> localTiers = new ConcurrentHashMap<>();
+    
+    // 字段和 Map 键排序后再序列化，保证语义相同的输入得到相同的键
+    private final ObjectMapper canonicalMapper = JsonMapper.builder()
+            .enable(MapperFeature.SORT_PROPERTIES_ALPHABETICALLY)
+            .enable(SerializationFeature.ORDER_MAP_ENTRIES_BY_KEYS)
+            .build();
+    
+    private final LongAdder localHits = new LongAdder();
+    private final LongAdder redisHits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    
+    public NodeResultCache(CacheManager cacheManager) {
+        this.cacheManager = cacheManager;
+    }
+    
+    @SuppressWarnings("unchecked")
+    public CachePolicy policyOf(AIModule module) {
+        Map<String, Object> config = module.getConfig();
+        if (config == null || !(config.get("cache") instanceof Map)) {
+            return CachePolicy.DISABLED;
+        }
+        Map<String, Object> cache = (Map<String, Object>) config.get("cache");
+        if (!Boolean.TRUE.equals(cache.get("enabled"))) {
+            return CachePolicy.DISABLED;
+        }
+        long ttlSeconds = cache.get("ttlSeconds") instanceof Number n ? n.longValue() : DEFAULT_TTL_SECONDS;
+        long maxSize = cache.get("maxSize") instanceof Number n ? n.longValue() : DEFAULT_MAX_SIZE;
+        return new CachePolicy(true, ttlSeconds, maxSize);
+    }
+    
+    // 键包含模块修改时间: 编辑模块时 version 不一定变化，修改后旧结果（包括 Redis 层）不再命中
+    public String keyOf(AIModule module, Object input) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(module.getId().getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+            digest.update(revisionOf(module).getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+            digest.update(canonicalMapper.writeValueAsBytes(input));
+            return module.getId() + ":" + HexFormat.of().formatHex(digest.digest());
+        } catch (NoSuchAlgorithmException | com.fasterxml.jackson.core.JsonProcessingException e) {
+            throw new RuntimeException("生成缓存键失败: " + e.getMessage(), e);
+        }
+    }
+    
+    // 返回 null 表示未命中；Redis 不可用时按未命中处理，不影响工作流执行
+    public CacheHit get(AIModule module, CachePolicy policy, String key) {
+        Cache<String, CachedNodeResult> local = localTier(module, policy);
+        CachedNodeResult cached = local.getIfPresent(key);
+        if (cached != null) {
+            localHits.increment();
+            return new CacheHit(cached.getValue(), "local");
+        }
+        try {
+            org.springframework.cache.Cache redis = cacheManager.getCache(CACHE_NAME);
+            cached = redis != null ? redis.get(key, CachedNodeResult.class) : null;
+        } catch (Exception e) {
+            log.warn("读取节点结果缓存失败: {}", e.getMessage());
+            cached = null;
+        }
+        if (cached != null) {
+            redisHits.increment();
+            local.put(key, cached);
+            return new CacheHit(cached.getValue(), "redis");
+        }
+        misses.increment();
+        return null;
+    }
+    
+    public void put(AIModule module, CachePolicy policy, String key, Object value) {
+        if (value == null) {
+            return;
+        }
+        CachedNodeResult cached = new CachedNodeResult(value, policy.ttlSeconds());
+        localTier(module, policy).put(key, cached);
+        try {
+            org.springframework.cache.Cache redis = cacheManager.getCache(CACHE_NAME);
+            if (redis != null) {
+                redis.put(key, cached);
+            }
+        } catch (Exception e) {
+            log.warn("写入节点结果缓存失败: {}", e.getMessage());
+        }
+    }
+    
+    // 模块配置变化时丢弃本地层，下次按新的 TTL/容量重建；Redis 层的键包含模块修改时间，旧条目不再命中，到期自然淘汰
+    public void invalidate(String moduleId) {
+        String prefix = moduleId + ":";
+        localTiers.keySet().removeIf(key -> key.startsWith(prefix));
+    }
+    
+    private Cache<String, CachedNodeResult> localTier(AIModule module, CachePolicy policy) {
+        return localTiers.computeIfAbsent(module.getId() + ":" + revisionOf(module), key -> Caffeine.newBuilder()
+                .maximumSize(policy.maxSize())
+                .expireAfterWrite(Duration.ofSeconds(policy.ttlSeconds()))
+                .build());
+    }
+    
+    private static String revisionOf(AIModule module) {
+        return module.getVersion() + "/" + module.getUpdatedAt();
+    }
+    
+    // Redis 层的 TTL 取自写入时模块配置的 ttlSeconds
+    public static RedisCacheWriter.TtlFunction redisTtl() {
+        return (key, value) -> value instanceof CachedNodeResult cached
+                ? Duration.ofSeconds(cached.getTtlSeconds())
+                : Duration.ofSeconds(DEFAULT_TTL_SECONDS);
+    }
+    
+    public long getLocalHits() {
+        return localHits.sum();
+    }
+    
+    public long getRedisHits() {
+        return redisHits.sum();
+    }
+    
+    public long getMisses() {
+        return misses.sum();
+    }
+    
+    public record CachePolicy(boolean enabled, long ttlSeconds, long maxSize) {
+        static final CachePolicy DISABLED = new CachePolicy(false, 0, 0);
+    }
+    
+    public record CacheHit(Object value, String tier) {
+    }
+    
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class CachedNodeResult {
+        private Object value;
+        private long ttlSeconds;
+    }
+}
@@ -0,0 +1,162 @@
+package com.aidragdrop.service;
+
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.NestedExceptionUtils;
+import org.springframework.data.domain.Range;
+import org.springframework.data.redis.connection.RedisStreamCommands;
+import org.springframework.data.redis.connection.stream.Consumer;
+import org.springframework.data.redis.connection.stream.MapRecord;
+import org.springframework.data.redis.connection.stream.PendingMessage;
+import org.springframework.data.redis.connection.stream.PendingMessages;
+import org.springframework.data.redis.connection.stream.PendingMessagesSummary;
+import org.springframework.data.redis.connection.stream.ReadOffset;
+import org.springframework.data.redis.connection.stream.StreamOffset;
+import org.springframework.data.redis.connection.stream.StreamReadOptions;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Component;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+// 基于 Redis Streams 消费组的任务队列，所有实例共享同一个消费组
+@Component
+@ConditionalOnProperty(name = "app.queue.type", havingValue = "redis", matchIfMissing = true)
+@Slf4j
+public class RedisStreamTaskQueue implements TaskQueue {
+    
+    private static final String FIELD_TASK_ID = "taskId";
+    
+    private final StringRedisTemplate redisTemplate;
+    private final String stream;
+    private final String group;
+    private final String consumer = "worker-" + UUID.randomUUID();
+    
+    @Value("${app.queue.claim-scan-size:100}")
+    private int claimScanSize;
+    
+    public RedisStreamTaskQueue(
+            StringRedisTemplate redisTemplate,
+            @Value("${app.queue.stream:ai-drag-drop:tasks}") String stream,
+            @Value("${app.queue.group:workflow-workers}") String group) {
+        this.redisTemplate = redisTemplate;
+        this.stream = stream;
+        this.group = group;
+    }
+    
+    @PostConstruct
+    public void createGroup() {
+        try {
+            redisTemplate.execute((RedisCallback<String>) connection -> connection.streamCommands()
+                    .xGroupCreate(stream.getBytes(StandardCharsets.UTF_8), group, ReadOffset.from("0"), true));
+        } catch (Exception e) {
+            if (!causeContains(e, "BUSYGROUP")) {
+                // 启动时 Redis 不可用，拉取时再重试创建
+                log.warn("创建任务队列消费组失败: {}", e.getMessage());
+            }
+        }
+    }
+    
+    @Override
+    public void enqueue(String taskId) {
+        redisTemplate.opsForStream().add(stream, Map.of(FIELD_TASK_ID, taskId));
+    }
+    
+    @Override
+    public List<QueuedTask> poll(int max, Duration timeout) {
+        List<MapRecord<String, Object, Object>> records;
+        try {
+            records = readGroup(StreamReadOptions.empty().count(max).block(timeout));
+        } catch (Exception e) {
+            if (causeContains(e, "NOGROUP")) {
+                createGroup();
+                return List.of();
+            }
+            throw e;
+        }
+        if (records == null) {
+            return List.of();
+        }
+        List<QueuedTask> messages = new ArrayList<>(records.size());
+        for (MapRecord<String, Object, Object> record : records) {
+            messages.add(new QueuedTask(record.getId().getValue(), (String) record.getValue().get(FIELD_TASK_ID), 1));
+        }
+        return messages;
+    }
+    
+    @Override
+    public List<QueuedTask> claimStale(Duration visibilityTimeout, int max) {
+        PendingMessages pending = redisTemplate.opsForStream().pending(stream, group, Range.unbounded(), claimScanSize);
+        Map<String, Long> deliveries = new HashMap<>();
+        for (PendingMessage message : pending) {
+            if (deliveries.size() >= max) {
+                break;
+            }
+            if (message.getElapsedTimeSinceLastDelivery().compareTo(visibilityTimeout) >= 0) {
+                deliveries.put(message.getIdAsString(), message.getTotalDeliveryCount());
+            }
+        }
+        if (deliveries.isEmpty()) {
+            return List.of();
+        }
+        
+        // XCLAIM 会再次校验空闲时间，多个实例同时认领时只有一个成功
+        List<MapRecord<String, Object, Object>> claimed = redisTemplate.opsForStream().claim(stream, group, consumer,
+                RedisStreamCommands.XClaimOptions.minIdle(visibilityTimeout).ids(deliveries.keySet().toArray(new String[0])));
+        List<QueuedTask> messages = new ArrayList<>(claimed.size());
+        for (MapRecord<String, Object, Object> record : claimed) {
+            String messageId = record.getId().getValue();
+            messages.add(new QueuedTask(messageId, (String) record.getValue().get(FIELD_TASK_ID),
+                    deliveries.getOrDefault(messageId, 0L) + 1));
+        }
+        if (!messages.isEmpty()) {
+            log.info("已认领超时未确认的队列任务: {} 条", messages.size());
+        }
+        return messages;
+    }
+    
+    @Override
+    public void heartbeat(QueuedTask message) {
+        // JUSTID 认领给自己只重置空闲时间，不增加投递次数
+        redisTemplate.execute((RedisCallback<Object>) connection -> connection.streamCommands().xClaimJustId(
+                stream.getBytes(StandardCharsets.UTF_8), group, consumer,
+                RedisStreamCommands.XClaimOptions.minIdle(Duration.ZERO).ids(message.messageId())));
+    }
+    
+    @Override
+    public void ack(QueuedTask message) {
+        redisTemplate.opsForStream().acknowledge(stream, group, message.messageId());
+        redisTemplate.opsForStream().delete(stream, message.messageId());
+    }
+    
+    // 已确认的消息会被删除，流中其余消息减去消费组中已拉取未确认的即为积压数
+    @Override
+    public long size() {
+        Long length = redisTemplate.opsForStream().size(stream);
+        if (length == null || length == 0) {
+            return 0;
+        }
+        PendingMessagesSummary pending = redisTemplate.opsForStream().pending(stream, group);
+        long delivered = pending != null ? pending.getTotalPendingMessages() : 0;
+        return Math.max(0, length - delivered);
+    }
+    
+    // StreamOperations 只有可变参数版本，单个 StreamOffset 创建泛型数组是安全的
+    @SuppressWarnings("unchecked")
+    private List<MapRecord<String, Object, Object>> readGroup(StreamReadOptions options) {
+        StreamOffset<String> offset = StreamOffset.create(stream, ReadOffset.lastConsumed());
+        return redisTemplate.opsForStream().read(Consumer.from(group, consumer), options, offset);
+    }
+    
+    private static boolean causeContains(Exception e, String code) {
+        Throwable cause = NestedExceptionUtils.getMostSpecificCause(e);
+        return cause.getMessage() != null && cause.getMessage().contains(code);
+    }
+}
@@ -0,0 +1,106 @@
+package com.aidragdrop.service;
+
+import com.aidragdrop.entity.JsonSupport;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.IntPredicate;
+import java.util.function.Predicate;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+// 条件节点的判断条件，编译计划时解析为 Predicate，执行时只在本地求值，不发起任何调用
+// 基本条件: {"path": "label", "op": "eq", "value": "relevant"}，path 为空或 "$" 时取输入本身，可带 "$." 前缀
+// 组合条件: {"all": [...]}、{"any": [...]}、{"not": {...}}
+public final class RouteCondition {
+    
+    private RouteCondition() {
+    }
+    
+    @SuppressWarnings("unchecked")
+    public static Predicate<Object> compile(Object spec, String nodeId) {
+        if (!(spec instanceof Map<?, ?> map)) {
+            throw new RuntimeException("条件节点的条件必须是对象: " + nodeId);
+        }
+        Map<String, Object> condition = (Map<String, Object>) map;
+        if (condition.get("all") instanceof List<?> all) {
+            List<Predicate<Object>> parts = all.stream().map(part -> compile(part, nodeId)).toList();
+            return input -> parts.stream().allMatch(part -> part.test(input));
+        }
+        if (condition.get("any") instanceof List<?> any) {
+            List<Predicate<Object>> parts = any.stream().map(part -> compile(part, nodeId)).toList();
+            return input -> parts.stream().anyMatch(part -> part.test(input));
+        }
+        if (condition.containsKey("not")) {
+            return compile(condition.get("not"), nodeId).negate();
+        }
+        
+        String path = normalizePath(condition.get("path") instanceof String value ? value : null);
+        String op = condition.get("op") instanceof String value ? value : "eq";
+        Object expected = condition.get("value");
+        Predicate<Object> test = switch (op) {
+            case "eq" -> actual -> equal(actual, expected);
+            case "ne" -> actual -> !equal(actual, expected);
+            case "gt" -> actual -> compare(actual, expected, result -> result > 0);
+            case "gte" -> actual -> compare(actual, expected, result -> result >= 0);
+            case "lt" -> actual -> compare(actual, expected, result -> result < 0);
+            case "lte" -> actual -> compare(actual, expected, result -> result <= 0);
+            case "in" -> {
+                if (!(expected instanceof Collection<?> options)) {
+                    throw new RuntimeException("条件节点的 in 条件需要数组: " + nodeId);
+                }
+                yield actual -> options.stream().anyMatch(option -> equal(actual, option));
+            }
+            case "contains" -> actual -> actual instanceof String text
+                    ? expected != null && text.contains(String.valueOf(expected))
+                    : actual instanceof Collection<?> items && items.stream().anyMatch(item -> equal(item, expected));
+            case "matches" -> {
+                Pattern pattern;
+                try {
+                    pattern = Pattern.compile(String.valueOf(expected));
+                } catch (PatternSyntaxException e) {
+                    throw new RuntimeException("条件节点的正则表达式无效: " + expected);
+                }
+                yield actual -> actual != null && pattern.matcher(String.valueOf(actual)).find();
+            }
+            case "exists" -> Objects::nonNull;
+            case "empty" -> RouteCondition::isEmpty;
+            default -> throw new RuntimeException("条件节点不支持的运算符: " + op);
+        };
+        return input -> test.test(path != null ? JsonSupport.valueAt(input, path) : input);
+    }
+    
+    private static String normalizePath(String path) {
+        if (path == null || path.isEmpty() || "$".equals(path)) {
+            return null;
+        }
+        return path.startsWith("$.") ? path.substring(2) : path;
+    }
+    
+    // 数字按数值比较，1 与 1.0 相等
+    private static boolean equal(Object actual, Object expected) {
+        if (actual instanceof Number a && expected instanceof Number b) {
+            return Double.compare(a.doubleValue(), b.doubleValue()) == 0;
+        }
+        return Objects.equals(actual, expected);
+    }
+    
+    // 只比较数字与数字、字符串与字符串，类型不同或缺失时条件不成立
+    private static boolean compare(Object actual, Object expected, IntPredicate test) {
+        if (actual instanceof Number a && expected instanceof Number b) {
+            return test.test(Double.compare(a.doubleValue(), b.doubleValue()));
+        }
+        if (actual instanceof String a && expected instanceof String b) {
+            return test.test(a.compareTo(b));
+        }
+        return false;
+    }
+    
+    private static boolean isEmpty(Object actual) {
+        return actual == null
+                || actual instanceof String text && text.isEmpty()
+                || actual instanceof Collection<?> items && items.isEmpty()
+                || actual instanceof Map<?, ?> map && map.isEmpty();
+    }
+}
@@ -0,0 +1,121 @@
+package com.aidragdrop.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.stereotype.Component;
+import reactor.core.Disposable;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+// 任务ID -> 正在执行的订阅句柄；取消时直接 dispose，立即中断进行中的模块调用并释放 worker 名额
+// 任务可能在其他实例执行，取消通过 Redis pub/sub 广播到所有实例；未启用 Redis 时只取消本实例的执行
+@Component
+@Slf4j
+public class TaskCancellationRegistry implements MessageListener {
+    
+    private static final String ACTION_CLEAR = "clear";
+    
+    private final String instanceId = UUID.randomUUID().toString();
+    private final Map<String, Disposable> executions = new ConcurrentHashMap<>();
+    // 取消可能先于执行注册到达，短期记录已取消的任务，注册时立即生效
+    private final Cache<String, Boolean> cancelled = Caffeine.newBuilder()
+            .expireAfterWrite(Duration.ofMinutes(10))
+            .maximumSize(10000)
+            .build();
+    
+    private final StringRedisTemplate redisTemplate;
+    private final RedisMessageListenerContainer listenerContainer;
+    
+    @Value("${app.task-cancellation.channel:ai-drag-drop:task-cancellation}")
+    private String channel;
+    
+    public TaskCancellationRegistry(ObjectProvider<StringRedisTemplate> redisTemplate,
+                                    ObjectProvider<RedisMessageListenerContainer> listenerContainer) {
+        this.redisTemplate = redisTemplate.getIfAvailable();
+        this.listenerContainer = listenerContainer.getIfAvailable();
+    }
+    
+    @PostConstruct
+    public void subscribe() {
+        if (listenerContainer == null) {
+            return;
+        }
+        listenerContainer.addMessageListener(this, new ChannelTopic(channel));
+    }
+    
+    public void register(String taskId, Disposable execution) {
+        executions.put(taskId, execution);
+        if (cancelled.getIfPresent(taskId) != null) {
+            cancelLocal(taskId);
+        }
+    }
+    
+    public void unregister(String taskId, Disposable execution) {
+        executions.remove(taskId, execution);
+    }
+    
+    public void cancel(String taskId) {
+        cancelLocal(taskId);
+        if (redisTemplate == null) {
+            return;
+        }
+        try {
+            redisTemplate.convertAndSend(channel, instanceId + "|" + taskId);
+        } catch (Exception e) {
+            // 广播失败时执行实例在完成时的条件状态更新会失败，结果不会覆盖取消状态
+            log.warn("广播任务取消消息失败: {}", e.getMessage());
+        }
+    }
+    
+    // 恢复执行前清除取消记录，否则重新入队的任务在注册时又被立即取消
+    public void clear(String taskId) {
+        cancelled.invalidate(taskId);
+        if (redisTemplate == null) {
+            return;
+        }
+        try {
+            redisTemplate.convertAndSend(channel, instanceId + "|" + taskId + "|" + ACTION_CLEAR);
+        } catch (Exception e) {
+            log.warn("广播清除任务取消记录失败: {}", e.getMessage());
+        }
+    }
+    
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        // 实例ID|任务ID[|clear]
+        String[] parts = new String(message.getBody(), StandardCharsets.UTF_8).split("\\|");
+        if (parts.length < 2 || instanceId.equals(parts[0])) {
+            return;
+        }
+        if (parts.length == 2) {
+            cancelLocal(parts[1]);
+        } else if (ACTION_CLEAR.equals(parts[2])) {
+            cancelled.invalidate(parts[1]);
+        }
+    }
+    
+    private void cancelLocal(String taskId) {
+        cancelled.put(taskId, Boolean.TRUE);
+        Disposable execution = executions.remove(taskId);
+        if (execution != null) {
+            execution.dispose();
+            log.info("已中断任务执行: {}", taskId);
+        }
+    }
+    
+    public int getActiveCount() {
+        return executions.size();
+    }
+}
@@ -0,0 +1,345 @@
+package com.aidragdrop.service;
+
+import com.aidragdrop.entity.AIModule;
+import com.aidragdrop.entity.JsonSupport;
+import com.aidragdrop.entity.TaskCheckpoint;
+import com.aidragdrop.repository.TaskCheckpointRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+// 任务节点结果的检查点: 失败、取消或所在实例崩溃后恢复执行时，已完成的节点直接取用保存的结果
+// 结果按紧凑 JSON 保存；超过 inline-max-bytes 的 gzip 后写入 blob 存储，超过 max-bytes 的不保存，恢复时重新执行
+// 指纹包含工作流和模块的修改时间，工作流或模块修改后旧检查点作废
+// 写入和删除先进入有界缓冲区，由后台线程批量处理，不占用节点执行的关键路径；同一批中任务已完成的写入直接丢弃
+@Component
+@Slf4j
+public class TaskCheckpointStore {
+    
+    private static final Duration PURGE_INTERVAL = Duration.ofHours(1);
+    private static final int PURGE_BATCH_SIZE = 100;
+    
+    private final TaskCheckpointRepository repository;
+    private final BlobStore blobStore;
+    private final TransactionTemplate transactionTemplate;
+    private final BlockingQueue<Write> buffer;
+    
+    @Value("${app.checkpoint.enabled:true}")
+    private boolean enabled;
+    
+    @Value("${app.checkpoint.inline-max-bytes:32768}")
+    private int inlineMaxBytes;
+    
+    @Value("${app.checkpoint.max-bytes:67108864}")
+    private long maxBytes;
+    
+    @Value("${app.checkpoint.batch-size:100}")
+    private int batchSize;
+    
+    @Value("${app.checkpoint.flush-interval:200}")
+    private long flushInterval;
+    
+    @Value("${app.checkpoint.retention:604800}")
+    private long retentionSeconds;
+    
+    private volatile boolean running;
+    private Thread flusher;
+    
+    public TaskCheckpointStore(
+            TaskCheckpointRepository repository,
+            BlobStore blobStore,
+            PlatformTransactionManager transactionManager,
+            @Value("${app.checkpoint.buffer-size:1000}") int bufferSize) {
+        this.repository = repository;
+        this.blobStore = blobStore;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.buffer = new ArrayBlockingQueue<>(bufferSize);
+    }
+    
+    @PostConstruct
+    public void start() {
+        running = true;
+        flusher = new Thread(this::runFlushLoop, "task-checkpoint-writer");
+        flusher.setDaemon(true);
+        flusher.start();
+    }
+    
+    // 节点ID -> 结果；已作废或读取失败的检查点不返回，对应节点重新执行
+    // 尚在缓冲区中的检查点读不到，对应节点同样重新执行
+    public Map<String, Object> load(String taskId, CompiledWorkflowPlan plan) {
+        Map<String, Object> restored = new HashMap<>();
+        if (!enabled) {
+            return restored;
+        }
+        for (TaskCheckpoint checkpoint : repository.findByTaskId(taskId)) {
+            CompiledWorkflowPlan.PlanNode node = plan.getNode(checkpoint.getNodeId());
+            if (node == null || node.route() != null || !fingerprint(plan, node).equals(checkpoint.getFingerprint())) {
+                continue;
+            }
+            try {
+                restored.put(node.nodeId(), read(checkpoint));
+            } catch (Exception e) {
+                log.warn("读取检查点失败，节点将重新执行: {}/{}: {}", taskId, node.nodeId(), e.getMessage());
+            }
+        }
+        return restored;
+    }
+    
+    // 在调用方线程序列化，之后节点结果被修改也不影响检查点；写入失败只记录日志，不影响本次执行
+    public void save(String taskId, CompiledWorkflowPlan plan, CompiledWorkflowPlan.PlanNode node, Object output) {
+        if (!enabled) {
+            return;
+        }
+        byte[] json;
+        try {
+            json = JsonSupport.MAPPER.writeValueAsBytes(output);
+        } catch (Exception e) {
+            log.warn("序列化检查点失败: {}/{}: {}", taskId, node.nodeId(), e.getMessage());
+            return;
+        }
+        if (json.length > maxBytes) {
+            log.debug("节点结果超过检查点上限，不保存: {}/{} ({} 字节)", taskId, node.nodeId(), json.length);
+            return;
+        }
+        submit(new Write(taskId, node.nodeId(), fingerprint(plan, node), json));
+    }
+    
+    public void delete(String taskId) {
+        submit(new Write(taskId, null, null, null));
+    }
+    
+    private void submit(Write write) {
+        if (running && buffer.offer(write)) {
+            return;
+        }
+        // 缓冲区已满或已停止时由调用方同步写入，形成背压
+        flush(List.of(write));
+    }
+    
+    private void runFlushLoop() {
+        List<Write> batch = new ArrayList<>(batchSize);
+        long lastPurge = System.nanoTime() - PURGE_INTERVAL.toNanos();
+        while (running) {
+            try {
+                if (System.nanoTime() - lastPurge >= PURGE_INTERVAL.toNanos()) {
+                    lastPurge = System.nanoTime();
+                    purgeExpired();
+                }
+                Write first = buffer.poll(flushInterval, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                // 等待一个刷新间隔再写入，任务在此期间完成时它的检查点不会落库
+                long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(flushInterval);
+                while (batch.size() < batchSize) {
+                    long remaining = deadline - System.nanoTime();
+                    Write next = remaining > 0 ? buffer.poll(remaining, TimeUnit.NANOSECONDS) : null;
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                    buffer.drainTo(batch, batchSize - batch.size());
+                }
+                flush(batch);
+                batch.clear();
+            } catch (InterruptedException e) {
+                // 停止信号，剩余写入由 stop() 完成
+                break;
+            } catch (Exception e) {
+                log.error("检查点写入线程异常", e);
+                batch.clear();
+            }
+        }
+        if (!batch.isEmpty()) {
+            flush(batch);
+        }
+    }
+    
+    // 按顺序合并: 删除任务会丢弃同一批中此前对该任务的写入，同一节点只保留最后一次写入
+    private void flush(List<Write> batch) {
+        Map<String, Write> saves = new LinkedHashMap<>();
+        Set<String> deletes = new LinkedHashSet<>();
+        for (Write write : batch) {
+            if (write.nodeId() == null) {
+                saves.values().removeIf(pending -> pending.taskId().equals(write.taskId()));
+                deletes.add(write.taskId());
+            } else {
+                saves.put(idOf(write.taskId(), write.nodeId()), write);
+            }
+        }
+        deletes.forEach(this::deleteNow);
+        if (saves.isEmpty()) {
+            return;
+        }
+        
+        List<TaskCheckpoint> checkpoints = new ArrayList<>(saves.size());
+        for (Map.Entry<String, Write> entry : saves.entrySet()) {
+            try {
+                checkpoints.add(toCheckpoint(entry.getKey(), entry.getValue()));
+            } catch (Exception e) {
+                log.warn("写入检查点失败: {}/{}: {}", entry.getValue().taskId(), entry.getValue().nodeId(), e.getMessage());
+            }
+        }
+        try {
+            transactionTemplate.executeWithoutResult(status -> repository.saveAll(checkpoints));
+        } catch (Exception e) {
+            log.warn("批量写入检查点失败，{} 个检查点未保存: {}", checkpoints.size(), e.getMessage());
+        }
+    }
+    
+    private TaskCheckpoint toCheckpoint(String id, Write write) throws IOException {
+        TaskCheckpoint checkpoint = new TaskCheckpoint();
+        checkpoint.setId(id);
+        checkpoint.setTaskId(write.taskId());
+        checkpoint.setNodeId(write.nodeId());
+        checkpoint.setFingerprint(write.fingerprint());
+        checkpoint.setSize(write.json().length);
+        checkpoint.setCreatedAt(LocalDateTime.now());
+        if (write.json().length > inlineMaxBytes) {
+            // blob 键由检查点ID决定，重新写入时覆盖同一个 blob
+            String blobKey = blobKeyOf(id);
+            blobStore.put(blobKey, gzip(write.json()));
+            checkpoint.setBlobKey(blobKey);
+        } else {
+            checkpoint.setOutput(new String(write.json(), StandardCharsets.UTF_8));
+        }
+        return checkpoint;
+    }
+    
+    private void deleteNow(String taskId) {
+        try {
+            List<TaskCheckpoint> checkpoints = repository.findByTaskId(taskId);
+            if (checkpoints.isEmpty()) {
+                return;
+            }
+            repository.deleteByTaskId(taskId);
+            deleteBlobs(checkpoints);
+        } catch (Exception e) {
+            log.warn("删除检查点失败: {}: {}", taskId, e.getMessage());
+        }
+    }
+    
+    // 失败或取消后一直没有恢复执行的任务，检查点超过保留时间后删除
+    private void purgeExpired() {
+        LocalDateTime cutoff = LocalDateTime.now().minusSeconds(retentionSeconds);
+        try {
+            int purged = 0;
+            List<TaskCheckpoint> expired;
+            do {
+                expired = repository.findTop100ByCreatedAtBefore(cutoff);
+                if (expired.isEmpty()) {
+                    break;
+                }
+                repository.deleteAllInBatch(expired);
+                deleteBlobs(expired);
+                purged += expired.size();
+            } while (expired.size() >= PURGE_BATCH_SIZE && running);
+            if (purged > 0) {
+                log.info("已删除过期的检查点: {} 个", purged);
+            }
+        } catch (Exception e) {
+            log.warn("删除过期的检查点失败: {}", e.getMessage());
+        }
+    }
+    
+    // 内联结果之前可能写过 blob，按检查点ID推导的键一并删除
+    private void deleteBlobs(List<TaskCheckpoint> checkpoints) {
+        for (TaskCheckpoint checkpoint : checkpoints) {
+            String derived = blobKeyOf(checkpoint.getId());
+            blobStore.delete(derived);
+            if (checkpoint.getBlobKey() != null && !checkpoint.getBlobKey().equals(derived)) {
+                blobStore.delete(checkpoint.getBlobKey());
+            }
+        }
+    }
+    
+    // 关闭时先停止后台线程，再把缓冲区中剩余的写入全部完成
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        running = false;
+        if (flusher != null) {
+            flusher.interrupt();
+            flusher.join(TimeUnit.SECONDS.toMillis(10));
+        }
+        List<Write> remaining = new ArrayList<>(batchSize);
+        while (buffer.drainTo(remaining, batchSize) > 0) {
+            flush(remaining);
+            remaining.clear();
+        }
+    }
+    
+    public int getQueueDepth() {
+        return buffer.size();
+    }
+    
+    private Object read(TaskCheckpoint checkpoint) throws IOException {
+        if (checkpoint.getBlobKey() == null) {
+            return JsonSupport.MAPPER.readValue(checkpoint.getOutput(), Object.class);
+        }
+        try (InputStream in = new GZIPInputStream(new ByteArrayInputStream(blobStore.get(checkpoint.getBlobKey())))) {
+            return JsonSupport.MAPPER.readValue(in, Object.class);
+        }
+    }
+    
+    // 同一任务节点的检查点ID固定，写入时直接覆盖，无需先查询
+    private static String idOf(String taskId, String nodeId) {
+        return UUID.nameUUIDFromBytes((taskId + "|" + nodeId).getBytes(StandardCharsets.UTF_8)).toString();
+    }
+    
+    // 节点ID可能包含路径字符，blob 键只使用检查点ID
+    private static String blobKeyOf(String id) {
+        return "checkpoints/" + id.substring(0, 2) + "/" + id + ".json.gz";
+    }
+    
+    // 映射节点的结果取决于子链中的模块
+    private static String fingerprint(CompiledWorkflowPlan plan, CompiledWorkflowPlan.PlanNode node) {
+        List<CompiledWorkflowPlan.PlanNode> modules = node.map() != null ? node.map().body() : List.of(node);
+        return plan.getUpdatedAt() + modules.stream()
+                .filter(module -> module.module() != null)
+                .map(module -> "|" + module.moduleId() + "@" + moduleVersion(module.module()))
+                .collect(Collectors.joining());
+    }
+    
+    private static String moduleVersion(AIModule module) {
+        return module.getVersion() + "/" + module.getUpdatedAt();
+    }
+    
+    private static byte[] gzip(byte[] data) throws IOException {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream(data.length / 4 + 64);
+        try (OutputStream out = new GZIPOutputStream(buffer)) {
+            out.write(data);
+        }
+        return buffer.toByteArray();
+    }
+    
+    // nodeId 为空表示删除整个任务的检查点
+    private record Write(String taskId, String nodeId, String fingerprint, byte[] json) {
+    }
+}
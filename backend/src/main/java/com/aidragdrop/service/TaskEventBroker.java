@@ -0,0 +1,247 @@
+package com.aidragdrop.service;
+
+import com.aidragdrop.dto.TaskEventDTO;
+import com.aidragdrop.entity.JsonSupport;
+import com.aidragdrop.entity.Task;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.ReactiveStringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.BufferOverflowStrategy;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+// 任务事件的广播，每个任务一个可重放的通道
+// 订阅方按 Last-Event-ID 续传，只收到游标之后的事件
+// 任务可能在其他实例的 worker 上执行，事件经 Redis 按任务频道转发给持有订阅者的实例；未启用 Redis 时不转发
+@Component
+@Slf4j
+public class TaskEventBroker implements MessageListener {
+    
+    private static final Set<String> TERMINAL_STATUSES = Set.of(
+            Task.TaskStatus.COMPLETED.name(),
+            Task.TaskStatus.FAILED.name(),
+            Task.TaskStatus.CANCELLED.name());
+    
+    private final String instanceId = UUID.randomUUID().toString();
+    private final Map<String, Channel> channels = new ConcurrentHashMap<>();
+    private final ReactiveStringRedisTemplate redisTemplate;
+    private final RedisMessageListenerContainer listenerContainer;
+    
+    @Value("${app.task-events.replay-size:1000}")
+    private int replaySize;
+    
+    @Value("${app.task-events.subscriber-buffer:256}")
+    private int subscriberBuffer;
+    
+    @Value("${app.task-events.retention:60000}")
+    private long retention;
+    
+    @Value("${app.task-events.relay:true}")
+    private boolean relay;
+    
+    @Value("${app.task-events.channel-prefix:ai-drag-drop:task-events:}")
+    private String channelPrefix;
+    
+    public TaskEventBroker(ObjectProvider<ReactiveStringRedisTemplate> redisTemplate,
+                           ObjectProvider<RedisMessageListenerContainer> listenerContainer) {
+        this.redisTemplate = redisTemplate.getIfAvailable();
+        this.listenerContainer = listenerContainer.getIfAvailable();
+    }
+    
+    public void publish(TaskEventDTO event) {
+        String taskId = event.getTaskId();
+        if (event.getTimestamp() == null) {
+            event.setTimestamp(LocalDateTime.now());
+        }
+        boolean terminal = isTerminal(event);
+        // 在 compute 内发射，避免与空闲通道回收交错导致事件落入已移除的通道
+        channels.compute(taskId, (id, existing) -> {
+            Channel channel = existing != null ? existing : new Channel(id);
+            channel.emitLocal(event, terminal);
+            return channel;
+        });
+    }
+    
+    public Flux<TaskEventDTO> subscribe(String taskId, long lastEventId) {
+        Channel channel = channels.computeIfAbsent(taskId, Channel::new);
+        channel.listen();
+        return channel.sink.asFlux()
+                .filter(event -> event.getId() > lastEventId)
+                // 慢消费者只保留最新的事件，不拖慢执行引擎
+                .onBackpressureBuffer(subscriberBuffer,
+                        dropped -> log.debug("任务事件订阅缓冲已满，丢弃事件: {}#{}", taskId, dropped.getId()),
+                        BufferOverflowStrategy.DROP_OLDEST)
+                .doFinally(signal -> channel.releaseIfIdle());
+    }
+    
+    // 任务恢复执行时替换已结束的通道，事件ID接着上次的编号，客户端可沿用原游标续传
+    public void reopen(String taskId) {
+        channels.computeIfPresent(taskId, (id, channel) -> channel.reopen());
+    }
+    
+    public boolean hasChannel(String taskId) {
+        return channels.containsKey(taskId);
+    }
+    
+    public int getChannelCount() {
+        return channels.size();
+    }
+    
+    // 其他实例转发来的事件，只投递给本实例已有的通道
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        String payload = new String(message.getBody(), StandardCharsets.UTF_8);
+        int separator = payload.indexOf('|');
+        if (separator < 0 || instanceId.equals(payload.substring(0, separator))) {
+            return;
+        }
+        TaskEventDTO event;
+        try {
+            event = JsonSupport.MAPPER.readValue(payload.substring(separator + 1), TaskEventDTO.class);
+        } catch (Exception e) {
+            log.warn("解析转发的任务事件失败: {}", e.getMessage());
+            return;
+        }
+        boolean terminal = isTerminal(event);
+        channels.computeIfPresent(event.getTaskId(), (id, channel) -> {
+            channel.emitRelayed(event, terminal);
+            return channel;
+        });
+    }
+    
+    private void forward(TaskEventDTO event) {
+        String payload;
+        try {
+            payload = instanceId + "|" + JsonSupport.MAPPER.writeValueAsString(event);
+        } catch (Exception e) {
+            log.warn("序列化任务事件失败: {}", e.getMessage());
+            return;
+        }
+        redisTemplate.convertAndSend(channelPrefix + event.getTaskId(), payload)
+                .subscribe(null, e -> log.debug("转发任务事件失败: {}", e.getMessage()));
+    }
+    
+    private boolean relaying() {
+        return relay && redisTemplate != null && listenerContainer != null;
+    }
+    
+    private static boolean isTerminal(TaskEventDTO event) {
+        return event.getType() == TaskEventDTO.EventType.STATUS && TERMINAL_STATUSES.contains(event.getStatus());
+    }
+    
+    private final class Channel {
+        
+        private final String taskId;
+        private final Sinks.Many<TaskEventDTO> sink = Sinks.many().replay().limit(replaySize);
+        private final AtomicBoolean listening = new AtomicBoolean();
+        private long sequence;
+        private boolean completed;
+        // 本实例是否发布过该任务的事件（即任务在本实例执行）
+        private boolean local;
+        
+        private Channel(String taskId) {
+            this.taskId = taskId;
+        }
+        
+        // 串行化发射，保证事件ID与发射顺序一致，转发顺序与之相同
+        synchronized void emitLocal(TaskEventDTO event, boolean terminal) {
+            if (completed) {
+                return;
+            }
+            local = true;
+            event.setTaskId(taskId);
+            event.setId(++sequence);
+            emit(event, terminal);
+            if (relaying()) {
+                forward(event);
+            }
+        }
+        
+        // 沿用执行实例分配的事件ID，保证跨实例续传游标一致
+        synchronized void emitRelayed(TaskEventDTO event, boolean terminal) {
+            if (completed) {
+                return;
+            }
+            sequence = Math.max(sequence + 1, event.getId());
+            event.setId(sequence);
+            emit(event, terminal);
+        }
+        
+        private void emit(TaskEventDTO event, boolean terminal) {
+            sink.tryEmitNext(event);
+            if (terminal) {
+                completed = true;
+                sink.tryEmitComplete();
+                // 结束后保留一段时间，供断线重连的客户端补齐最后的事件
+                Mono.delay(Duration.ofMillis(retention))
+                        .subscribe(ignored -> remove());
+            }
+        }
+        
+        // 新通道接管频道监听，旧通道到期回收时不再影响它
+        synchronized Channel reopen() {
+            if (!completed) {
+                return this;
+            }
+            Channel next = new Channel(taskId);
+            next.sequence = sequence;
+            next.local = local;
+            if (listening.compareAndSet(true, false)) {
+                next.listening.set(true);
+            }
+            return next;
+        }
+        
+        void listen() {
+            if (relaying() && listening.compareAndSet(false, true)) {
+                listenerContainer.addMessageListener(TaskEventBroker.this, new ChannelTopic(channelPrefix + taskId));
+            }
+        }
+        
+        void releaseIfIdle() {
+            boolean removed = channels.computeIfPresent(taskId, (id, channel) -> {
+                synchronized (this) {
+                    // 只被订阅、从未收到事件的通道立即回收
+                    return channel == this && sequence == 0 && sink.currentSubscriberCount() == 0 ? null : channel;
+                }
+            }) == null;
+            if (removed) {
+                close();
+            } else if (!local) {
+                // 转发来的通道在订阅者离开后保留一段时间，供客户端重连续传
+                Mono.delay(Duration.ofMillis(retention)).subscribe(ignored -> {
+                    if (sink.currentSubscriberCount() == 0) {
+                        remove();
+                    }
+                });
+            }
+        }
+        
+        private void remove() {
+            if (channels.remove(taskId, this)) {
+                close();
+            }
+        }
+        
+        private void close() {
+            if (listening.compareAndSet(true, false)) {
+                listenerContainer.removeMessageListener(TaskEventBroker.this, new ChannelTopic(channelPrefix + taskId));
+            }
+        }
+    }
+}
@@ -0,0 +1,193 @@
+package com.aidragdrop.service;
+
+import com.aidragdrop.entity.TaskLog;
+import com.aidragdrop.repository.TaskLogRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+// 任务日志先写入有界环形缓冲区，由后台线程按批量大小或时间间隔合并成 JDBC 批量插入
+@Component
+@Slf4j
+public class TaskLogWriter {
+    
+    private final TaskLogRepository taskLogRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final BlockingQueue<TaskLog> buffer;
+    
+    @Value("${app.task-log.batch-size:100}")
+    private int batchSize;
+    
+    @Value("${app.task-log.flush-interval:200}")
+    private long flushInterval;
+    
+    @Value("${app.task-log.offer-timeout:50}")
+    private long offerTimeout;
+    
+    private volatile boolean running;
+    private Thread flusher;
+    
+    private final LongAdder flushedLogs = new LongAdder();
+    private final LongAdder flushCount = new LongAdder();
+    private final LongAdder totalFlushNanos = new LongAdder();
+    private final AtomicLong lastFlushNanos = new AtomicLong();
+    private final AtomicLong maxFlushNanos = new AtomicLong();
+    private final LongAdder callerRunsCount = new LongAdder();
+    private final LongAdder failedLogs = new LongAdder();
+    
+    public TaskLogWriter(
+            TaskLogRepository taskLogRepository,
+            PlatformTransactionManager transactionManager,
+            @Value("${app.task-log.buffer-size:10000}") int bufferSize) {
+        this.taskLogRepository = taskLogRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.buffer = new ArrayBlockingQueue<>(bufferSize);
+    }
+    
+    @PostConstruct
+    public void start() {
+        running = true;
+        flusher = new Thread(this::runFlushLoop, "task-log-writer");
+        flusher.setDaemon(true);
+        flusher.start();
+    }
+    
+    public void append(TaskLog taskLog) {
+        if (!running) {
+            flush(List.of(taskLog));
+            return;
+        }
+        try {
+            if (buffer.offer(taskLog, offerTimeout, TimeUnit.MILLISECONDS)) {
+                return;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        // 缓冲区已满时由调用方同步写入，形成背压而不是丢日志
+        callerRunsCount.increment();
+        flush(List.of(taskLog));
+    }
+    
+    private void runFlushLoop() {
+        List<TaskLog> batch = new ArrayList<>(batchSize);
+        while (running) {
+            try {
+                TaskLog first = buffer.poll(flushInterval, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                // 从第一条日志开始最多等待一个刷新间隔，凑满一批就立即写入
+                long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(flushInterval);
+                while (batch.size() < batchSize) {
+                    buffer.drainTo(batch, batchSize - batch.size());
+                    long remaining = deadline - System.nanoTime();
+                    if (batch.size() >= batchSize || remaining <= 0) {
+                        break;
+                    }
+                    TaskLog next = buffer.poll(remaining, TimeUnit.NANOSECONDS);
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+                flush(batch);
+                batch.clear();
+            } catch (InterruptedException e) {
+                // 停止信号，剩余日志由 stop() 写完
+                break;
+            } catch (Exception e) {
+                log.error("任务日志刷新线程异常", e);
+                batch.clear();
+            }
+        }
+        if (!batch.isEmpty()) {
+            flush(batch);
+        }
+    }
+    
+    private void flush(List<TaskLog> batch) {
+        long start = System.nanoTime();
+        try {
+            transactionTemplate.executeWithoutResult(status -> taskLogRepository.saveAll(batch));
+            flushedLogs.add(batch.size());
+        } catch (Exception e) {
+            failedLogs.add(batch.size());
+            log.error("批量写入任务日志失败，{} 条日志未保存", batch.size(), e);
+            return;
+        }
+        long elapsed = System.nanoTime() - start;
+        flushCount.increment();
+        totalFlushNanos.add(elapsed);
+        lastFlushNanos.set(elapsed);
+        maxFlushNanos.accumulateAndGet(elapsed, Math::max);
+        if (log.isDebugEnabled()) {
+            log.debug("批量写入任务日志 {} 条，耗时 {} ms，队列剩余 {}",
+                    batch.size(), TimeUnit.NANOSECONDS.toMillis(elapsed), buffer.size());
+        }
+    }
+    
+    // 关闭时先停止后台线程，再把缓冲区中剩余的日志全部写入
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        running = false;
+        if (flusher != null) {
+            flusher.interrupt();
+            flusher.join(TimeUnit.SECONDS.toMillis(10));
+        }
+        List<TaskLog> remaining = new ArrayList<>(batchSize);
+        while (buffer.drainTo(remaining, batchSize) > 0) {
+            flush(remaining);
+            remaining.clear();
+        }
+    }
+    
+    public int getQueueDepth() {
+        return buffer.size();
+    }
+    
+    public long getFlushedLogs() {
+        return flushedLogs.sum();
+    }
+    
+    public long getFailedLogs() {
+        return failedLogs.sum();
+    }
+    
+    public long getCallerRunsCount() {
+        return callerRunsCount.sum();
+    }
+    
+    public long getFlushCount() {
+        return flushCount.sum();
+    }
+    
+    public long getTotalFlushNanos() {
+        return totalFlushNanos.sum();
+    }
+    
+    public double getLastFlushMillis() {
+        return lastFlushNanos.get() / 1_000_000.0;
+    }
+    
+    public double getMaxFlushMillis() {
+        return maxFlushNanos.get() / 1_000_000.0;
+    }
+    
+    public double getAverageFlushMillis() {
+        long count = flushCount.sum();
+        return count == 0 ? 0 : totalFlushNanos.sum() / 1_000_000.0 / count;
+    }
+}
@@ -0,0 +1,33 @@
+package com.aidragdrop.service;
+
+import java.time.Duration;
+import java.util.List;
+
+// 持久化的任务队列，消息只携带任务ID，执行输入随任务记录保存
+// 至少一次投递: 消息确认前对其他消费者不可见，超过可见性超时未续期的消息可被任意实例重新认领
+public interface TaskQueue {
+    
+    void enqueue(String taskId);
+    
+    // 拉取最多 max 条新消息，没有消息时最多等待 timeout
+    List<QueuedTask> poll(int max, Duration timeout);
+    
+    // 认领超过可见性超时仍未确认的消息（其他实例崩溃或卡死）
+    List<QueuedTask> claimStale(Duration visibilityTimeout, int max);
+    
+    // 为执行中的消息续期，避免被其他实例认领
+    void heartbeat(QueuedTask message);
+    
+    void ack(QueuedTask message);
+    
+    // 尚未被拉取的积压消息数
+    long size();
+    
+    // 重启后消息是否仍在；不持久的实现由 worker 在启动时把未完成的任务重新入队
+    default boolean isDurable() {
+        return true;
+    }
+    
+    record QueuedTask(String messageId, String taskId, long deliveryCount) {
+    }
+}
@@ -0,0 +1,239 @@
+package com.aidragdrop.service;
+
+import com.aidragdrop.entity.Task;
+import com.aidragdrop.repository.TaskRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import reactor.core.Disposable;
+import reactor.core.Disposables;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+// 从共享任务队列拉取任务执行，每个实例最多同时执行 worker-concurrency 个任务
+// 只在有空闲名额时拉取，积压的任务留在队列中由其他实例消费
+@Component
+@Slf4j
+public class TaskQueueWorker {
+    
+    private final TaskQueue taskQueue;
+    private final TaskRepository taskRepository;
+    private final WorkflowExecutionService executionService;
+    private final Scheduler blockingScheduler;
+    private final TaskCancellationRegistry cancellationRegistry;
+    private final Map<String, TaskQueue.QueuedTask> inFlight = new ConcurrentHashMap<>();
+    
+    @Value("${app.queue.worker-concurrency:10}")
+    private int concurrency;
+    
+    @Value("${app.queue.visibility-timeout:60000}")
+    private long visibilityTimeout;
+    
+    @Value("${app.queue.poll-timeout:2000}")
+    private long pollTimeout;
+    
+    @Value("${app.queue.claim-interval:30000}")
+    private long claimInterval;
+    
+    @Value("${app.queue.max-deliveries:5}")
+    private int maxDeliveries;
+    
+    private Semaphore permits;
+    private Thread poller;
+    private ScheduledExecutorService heartbeats;
+    private volatile boolean running;
+    
+    public TaskQueueWorker(
+            TaskQueue taskQueue,
+            TaskRepository taskRepository,
+            WorkflowExecutionService executionService,
+            @Qualifier("blockingScheduler") Scheduler blockingScheduler,
+            TaskCancellationRegistry cancellationRegistry) {
+        this.taskQueue = taskQueue;
+        this.taskRepository = taskRepository;
+        this.executionService = executionService;
+        this.blockingScheduler = blockingScheduler;
+        this.cancellationRegistry = cancellationRegistry;
+    }
+    
+    @PostConstruct
+    public void start() {
+        permits = new Semaphore(concurrency);
+        running = true;
+        poller = new Thread(this::runPollLoop, "task-queue-poller");
+        poller.setDaemon(true);
+        poller.start();
+        
+        // 续期间隔取可见性超时的三分之一，留出两次失败的余量
+        long heartbeatInterval = Math.max(1, visibilityTimeout / 3);
+        heartbeats = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "task-queue-heartbeat");
+            thread.setDaemon(true);
+            return thread;
+        });
+        heartbeats.scheduleAtFixedRate(this::heartbeat, heartbeatInterval, heartbeatInterval, TimeUnit.MILLISECONDS);
+    }
+    
+    // 未确认的任务留在队列中，由其他实例在可见性超时后认领
+    @PreDestroy
+    public void stop() {
+        running = false;
+        poller.interrupt();
+        heartbeats.shutdownNow();
+    }
+    
+    private void runPollLoop() {
+        if (!taskQueue.isDurable()) {
+            recoverOrphanedTasks();
+        }
+        long lastClaim = 0;
+        while (running) {
+            int available;
+            try {
+                permits.acquire();
+                available = 1 + permits.drainPermits();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            
+            List<TaskQueue.QueuedTask> messages = new ArrayList<>();
+            try {
+                if (System.currentTimeMillis() - lastClaim >= claimInterval) {
+                    lastClaim = System.currentTimeMillis();
+                    messages.addAll(taskQueue.claimStale(Duration.ofMillis(visibilityTimeout), available));
+                }
+                if (messages.size() < available) {
+                    messages.addAll(taskQueue.poll(available - messages.size(), Duration.ofMillis(pollTimeout)));
+                }
+            } catch (Exception e) {
+                if (!running) {
+                    return;
+                }
+                log.warn("拉取任务队列失败: {}", e.getMessage());
+                sleepQuietly(pollTimeout);
+            } finally {
+                permits.release(available - messages.size());
+            }
+            messages.forEach(this::dispatch);
+        }
+    }
+    
+    private void dispatch(TaskQueue.QueuedTask message) {
+        inFlight.put(message.messageId(), message);
+        // 先注册句柄再订阅，订阅期间到达的取消由 update 立即 dispose
+        Disposable.Swap execution = Disposables.swap();
+        cancellationRegistry.register(message.taskId(), execution);
+        if (execution.isDisposed()) {
+            // 拉取前已被取消
+            inFlight.remove(message.messageId());
+            blockingScheduler.schedule(() -> ackQuietly(message));
+            permits.release();
+            return;
+        }
+        execution.update(Mono.fromCallable(() -> taskRepository.findById(message.taskId()))
+                .subscribeOn(blockingScheduler)
+                .flatMap(found -> {
+                    if (found.isEmpty()) {
+                        log.warn("队列中的任务不存在: {}", message.taskId());
+                        return Mono.empty();
+                    }
+                    Task task = found.get();
+                    if (task.getStatus() != Task.TaskStatus.PENDING && task.getStatus() != Task.TaskStatus.RUNNING) {
+                        // 重复投递且已处理完成
+                        return Mono.empty();
+                    }
+                    if (message.deliveryCount() > maxDeliveries) {
+                        return Mono.fromRunnable(() -> failTask(task.getId(), "任务多次投递仍未完成: " + message.deliveryCount() + " 次"))
+                                .subscribeOn(blockingScheduler)
+                                .then();
+                    }
+                    // RUNNING 说明上一次执行所在实例已失效，已完成节点的结果取自检查点，其余节点重新执行
+                    return executionService.execute(task, task.getInput() != null ? task.getInput().get() : null);
+                })
+                // 只在执行结束后确认；出错时不确认，等待可见性超时后重新投递
+                .then(Mono.fromRunnable(() -> taskQueue.ack(message)).subscribeOn(blockingScheduler))
+                // 被取消的任务同样确认，避免重新投递
+                .doOnCancel(() -> blockingScheduler.schedule(() -> ackQuietly(message)))
+                .doFinally(signal -> {
+                    cancellationRegistry.unregister(message.taskId(), execution);
+                    inFlight.remove(message.messageId());
+                    permits.release();
+                })
+                .subscribe(null, e -> log.error("执行队列任务失败: {}", message.taskId(), e)));
+    }
+    
+    // 进程内队列随重启丢失，上次未执行完的任务重新入队，从检查点恢复执行
+    // 批量任务不经过队列，由 BulkExecutionService 按心跳超时标记失败
+    private void recoverOrphanedTasks() {
+        try {
+            int recovered = 0;
+            for (Task.TaskStatus status : List.of(Task.TaskStatus.PENDING, Task.TaskStatus.RUNNING)) {
+                for (Task task : taskRepository.findByStatus(status)) {
+                    if (!BulkExecutionService.isBulk(task)) {
+                        taskQueue.enqueue(task.getId());
+                        recovered++;
+                    }
+                }
+            }
+            if (recovered > 0) {
+                log.info("重新入队上次未完成的任务: {} 个", recovered);
+            }
+        } catch (Exception e) {
+            log.warn("恢复未完成的任务失败: {}", e.getMessage());
+        }
+    }
+    
+    private void ackQuietly(TaskQueue.QueuedTask message) {
+        try {
+            taskQueue.ack(message);
+        } catch (Exception e) {
+            log.warn("确认队列任务失败: {}", e.getMessage());
+        }
+    }
+    
+    private void failTask(String taskId, String error) {
+        taskRepository.markTerminated(taskId, List.of(Task.TaskStatus.PENDING, Task.TaskStatus.RUNNING),
+                Task.TaskStatus.FAILED, error, LocalDateTime.now());
+        log.warn("{}: {}", error, taskId);
+    }
+    
+    private void heartbeat() {
+        for (TaskQueue.QueuedTask message : inFlight.values()) {
+            try {
+                taskQueue.heartbeat(message);
+            } catch (Exception e) {
+                log.warn("任务队列续期失败: {}", e.getMessage());
+            }
+        }
+    }
+    
+    private static void sleepQuietly(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+    
+    public int getInFlightCount() {
+        return inFlight.size();
+    }
+    
+    public long getQueueDepth() {
+        return taskQueue.size();
+    }
+}
@@ -1,15 +1,21 @@
 package com.aidragdrop.service;
 
 import com.aidragdrop.dto.TaskDTO;
+import com.aidragdrop.dto.TaskEventDTO;
+import com.aidragdrop.dto.TaskPageDTO;
+import com.aidragdrop.entity.LazyJson;
 import com.aidragdrop.entity.Task;
 import com.aidragdrop.entity.TaskLog;
 import com.aidragdrop.repository.TaskRepository;
 import com.aidragdrop.repository.TaskLogRepository;
+import com.aidragdrop.repository.TaskSearchCriteria;
+import com.aidragdrop.repository.TaskSummary;
 import lombok.RequiredArgsConstructor;
-import org.springframework.scheduling.annotation.Async;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
+import reactor.core.publisher.Flux;
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDateTime;
+import java.util.Base64;
 import java.util.List;
 import java.util.stream.Collectors;
 
@@ -17,9 +23,17 @@ import java.util.stream.Collectors;
 @RequiredArgsConstructor
 public class TaskService {
     
+    private static final int DEFAULT_PAGE_SIZE = 50;
+    private static final int MAX_PAGE_SIZE = 500;
+    private static final List<Task.TaskStatus> CANCELLABLE = List.of(Task.TaskStatus.PENDING, Task.TaskStatus.RUNNING);
+    private static final List<Task.TaskStatus> RESUMABLE = List.of(Task.TaskStatus.FAILED, Task.TaskStatus.CANCELLED);
+    
     private final TaskRepository taskRepository;
     private final TaskLogRepository taskLogRepository;
-    private final WorkflowExecutionService executionService;
+    private final TaskQueue taskQueue;
+    private final TaskEventBroker eventBroker;
+    private final TaskCancellationRegistry cancellationRegistry;
+    private final TimelineExporter timelineExporter;
     
     public TaskDTO getTaskById(String id) {
         Task task = taskRepository.findById(id)
@@ -27,29 +41,60 @@ public class TaskService {
         return toDTO(task);
     }
     
-    public List<TaskDTO> getTasks(String workflowId) {
-        List<Task> tasks;
-        if (workflowId != null && !workflowId.isEmpty()) {
-            tasks = taskRepository.findByWorkflowId(workflowId);
-        } else {
-            tasks = taskRepository.findAll();
+    // 游标分页，按创建时间倒序；默认不返回 result / error
+    public TaskPageDTO getTasks(String workflowId, String status, LocalDateTime from, LocalDateTime to,
+                                String cursor, Integer limit, boolean includeDetails) {
+        int pageSize = limit == null ? DEFAULT_PAGE_SIZE : Math.max(1, Math.min(limit, MAX_PAGE_SIZE));
+        LocalDateTime cursorCreatedAt = null;
+        String cursorId = null;
+        if (cursor != null && !cursor.isEmpty()) {
+            String[] parts = decodeCursor(cursor);
+            cursorCreatedAt = LocalDateTime.parse(parts[0]);
+            cursorId = parts[1];
+        }
+        // 多取一条用于判断是否还有下一页
+        TaskSearchCriteria criteria = new TaskSearchCriteria(
+                workflowId != null && !workflowId.isEmpty() ? workflowId : null,
+                parseStatus(status),
+                from,
+                to,
+                cursorCreatedAt,
+                cursorId,
+                pageSize + 1);
+        
+        List<TaskDTO> items = includeDetails
+                ? taskRepository.findPage(criteria).stream().map(this::toDTO).collect(Collectors.toList())
+                : taskRepository.findSummaries(criteria).stream().map(this::toDTO).collect(Collectors.toList());
+        
+        TaskPageDTO page = new TaskPageDTO();
+        if (items.size() > pageSize) {
+            items = items.subList(0, pageSize);
+            TaskDTO last = items.get(pageSize - 1);
+            page.setNextCursor(encodeCursor(last.getCreatedAt(), last.getId()));
         }
-        return tasks.stream()
-                .map(this::toDTO)
-                .collect(Collectors.toList());
+        page.setItems(items);
+        return page;
     }
     
-    @Async
-    @Transactional
     public TaskDTO executeWorkflow(String workflowId, Object input) {
         Task task = new Task();
         task.setWorkflowId(workflowId);
         task.setStatus(Task.TaskStatus.PENDING);
         task.setCreatedAt(LocalDateTime.now());
+        task.setInput(LazyJson.of(input));
+        // 先提交任务记录再入队，避免 worker 读不到未提交的任务
         task = taskRepository.save(task);
         
-        // 异步执行工作流
-        executionService.executeWorkflowAsync(task, input);
+        // 由任意实例的 TaskQueueWorker 拉取执行
+        try {
+            taskQueue.enqueue(task.getId());
+        } catch (Exception e) {
+            task.setStatus(Task.TaskStatus.FAILED);
+            task.setError("任务入队失败: " + e.getMessage());
+            task.setEndTime(LocalDateTime.now());
+            taskRepository.save(task);
+            throw new RuntimeException("任务入队失败: " + e.getMessage(), e);
+        }
         
         return toDTO(task);
     }
@@ -58,19 +103,141 @@ public class TaskService {
         return taskLogRepository.findByTaskIdOrderByTimestampAsc(taskId);
     }
     
-    @Transactional
+    // 时间线在任务结束时写入，原样返回存储的 JSON；otlp 格式转换为 OpenTelemetry 的 trace 数据
+    public Object getTimeline(String taskId, String format) {
+        Task task = taskRepository.findById(taskId)
+                .orElseThrow(() -> new RuntimeException("任务不存在: " + taskId));
+        if (task.getTimeline() == null) {
+            throw new RuntimeException("任务尚无执行时间线: " + taskId);
+        }
+        if (format == null || format.isEmpty() || "json".equalsIgnoreCase(format)) {
+            return task.getTimeline();
+        }
+        if ("otlp".equalsIgnoreCase(format)) {
+            return timelineExporter.toOtlp(task);
+        }
+        throw new RuntimeException("不支持的时间线格式: " + format);
+    }
+    
+    // 从 lastEventId 之后开始推送；已结束且事件已过期的任务只返回最终状态
+    public Flux<TaskEventDTO> streamTaskEvents(String taskId, long lastEventId) {
+        Task task = taskRepository.findById(taskId)
+                .orElseThrow(() -> new RuntimeException("任务不存在: " + taskId));
+        
+        if (task.getStatus() == Task.TaskStatus.PENDING) {
+            // 等待恢复执行的任务可能还留着上次已结束的通道
+            eventBroker.reopen(taskId);
+        } else if (isFinished(task) && !eventBroker.hasChannel(taskId)) {
+            TaskEventDTO event = new TaskEventDTO();
+            event.setTaskId(taskId);
+            event.setType(TaskEventDTO.EventType.STATUS);
+            event.setStatus(task.getStatus().name());
+            event.setMessage(task.getError());
+            event.setTimestamp(task.getEndTime());
+            return Flux.just(event);
+        }
+        return eventBroker.subscribe(taskId, lastEventId);
+    }
+    
     public void cancelTask(String id) {
+        if (!taskRepository.existsById(id)) {
+            throw new RuntimeException("任务不存在: " + id);
+        }
+        
+        // 与执行引擎的完成更新互斥，已结束的任务不受影响
+        if (taskRepository.markTerminated(id, CANCELLABLE, Task.TaskStatus.CANCELLED, null, LocalDateTime.now()) == 0) {
+            return;
+        }
+        cancellationRegistry.cancel(id);
+        
+        TaskEventDTO event = new TaskEventDTO();
+        event.setTaskId(id);
+        event.setType(TaskEventDTO.EventType.STATUS);
+        event.setStatus(Task.TaskStatus.CANCELLED.name());
+        eventBroker.publish(event);
+    }
+    
+    // 失败或已取消的任务重新入队，已完成节点的结果取自检查点，从失败或未完成的节点继续执行
+    public TaskDTO resumeTask(String id) {
         Task task = taskRepository.findById(id)
                 .orElseThrow(() -> new RuntimeException("任务不存在: " + id));
+        if (BulkExecutionService.isBulk(task)) {
+            throw new RuntimeException("批量任务不支持恢复执行: " + id);
+        }
+        if (taskRepository.markResumed(id, RESUMABLE, Task.TaskStatus.PENDING) == 0) {
+            throw new RuntimeException("只有失败或已取消的任务可以恢复执行: " + id);
+        }
+        task.setStatus(Task.TaskStatus.PENDING);
+        task.setResult(null);
+        task.setError(null);
+        task.setEndTime(null);
         
-        if (task.getStatus() == Task.TaskStatus.RUNNING) {
-            task.setStatus(Task.TaskStatus.CANCELLED);
-            task.setEndTime(LocalDateTime.now());
-            taskRepository.save(task);
+        cancellationRegistry.clear(id);
+        try {
+            taskQueue.enqueue(id);
+        } catch (Exception e) {
+            taskRepository.markTerminated(id, List.of(Task.TaskStatus.PENDING), Task.TaskStatus.FAILED,
+                    "任务入队失败: " + e.getMessage(), LocalDateTime.now());
+            throw new RuntimeException("任务入队失败: " + e.getMessage(), e);
+        }
+        
+        TaskEventDTO event = new TaskEventDTO();
+        event.setTaskId(id);
+        event.setType(TaskEventDTO.EventType.STATUS);
+        event.setStatus(Task.TaskStatus.PENDING.name());
+        eventBroker.reopen(id);
+        eventBroker.publish(event);
+        return toDTO(task);
+    }
+    
+    private boolean isFinished(Task task) {
+        return task.getStatus() == Task.TaskStatus.COMPLETED
+                || task.getStatus() == Task.TaskStatus.FAILED
+                || task.getStatus() == Task.TaskStatus.CANCELLED;
+    }
+    
+    private Task.TaskStatus parseStatus(String status) {
+        if (status == null || status.isEmpty()) {
+            return null;
+        }
+        try {
+            return Task.TaskStatus.valueOf(status.toUpperCase());
+        } catch (IllegalArgumentException e) {
+            throw new RuntimeException("无效的任务状态: " + status);
         }
     }
     
-    private TaskDTO toDTO(Task task) {
+    private static String encodeCursor(LocalDateTime createdAt, String id) {
+        return Base64.getUrlEncoder().withoutPadding()
+                .encodeToString((createdAt + "|" + id).getBytes(StandardCharsets.UTF_8));
+    }
+    
+    private static String[] decodeCursor(String cursor) {
+        try {
+            String decoded = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            String[] parts = decoded.split("\\|", 2);
+            if (parts.length != 2) {
+                throw new IllegalArgumentException(decoded);
+            }
+            LocalDateTime.parse(parts[0]);
+            return parts;
+        } catch (Exception e) {
+            throw new RuntimeException("无效的分页游标: " + cursor);
+        }
+    }
+    
+    TaskDTO toDTO(TaskSummary summary) {
+        TaskDTO dto = new TaskDTO();
+        dto.setId(summary.id());
+        dto.setWorkflowId(summary.workflowId());
+        dto.setStatus(summary.status().name());
+        dto.setStartTime(summary.startTime());
+        dto.setEndTime(summary.endTime());
+        dto.setCreatedAt(summary.createdAt());
+        return dto;
+    }
+    
+    TaskDTO toDTO(Task task) {
         TaskDTO dto = new TaskDTO();
         dto.setId(task.getId());
         dto.setWorkflowId(task.getWorkflowId());
@@ -79,6 +246,7 @@ public class TaskService {
         dto.setError(task.getError());
         dto.setStartTime(task.getStartTime());
         dto.setEndTime(task.getEndTime());
+        dto.setCreatedAt(task.getCreatedAt());
         return dto;
     }
 }
@@ -0,0 +1,125 @@
+package com.aidragdrop.service;
+
+import com.aidragdrop.entity.JsonSupport;
+import com.aidragdrop.entity.Task;
+import com.aidragdrop.entity.TaskTimeline;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import java.nio.charset.StandardCharsets;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+// 将任务时间线转换为 OTLP/JSON 格式（ExportTraceServiceRequest），可直接 POST 到 OTLP 收集器的 /v1/traces
+// 任务为根 span，节点为其子 span；traceId 和 spanId 由任务ID和节点ID确定性生成，重复导出结果一致
+@Component
+public class TimelineExporter {
+    
+    private static final int SPAN_KIND_INTERNAL = 1;
+    private static final int SPAN_KIND_CLIENT = 3;
+    private static final int STATUS_CODE_OK = 1;
+    private static final int STATUS_CODE_ERROR = 2;
+    
+    @Value("${spring.application.name:ai-drag-drop-platform}")
+    private String serviceName;
+    
+    public Map<String, Object> toOtlp(Task task) {
+        TaskTimeline timeline = JsonSupport.MAPPER.convertValue(task.getTimeline().get(), TaskTimeline.class);
+        String traceId = task.getId().replace("-", "");
+        String rootSpanId = spanId(task.getId());
+        long startedAt = timeline.getStartedAt();
+        
+        List<Map<String, Object>> spans = new ArrayList<>();
+        long rootEnd = task.getEndTime() != null
+                ? task.getEndTime().atZone(ZoneId.systemDefault()).toInstant().toEpochMilli()
+                : startedAt;
+        for (TaskTimeline.Span node : timeline.getSpans()) {
+            // 跳过的节点没有执行，不导出
+            if ("SKIPPED".equals(node.getStatus())) {
+                continue;
+            }
+            rootEnd = Math.max(rootEnd, startedAt + node.getEnd());
+            
+            List<Map<String, Object>> attributes = new ArrayList<>();
+            addAttribute(attributes, "workflow.node.id", node.getNodeId());
+            addAttribute(attributes, "workflow.module.id", node.getModuleId());
+            addAttribute(attributes, "http.response.status_code", node.getUpstreamStatus());
+            addAttribute(attributes, "http.request.body.size", node.getBytesIn());
+            addAttribute(attributes, "http.response.body.size", node.getBytesOut());
+            addAttribute(attributes, "workflow.node.attempts", node.getAttempts());
+            addAttribute(attributes, "workflow.node.queue_wait_ms", node.getQueueWaitMs());
+            addAttribute(attributes, "workflow.node.cache_hit", node.getCacheHit());
+            addAttribute(attributes, "workflow.node.batch_size", node.getBatchSize());
+            addAttribute(attributes, "workflow.node.chunks", node.getChunks());
+            addAttribute(attributes, "workflow.node.map.items", node.getItems());
+            addAttribute(attributes, "workflow.node.map.failed_items", node.getFailedItems());
+            addAttribute(attributes, "workflow.node.branch", node.getBranch());
+            addAttribute(attributes, "workflow.node.restored", node.getRestored());
+            
+            // 命中缓存、取自检查点和内置节点没有上游调用
+            boolean internal = node.getCacheHit() != null || node.getRestored() != null || node.getModuleId() == null;
+            Map<String, Object> span = span(traceId, spanId(task.getId() + "/" + node.getNodeId()), rootSpanId,
+                    node.getNodeId(), internal ? SPAN_KIND_INTERNAL : SPAN_KIND_CLIENT,
+                    startedAt + node.getStart(), startedAt + node.getEnd(), attributes,
+                    "ERROR".equals(node.getStatus()), node.getError());
+            spans.add(span);
+        }
+        
+        List<Map<String, Object>> rootAttributes = new ArrayList<>();
+        addAttribute(rootAttributes, "workflow.id", task.getWorkflowId());
+        addAttribute(rootAttributes, "workflow.task.id", task.getId());
+        addAttribute(rootAttributes, "workflow.task.status", task.getStatus().name());
+        spans.add(0, span(traceId, rootSpanId, null, "workflow " + task.getWorkflowId(), SPAN_KIND_INTERNAL,
+                startedAt, rootEnd, rootAttributes, task.getStatus() == Task.TaskStatus.FAILED, task.getError()));
+        
+        List<Map<String, Object>> resourceAttributes = new ArrayList<>();
+        addAttribute(resourceAttributes, "service.name", serviceName);
+        return Map.of("resourceSpans", List.of(Map.of(
+                "resource", Map.of("attributes", resourceAttributes),
+                "scopeSpans", List.of(Map.of(
+                        "scope", Map.of("name", "com.aidragdrop.workflow"),
+                        "spans", spans)))));
+    }
+    
+    private static Map<String, Object> span(String traceId, String spanId, String parentSpanId, String name, int kind,
+                                            long startMillis, long endMillis, List<Map<String, Object>> attributes,
+                                            boolean failed, String error) {
+        Map<String, Object> span = new LinkedHashMap<>();
+        span.put("traceId", traceId);
+        span.put("spanId", spanId);
+        if (parentSpanId != null) {
+            span.put("parentSpanId", parentSpanId);
+        }
+        span.put("name", name);
+        span.put("kind", kind);
+        // OTLP/JSON 中 64 位整数编码为字符串
+        span.put("startTimeUnixNano", String.valueOf(startMillis * 1_000_000));
+        span.put("endTimeUnixNano", String.valueOf(endMillis * 1_000_000));
+        span.put("attributes", attributes);
+        Map<String, Object> status = new LinkedHashMap<>();
+        status.put("code", failed ? STATUS_CODE_ERROR : STATUS_CODE_OK);
+        if (failed && error != null) {
+            status.put("message", error);
+        }
+        span.put("status", status);
+        return span;
+    }
+    
+    private static void addAttribute(List<Map<String, Object>> attributes, String key, Object value) {
+        if (value == null) {
+            return;
+        }
+        Map<String, Object> typed = value instanceof Number number
+                ? Map.of("intValue", String.valueOf(number.longValue()))
+                : Map.of("stringValue", String.valueOf(value));
+        attributes.add(Map.of("key", key, "value", typed));
+    }
+    
+    private static String spanId(String seed) {
+        long bits = UUID.nameUUIDFromBytes(seed.getBytes(StandardCharsets.UTF_8)).getMostSignificantBits();
+        return String.format("%016x", bits);
+    }
+}
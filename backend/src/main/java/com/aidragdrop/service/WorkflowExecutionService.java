@@ -1,190 +1,952 @@
 package com.aidragdrop.service;
 
+import com.aidragdrop.dto.TaskEventDTO;
 import com.aidragdrop.entity.Task;
 import com.aidragdrop.entity.TaskLog;
 import com.aidragdrop.repository.TaskRepository;
-import com.aidragdrop.repository.TaskLogRepository;
-import com.aidragdrop.repository.WorkflowRepository;
-import com.aidragdrop.repository.AIModuleRepository;
-import com.aidragdrop.entity.Workflow;
 import com.aidragdrop.entity.AIModule;
+import com.aidragdrop.entity.ApiConfig;
+import com.aidragdrop.entity.JsonSupport;
+import com.aidragdrop.entity.LazyJson;
+import com.aidragdrop.entity.TaskTimeline;
+import com.fasterxml.jackson.core.JsonProcessingException;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.http.HttpHeaders;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.http.HttpMethod;
 import org.springframework.http.MediaType;
-import org.springframework.scheduling.annotation.Async;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.codec.ServerSentEvent;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.core.scheduler.Scheduler;
+import reactor.util.context.Context;
+import reactor.util.function.Tuple2;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.time.Duration;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
 
 @Service
 @Slf4j
 public class WorkflowExecutionService {
     
     private final TaskRepository taskRepository;
-    private final TaskLogRepository taskLogRepository;
-    private final WorkflowRepository workflowRepository;
-    private final AIModuleRepository moduleRepository;
+    private final TaskLogWriter taskLogWriter;
+    private final WorkflowPlanCache planCache;
+    private final Scheduler blockingScheduler;
+    private final ModuleRateLimiter rateLimiter;
+    private final ModuleResilience resilience;
+    private final ModuleBatcher batcher;
+    private final NodeResultCache resultCache;
+    private final TaskEventBroker eventBroker;
+    private final WorkflowMetrics metrics;
+    private final TaskCheckpointStore checkpointStore;
+    
+    private static final ParameterizedTypeReference<ServerSentEvent<String>> SSE_DATA =
+            new ParameterizedTypeReference<>() { };
+    private static final String SSE_DONE = "[DONE]";
+    private static final String CANCELLED_KEY = "workflow.cancelled";
+    private static final MediaType TEXT_UTF8 = new MediaType(MediaType.TEXT_PLAIN, StandardCharsets.UTF_8);
+    // 重复投递时任务可能仍是 RUNNING（上次执行的实例已失效）
+    private static final List<Task.TaskStatus> STARTABLE = List.of(Task.TaskStatus.PENDING, Task.TaskStatus.RUNNING);
     
     @Value("${app.api-timeout:30000}")
     private long apiTimeout;
     
+    @Value("${app.streaming.max-aggregate-chars:1048576}")
+    private int maxAggregateChars;
+    
+    @Value("${app.streaming.max-aggregate-chunks:10000}")
+    private int maxAggregateChunks;
+    
+    @Value("${app.map.max-parallelism:32}")
+    private int maxMapParallelism;
+    
+    @Value("${app.map.max-items:100000}")
+    private int maxMapItems;
+    
     public WorkflowExecutionService(
             TaskRepository taskRepository,
-            TaskLogRepository taskLogRepository,
-            WorkflowRepository workflowRepository,
-            AIModuleRepository moduleRepository) {
+            TaskLogWriter taskLogWriter,
+            WorkflowPlanCache planCache,
+            @Qualifier("blockingScheduler") Scheduler blockingScheduler,
+            ModuleRateLimiter rateLimiter,
+            ModuleResilience resilience,
+            ModuleBatcher batcher,
+            NodeResultCache resultCache,
+            TaskEventBroker eventBroker,
+            WorkflowMetrics metrics,
+            TaskCheckpointStore checkpointStore) {
         this.taskRepository = taskRepository;
-        this.taskLogRepository = taskLogRepository;
-        this.workflowRepository = workflowRepository;
-        this.moduleRepository = moduleRepository;
+        this.taskLogWriter = taskLogWriter;
+        this.planCache = planCache;
+        this.blockingScheduler = blockingScheduler;
+        this.rateLimiter = rateLimiter;
+        this.resilience = resilience;
+        this.batcher = batcher;
+        this.resultCache = resultCache;
+        this.eventBroker = eventBroker;
+        this.metrics = metrics;
+        this.checkpointStore = checkpointStore;
     }
     
-    @Async
-    @Transactional
-    public void executeWorkflowAsync(Task task, Object input) {
-        try {
-            task.setStatus(Task.TaskStatus.RUNNING);
-            task.setStartTime(LocalDateTime.now());
-            taskRepository.save(task);
-            
-            addLog(task.getId(), null, TaskLog.LogLevel.INFO, "开始执行工作流");
-            
-            Workflow workflow = workflowRepository.findById(task.getWorkflowId())
-                    .orElseThrow(() -> new RuntimeException("工作流不存在"));
-            
-            // 执行工作流节点
-            @SuppressWarnings("unchecked")
-            List<Map<String, Object>> nodes = workflow.getNodes() != null 
-                    ? workflow.getNodes().stream()
-                            .map(node -> (Map<String, Object>) node)
-                            .collect(java.util.stream.Collectors.toList())
-                    : List.of();
-            Object result = input;
+    // 调用方持有返回 Mono 的订阅句柄，dispose 即中断所有进行中的模块调用
+    public Mono<Void> execute(Task task, Object input) {
+        Sinks.One<Boolean> cancelled = Sinks.one();
+        TimelineRecorder timeline = new TimelineRecorder();
+        return blocking(() -> {
+                    // 条件迁移，任务已被取消时不再执行（返回空）
+                    LocalDateTime now = LocalDateTime.now();
+                    if (taskRepository.markStarted(task.getId(), STARTABLE, Task.TaskStatus.RUNNING, now) == 0) {
+                        return null;
+                    }
+                    task.setStatus(Task.TaskStatus.RUNNING);
+                    task.setStartTime(now);
+                    // 恢复执行的任务沿用已结束的事件通道会丢失事件
+                    eventBroker.reopen(task.getId());
+                    publishStatus(task);
+                    
+                    addLog(task.getId(), null, TaskLog.LogLevel.INFO, "开始执行工作流");
+                    
+                    return planCache.getPlan(task.getWorkflowId());
+                })
+                .flatMap(plan -> {
+                    // 按依赖图调度节点，所有前驱完成的节点并行执行
+                    return plan.isEmpty()
+                            ? Mono.just(new NodeOutput(input))
+                            : blocking(() -> restore(task.getId(), plan)).flatMap(restored -> executeGraph(
+                                    new Run(task.getId(), false, timeline, restored), plan, input));
+                })
+                .flatMap(output -> blocking(() -> {
+                    task.setResult(LazyJson.of(output.value()));
+                    task.setTimeline(LazyJson.of(timeline.toTimeline()));
+                    if (finish(task, Task.TaskStatus.COMPLETED, null)) {
+                        // 失败或取消的任务保留检查点，供恢复执行
+                        checkpointStore.delete(task.getId());
+                        addLog(task.getId(), null, TaskLog.LogLevel.INFO, "工作流执行完成");
+                        publishStatus(task);
+                    }
+                    return task;
+                }))
+                .onErrorResume(e -> blocking(() -> {
+                    log.error("执行工作流失败", e);
+                    task.setTimeline(LazyJson.of(timeline.toTimeline()));
+                    if (finish(task, Task.TaskStatus.FAILED, e.getMessage())) {
+                        addLog(task.getId(), null, TaskLog.LogLevel.ERROR, "执行失败: " + e.getMessage());
+                        publishStatus(task);
+                    }
+                    return task;
+                }))
+                .doOnCancel(() -> {
+                    // 数据库状态已由取消方更新，这里写回截至取消时的时间线并结束本实例的事件流
+                    addLog(task.getId(), null, TaskLog.LogLevel.WARN, "任务已取消");
+                    task.setStatus(Task.TaskStatus.CANCELLED);
+                    LazyJson partial = LazyJson.of(timeline.toTimeline());
+                    task.setTimeline(partial);
+                    blocking(() -> taskRepository.updateTimeline(task.getId(), Task.TaskStatus.CANCELLED, partial))
+                            .subscribe(null, e -> log.warn("写回已取消任务的时间线失败: {}", e.getMessage()));
+                    publishStatus(task);
+                    cancelled.tryEmitValue(Boolean.TRUE);
+                })
+                .then()
+                .contextWrite(Context.of(CANCELLED_KEY, cancelled.asMono()));
+    }
+    
+    // 批量执行中的单条记录: 不创建任务记录，不写日志也不推送事件；模块调用按父任务排队限流，取消订阅即中断
+    // 结果为 null 时返回空
+    public Mono<Object> executeQuietly(String jobId, CompiledWorkflowPlan plan, Object input) {
+        Sinks.One<Boolean> cancelled = Sinks.one();
+        Mono<NodeOutput> output = plan.isEmpty()
+                ? Mono.just(new NodeOutput(input))
+                : executeGraph(new Run(jobId, true, null, null), plan, input);
+        return output
+                .mapNotNull(NodeOutput::value)
+                .doOnCancel(() -> cancelled.tryEmitValue(Boolean.TRUE))
+                .contextWrite(Context.of(CANCELLED_KEY, cancelled.asMono()));
+    }
+    
+    // quiet: 批量执行的单条记录，只执行不留痕，不记录时间线
+    // restored: 取自检查点的节点结果，为 null 时不保存检查点
+    private record Run(String taskId, boolean quiet, TimelineRecorder timeline, Map<String, Object> restored) {
+    }
+    
+    // 上次执行（失败、取消或实例崩溃）已完成的节点不再执行
+    private Map<String, Object> restore(String taskId, CompiledWorkflowPlan plan) {
+        Map<String, Object> restored = checkpointStore.load(taskId, plan);
+        if (!restored.isEmpty()) {
+            addLog(taskId, null, TaskLog.LogLevel.INFO, "从检查点恢复 " + restored.size() + " 个节点",
+                    Map.of("nodes", new ArrayList<>(restored.keySet())));
+        }
+        return restored;
+    }
+    
+    // 执行期间并发收集节点 span，按单调时钟计算偏移
+    private static final class TimelineRecorder {
+        
+        private final long startedAtMillis = System.currentTimeMillis();
+        private final long startedAtNanos = System.nanoTime();
+        private final Queue<TaskTimeline.Span> spans = new ConcurrentLinkedQueue<>();
+        
+        long offsetMillis(long nanos) {
+            return (nanos - startedAtNanos) / 1_000_000;
+        }
+        
+        TaskTimeline toTimeline() {
+            TaskTimeline timeline = new TaskTimeline();
+            timeline.setStartedAt(startedAtMillis);
+            List<TaskTimeline.Span> sorted = new ArrayList<>(spans);
+            sorted.sort(Comparator.comparingLong(TaskTimeline.Span::getStart));
+            timeline.setSpans(sorted);
+            return timeline;
+        }
+    }
+    
+    // 任务在执行期间被取消时更新失败，结果不会覆盖取消状态
+    private boolean finish(Task task, Task.TaskStatus status, String error) {
+        LocalDateTime now = LocalDateTime.now();
+        if (taskRepository.markFinished(task.getId(), List.of(Task.TaskStatus.RUNNING), status,
+                task.getResult(), error, task.getTimeline(), now) == 0) {
+            return false;
+        }
+        task.setStatus(status);
+        task.setError(error);
+        task.setEndTime(now);
+        return true;
+    }
+    
+    private Mono<NodeOutput> executeGraph(Run run, CompiledWorkflowPlan plan, Object input) {
+        Map<String, Mono<NodeOutput>> outputs = new HashMap<>();
+        Map<String, Mono<Flux<Object>>> streams = new HashMap<>();
+        for (CompiledWorkflowPlan.PlanNode node : plan.getNodes()) {
+            // 流式节点开始响应时即发布分片流，流式输入的后继无需等待其完成
+            Sinks.One<Flux<Object>> stream = node.streamConsumers() > 0 ? Sinks.one() : null;
+            if (stream != null) {
+                streams.put(node.nodeId(), stream.asMono());
+            }
             
-            for (Map<String, Object> nodeData : nodes) {
-                String moduleId = (String) nodeData.get("moduleId");
-                AIModule module = moduleRepository.findById(moduleId)
-                        .orElseThrow(() -> new RuntimeException("模块不存在: " + moduleId));
-                
-                addLog(task.getId(), moduleId, TaskLog.LogLevel.INFO, "执行模块: " + module.getName());
-                
-                // 调用 AI API
-                result = callAIModule(module, result, task.getId());
-                
-                if (task.getStatus() == Task.TaskStatus.CANCELLED) {
-                    addLog(task.getId(), moduleId, TaskLog.LogLevel.WARN, "任务已取消");
-                    return;
+            Mono<NodeOutput> output;
+            if (run.restored() != null && run.restored().containsKey(node.nodeId())) {
+                output = restored(run, node);
+                if (node.streamSource() != null) {
+                    // 上游仍可能因其他后继而执行，放行本节点那份分片流订阅，避免上游一直等待
+                    streams.get(node.streamSource()).subscribe(chunks -> new StreamTap(chunks).release(), e -> { });
                 }
+            } else if (node.streamSource() != null) {
+                output = streams.get(node.streamSource())
+                        .flatMap(chunks -> {
+                            StreamTap tap = new StreamTap(chunks);
+                            return runNode(run, node, tap.flux(), stream)
+                                    .doFinally(signal -> tap.release());
+                        })
+                        // 前驱被跳过时没有分片流
+                        .switchIfEmpty(Mono.defer(() -> skip(run, node)));
+            } else {
+                Mono<NodeOutput> nodeInput = node.predecessors().isEmpty()
+                        ? Mono.just(new NodeOutput(input))
+                        : join(node.predecessors(), plan, node.nodeId(), outputs);
+                output = nodeInput.flatMap(in -> in.skipped()
+                        ? skip(run, node)
+                        : runNode(run, node, in.value(), stream));
+            }
+            if (run.restored() != null && node.route() == null && !run.restored().containsKey(node.nodeId())) {
+                // 条件节点只在本地求值，重新执行的代价可以忽略，不保存
+                output = output.flatMap(out -> out.skipped() ? Mono.just(out) : blocking(() -> {
+                    checkpointStore.save(run.taskId(), plan, node, out.value());
+                    return out;
+                }));
             }
             
-            task.setStatus(Task.TaskStatus.COMPLETED);
-            task.setResult(result);
-            task.setEndTime(LocalDateTime.now());
-            taskRepository.save(task);
-            
-            addLog(task.getId(), null, TaskLog.LogLevel.INFO, "工作流执行完成");
-            
-        } catch (Exception e) {
-            log.error("执行工作流失败", e);
-            task.setStatus(Task.TaskStatus.FAILED);
-            task.setError(e.getMessage());
-            task.setEndTime(LocalDateTime.now());
-            taskRepository.save(task);
-            
-            addLog(task.getId(), null, TaskLog.LogLevel.ERROR, "执行失败: " + e.getMessage());
+            if (stream != null) {
+                // 命中缓存时没有真实分片流，以完整结果作为唯一分片
+                output = output
+                        .doOnSuccess(out -> {
+                            if (out.skipped()) {
+                                stream.tryEmitEmpty();
+                            } else {
+                                stream.tryEmitValue(out.value() != null ? Flux.just(out.value()) : Flux.empty());
+                            }
+                        })
+                        .doOnError(stream::tryEmitError);
+            }
+            outputs.put(node.nodeId(), output.cache());
         }
+        
+        // 工作流结果取自执行了的汇点，以及选中端口没有连接、在此提前结束的条件节点
+        List<String> terminals = new ArrayList<>();
+        List<Mono<NodeOutput>> results = new ArrayList<>();
+        for (CompiledWorkflowPlan.PlanNode node : plan.getNodes()) {
+            if (node.route() != null) {
+                terminals.add(node.nodeId());
+                results.add(outputs.get(node.nodeId()).map(out ->
+                        out.skipped() || node.route().hasTargets(out.port()) ? NodeOutput.SKIPPED : out));
+            } else if (plan.getSinks().contains(node.nodeId())) {
+                terminals.add(node.nodeId());
+                results.add(outputs.get(node.nodeId()));
+            }
+        }
+        return merge(terminals, results).map(out -> out.skipped() ? new NodeOutput(null) : out);
     }
     
-    private Object callAIModule(AIModule module, Object input, String taskId) {
-        try {
-            Map<String, Object> apiConfig = module.getApiConfig();
-            String url = (String) apiConfig.get("url");
-            String method = (String) apiConfig.getOrDefault("method", "POST");
-            
-            WebClient.Builder clientBuilder = WebClient.builder()
-                    .baseUrl(url)
-                    .defaultHeader(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE);
-            
-            // 设置认证
-            setAuthHeaders(clientBuilder, apiConfig);
+    private Mono<NodeOutput> runNode(Run run, CompiledWorkflowPlan.PlanNode node, Object input,
+                                     Sinks.One<Flux<Object>> stream) {
+        if (node.map() != null) {
+            return executeMap(run, node, input);
+        }
+        if (node.route() != null) {
+            return executeRoute(run, node, input);
+        }
+        return executeNode(run, node, input, stream);
+    }
+    
+    // 条件节点未选中本节点时，来自它的输入视为跳过
+    private Mono<NodeOutput> join(List<String> predecessors, CompiledWorkflowPlan plan, String nodeId,
+                                  Map<String, Mono<NodeOutput>> outputs) {
+        List<Mono<NodeOutput>> sources = new ArrayList<>(predecessors.size());
+        for (String predecessor : predecessors) {
+            CompiledWorkflowPlan.RouteSpec route = plan.getNode(predecessor).route();
+            sources.add(route == null
+                    ? outputs.get(predecessor)
+                    : outputs.get(predecessor).map(out ->
+                            out.skipped() || route.routes(out.port(), nodeId) ? out : NodeOutput.SKIPPED));
+        }
+        return merge(predecessors, sources);
+    }
+    
+    // 汇聚节点的输入为 前驱节点ID -> 结果 的映射，单一前驱直接透传结果
+    // 被跳过的前驱不计入: 全部被跳过时本节点也跳过，只剩一个时直接透传其结果（如 if/else 两个分支的汇合点）
+    private Mono<NodeOutput> merge(List<String> nodeIds, List<Mono<NodeOutput>> sources) {
+        if (sources.size() == 1) {
+            return sources.get(0);
+        }
+        return Mono.zip(sources, values -> {
+            Map<String, Object> merged = new LinkedHashMap<>();
+            for (int i = 0; i < values.length; i++) {
+                NodeOutput value = (NodeOutput) values[i];
+                if (!value.skipped()) {
+                    merged.put(nodeIds.get(i), value.value());
+                }
+            }
+            if (merged.size() <= 1) {
+                return merged.isEmpty() ? NodeOutput.SKIPPED : new NodeOutput(merged.values().iterator().next());
+            }
+            return new NodeOutput(merged);
+        });
+    }
+    
+    // 条件节点在本地对输入求值，不调用模块；输入原样传给选中端口连出的后继
+    private Mono<NodeOutput> executeRoute(Run run, CompiledWorkflowPlan.PlanNode node, Object input) {
+        long startedAt = System.nanoTime();
+        String port = node.route().choose(input);
+        NodeOutput output = new NodeOutput(input, false, port);
+        if (run.timeline() != null) {
+            TaskTimeline.Span span = new TaskTimeline.Span();
+            span.setNodeId(node.nodeId());
+            span.setStart(run.timeline().offsetMillis(startedAt));
+            span.setEnd(run.timeline().offsetMillis(System.nanoTime()));
+            span.setStatus("OK");
+            span.setBranch(port);
+            run.timeline().spans.add(span);
+        }
+        if (run.quiet()) {
+            return Mono.just(output);
+        }
+        return blocking(() -> {
+            publishNodeEvent(run.taskId(), node, TaskEventDTO.EventType.NODE_STARTED, null);
+            addLog(run.taskId(), null, TaskLog.LogLevel.INFO, "条件节点 " + node.nodeId() + " 选择分支: " + port);
+            publishNodeEvent(run.taskId(), node, TaskEventDTO.EventType.NODE_COMPLETED, port);
+            return output;
+        });
+    }
+    
+    // 取自检查点的节点不调用模块；前驱不再被订阅，只为本节点服务的上游节点随之不执行
+    private Mono<NodeOutput> restored(Run run, CompiledWorkflowPlan.PlanNode node) {
+        return Mono.defer(() -> {
+            Object value = run.restored().get(node.nodeId());
+            long offset = run.timeline().offsetMillis(System.nanoTime());
+            TaskTimeline.Span span = new TaskTimeline.Span();
+            span.setNodeId(node.nodeId());
+            span.setModuleId(node.moduleId());
+            span.setStart(offset);
+            span.setEnd(offset);
+            span.setStatus("OK");
+            span.setRestored(true);
+            run.timeline().spans.add(span);
+            return blocking(() -> {
+                publishNodeEvent(run.taskId(), node, TaskEventDTO.EventType.NODE_COMPLETED, "restored");
+                return new NodeOutput(value);
+            });
+        });
+    }
+    
+    // 未选中分支上的节点不执行，后继随之跳过
+    private Mono<NodeOutput> skip(Run run, CompiledWorkflowPlan.PlanNode node) {
+        metrics.recordSkipped(node.moduleId() != null ? node.moduleId() : node.definition().getType());
+        if (run.timeline() != null) {
+            long offset = run.timeline().offsetMillis(System.nanoTime());
+            TaskTimeline.Span span = new TaskTimeline.Span();
+            span.setNodeId(node.nodeId());
+            span.setModuleId(node.moduleId());
+            span.setStart(offset);
+            span.setEnd(offset);
+            span.setStatus("SKIPPED");
+            run.timeline().spans.add(span);
+        }
+        if (run.quiet()) {
+            return Mono.just(NodeOutput.SKIPPED);
+        }
+        return blocking(() -> {
+            publishNodeEvent(run.taskId(), node, TaskEventDTO.EventType.NODE_SKIPPED, null);
+            return NodeOutput.SKIPPED;
+        });
+    }
+    
+    private Mono<NodeOutput> executeNode(Run run, CompiledWorkflowPlan.PlanNode node, Object input,
+                                         Sinks.One<Flux<Object>> stream) {
+        AIModule module = node.module();
+        String moduleId = node.moduleId();
+        Mono<AIModule> started = run.quiet()
+                ? Mono.just(module)
+                : blocking(() -> {
+                    publishNodeEvent(run.taskId(), node, TaskEventDTO.EventType.NODE_STARTED, null);
+                    addLog(run.taskId(), moduleId, TaskLog.LogLevel.INFO, "执行模块: " + module.getName());
+                    return module;
+                });
+        return Mono.defer(() -> {
+            long startedAt = System.nanoTime();
+            CallStats stats = new CallStats();
+            return started
+                    .flatMap(ignored -> {
+                        NodeResultCache.CachePolicy policy = resultCache.policyOf(module);
+                        // 流式输入无法确定缓存键
+                        if (!policy.enabled() || input instanceof Flux) {
+                            return invokeModule(node, input, run, stream, stats);
+                        }
+                        // 命中缓存时完全跳过远程调用
+                        String cacheKey = resultCache.keyOf(module, input);
+                        return blocking(() -> resultCache.get(module, policy, cacheKey))
+                                .map(hit -> {
+                                    stats.cacheTier = hit.tier();
+                                    if (!run.quiet()) {
+                                        addLog(run.taskId(), moduleId, TaskLog.LogLevel.INFO, "命中缓存: " + module.getName(),
+                                                Map.of("cacheHit", true, "cacheTier", hit.tier(), "cacheKey", cacheKey));
+                                    }
+                                    return new NodeOutput(hit.value());
+                                })
+                                .switchIfEmpty(Mono.defer(() -> invokeModule(node, input, run, stream, stats)
+                                        .flatMap(output -> blocking(() -> {
+                                            resultCache.put(module, policy, cacheKey, output.value());
+                                            return output;
+                                        }))));
+                    })
+                    .doOnSuccess(output -> {
+                        recordNode(run, node, stats, startedAt,
+                                stats.cacheTier != null ? WorkflowMetrics.OUTCOME_CACHE_HIT : WorkflowMetrics.OUTCOME_SUCCESS,
+                                null);
+                        if (!run.quiet()) {
+                            publishNodeEvent(run.taskId(), node, TaskEventDTO.EventType.NODE_COMPLETED, null);
+                        }
+                    })
+                    .doOnError(e -> {
+                        recordNode(run, node, stats, startedAt, WorkflowMetrics.OUTCOME_ERROR, e);
+                        if (!run.quiet()) {
+                            publishNodeEvent(run.taskId(), node, TaskEventDTO.EventType.NODE_FAILED, e.getMessage());
+                        }
+                    });
+        });
+    }
+    
+    // 映射节点: 逐元素执行子链，最多 parallelism 个元素同时执行，按序汇总时的等待缓冲也以此为上限
+    // 子链中的模块调用只记录指标，不单独写日志和推送事件，限流仍按本任务排队
+    private Mono<NodeOutput> executeMap(Run run, CompiledWorkflowPlan.PlanNode node, Object input) {
+        CompiledWorkflowPlan.MapSpec spec = node.map();
+        Flux<NodeOutput> items;
+        if (input instanceof Flux<?> chunks) {
+            items = chunks.map(NodeOutput::new);
+        } else {
+            Object source = spec.itemsPath() != null ? JsonSupport.valueAt(input, spec.itemsPath()) : input;
+            if (!(source instanceof List<?> list)) {
+                return Mono.error(new RuntimeException("映射节点的输入不是列表: " + node.nodeId()));
+            }
+            // 元素可能为 null，逐个包装后再发出
+            items = Flux.range(0, list.size()).map(i -> new NodeOutput(list.get(i)));
+        }
+        Run element = new Run(run.taskId(), true, null, null);
+        int parallelism = Math.min(spec.parallelism(), maxMapParallelism);
+        
+        return Mono.defer(() -> {
+            long startedAt = System.nanoTime();
+            AtomicInteger total = new AtomicInteger();
+            AtomicInteger failed = new AtomicInteger();
+            Function<Tuple2<Long, NodeOutput>, Mono<MapItem>> runItem = item ->
+                    executeChain(element, spec.body(), item.getT2().value())
+                            .map(output -> new MapItem(output.value(), null))
+                            .onErrorResume(e -> {
+                                int failures = failed.incrementAndGet();
+                                if (spec.onError() == CompiledWorkflowPlan.FailurePolicy.FAIL) {
+                                    return Mono.error(new RuntimeException(
+                                            "映射节点元素 " + item.getT1() + " 执行失败: " + e.getMessage(), e));
+                                }
+                                if (spec.maxFailures() >= 0 && failures > spec.maxFailures()) {
+                                    return Mono.error(new RuntimeException(
+                                            "映射节点失败元素超过上限 " + spec.maxFailures() + ": " + e.getMessage(), e));
+                                }
+                                return Mono.just(new MapItem(null, String.valueOf(e.getMessage())));
+                            });
+            Flux<Tuple2<Long, NodeOutput>> indexed = items
+                    .index()
+                    .doOnNext(item -> {
+                        if (total.incrementAndGet() > maxMapItems) {
+                            throw new IllegalStateException("映射节点的元素数超过上限: " + maxMapItems);
+                        }
+                    });
+            // 失败时取消其余元素，进行中的模块调用随之中断
+            Flux<MapItem> results = spec.ordered()
+                    ? indexed.flatMapSequential(runItem, parallelism, 1)
+                    : indexed.flatMap(runItem, parallelism, 1);
+            Mono<NodeOutput> gathered = results
+                    .filter(result -> result.error() == null || spec.onError() == CompiledWorkflowPlan.FailurePolicy.COLLECT)
+                    .collect(ArrayList::new, (List<Object> list, MapItem result) -> list.add(
+                            result.error() == null ? result.value() : Map.of("error", result.error())))
+                    .map(NodeOutput::new);
             
-            // 设置自定义请求头
-            if (apiConfig.containsKey("headers")) {
-                @SuppressWarnings("unchecked")
-                Map<String, String> headers = (Map<String, String>) apiConfig.get("headers");
-                headers.forEach(clientBuilder::defaultHeader);
+            if (run.quiet()) {
+                return gathered;
+            }
+            return blocking(() -> {
+                        publishNodeEvent(run.taskId(), node, TaskEventDTO.EventType.NODE_STARTED, null);
+                        addLog(run.taskId(), null, TaskLog.LogLevel.INFO, "执行映射节点: " + node.nodeId());
+                        return node;
+                    })
+                    .then(gathered)
+                    .flatMap(output -> blocking(() -> {
+                        addLog(run.taskId(), null, TaskLog.LogLevel.INFO, "映射节点执行完成: " + node.nodeId(), Map.of(
+                                "items", total.get(),
+                                "failedItems", failed.get(),
+                                "durationMs", (System.nanoTime() - startedAt) / 1_000_000));
+                        return output;
+                    }))
+                    .doOnSuccess(output -> {
+                        recordMapNode(run, node, startedAt, total.get(), failed.get(), null);
+                        publishNodeEvent(run.taskId(), node, TaskEventDTO.EventType.NODE_COMPLETED, null);
+                    })
+                    .doOnError(e -> {
+                        recordMapNode(run, node, startedAt, total.get(), failed.get(), e);
+                        publishNodeEvent(run.taskId(), node, TaskEventDTO.EventType.NODE_FAILED, e.getMessage());
+                    });
+        });
+    }
+    
+    // 子链节点依次执行，前一节点的结果即下一节点的输入
+    private Mono<NodeOutput> executeChain(Run run, List<CompiledWorkflowPlan.PlanNode> chain, Object input) {
+        Mono<NodeOutput> output = Mono.just(new NodeOutput(input));
+        for (CompiledWorkflowPlan.PlanNode step : chain) {
+            output = output.flatMap(in -> executeNode(run, step, in.value(), null));
+        }
+        return output;
+    }
+    
+    // 映射节点中单个元素的结果，error 不为 null 表示该元素失败
+    private record MapItem(Object value, String error) {
+    }
+    
+    private void recordMapNode(Run run, CompiledWorkflowPlan.PlanNode node, long startedAt, int items, int failedItems,
+                               Throwable error) {
+        if (run.timeline() == null) {
+            return;
+        }
+        TaskTimeline.Span span = new TaskTimeline.Span();
+        span.setNodeId(node.nodeId());
+        span.setStart(run.timeline().offsetMillis(startedAt));
+        span.setEnd(run.timeline().offsetMillis(System.nanoTime()));
+        span.setStatus(error == null ? "OK" : "ERROR");
+        span.setError(error != null ? error.getMessage() : null);
+        span.setItems(items);
+        span.setFailedItems(failedItems);
+        run.timeline().spans.add(span);
+    }
+    
+    private void recordNode(Run run, CompiledWorkflowPlan.PlanNode node, CallStats stats, long startedAt,
+                            String outcome, Throwable error) {
+        long endedAt = System.nanoTime();
+        metrics.recordNode(node.moduleId(), outcome, endedAt - startedAt,
+                stats.queueWaitMillis.get() * 1_000_000, stats.callNanos.get());
+        if (run.timeline() == null) {
+            return;
+        }
+        
+        TaskTimeline.Span span = new TaskTimeline.Span();
+        span.setNodeId(node.nodeId());
+        span.setModuleId(node.moduleId());
+        span.setStart(run.timeline().offsetMillis(startedAt));
+        span.setEnd(run.timeline().offsetMillis(endedAt));
+        span.setStatus(error == null ? "OK" : "ERROR");
+        span.setError(error != null ? error.getMessage() : null);
+        if (stats.cacheTier != null) {
+            span.setCacheHit(stats.cacheTier);
+        } else if (stats.batchSize > 0) {
+            span.setBatchSize(stats.batchSize);
+        } else if (stats.attempts.get() > 0) {
+            span.setAttempts(stats.attempts.get());
+            span.setQueueWaitMs(stats.queueWaitMillis.get());
+            span.setUpstreamStatus(stats.upstreamStatus > 0 ? stats.upstreamStatus : null);
+            span.setBytesIn(stats.bytesIn >= 0 ? stats.bytesIn : null);
+            span.setBytesOut(stats.bytesOut.get() >= 0 ? stats.bytesOut.get() : null);
+            span.setChunks(node.streamingResponse() ? stats.chunks.get() : null);
+        }
+        run.timeline().spans.add(span);
+    }
+    
+    // 调用 AI API: 每次尝试在模块限流处排队并持有许可直到该次调用结束，外层按模块配置熔断、对冲和重试
+    // 节点结果经 cache() 共享，取消不会沿订阅链传到进行中的调用，因此由任务级取消信号直接截断
+    private Mono<NodeOutput> invokeModule(CompiledWorkflowPlan.PlanNode node, Object input, Run run,
+                                          Sinks.One<Flux<Object>> stream, CallStats stats) {
+        AIModule module = node.module();
+        // 流式响应的分片已实时推送出去，流式输入只能消费一次，二者都不能重发
+        boolean replayable = module.getApiConfig().isReplayable()
+                && !node.streamingResponse()
+                && !(input instanceof Flux);
+        return Mono.deferContextual(context -> {
+            stats.startedAt = System.nanoTime();
+            Mono<NodeOutput> call;
+            if (node.batched() && !(input instanceof Flux)) {
+                // 整批作为一次调用经过限流和容错策略
+                call = batcher.submit(node, input).map(result -> {
+                    stats.batchSize = result.batchSize();
+                    stats.callNanos.set(System.nanoTime() - stats.startedAt);
+                    return new NodeOutput(result.value());
+                });
+            } else {
+                Mono<NodeOutput> attempt = rateLimiter.acquire(module, run.taskId(), input)
+                        .flatMap(permit -> {
+                            stats.attempts.incrementAndGet();
+                            stats.queueWaitMillis.addAndGet(permit.getQueueWaitMillis());
+                            long sentAt = System.nanoTime();
+                            return sendRequest(node, input, run, stream, stats)
+                                    .doOnTerminate(() -> stats.callNanos.addAndGet(System.nanoTime() - sentAt))
+                                    .doFinally(signal -> permit.release());
+                        });
+                call = resilience.execute(module, replayable, attempt);
             }
+            call = call.defaultIfEmpty(new NodeOutput(null));
+            if (run.quiet()) {
+                call = call.onErrorMap(e -> new RuntimeException("调用 AI 模块失败: " + e.getMessage(), e));
+            } else {
+                call = call
+                        .flatMap(output -> blocking(() -> {
+                            addLog(run.taskId(), module.getId(), TaskLog.LogLevel.INFO, "模块调用成功", stats.toLogData());
+                            return output;
+                        }))
+                        .onErrorResume(e -> blocking(() -> {
+                            addLog(run.taskId(), module.getId(), TaskLog.LogLevel.ERROR, "模块调用失败: " + e.getMessage(),
+                                    stats.toLogData());
+                            throw new RuntimeException("调用 AI 模块失败: " + e.getMessage(), e);
+                        }));
+            }
+            return call
+                    .takeUntilOther(context.<Mono<Boolean>>getOrDefault(CANCELLED_KEY, Mono.never()));
+        });
+    }
+    
+    // Mono 不能承载 null，节点结果统一包装
+    // skipped: 节点位于未选中的分支上，没有执行；port: 条件节点选中的输出端口
+    private record NodeOutput(Object value, boolean skipped, String port) {
+        
+        static final NodeOutput SKIPPED = new NodeOutput(null, true, null);
+        
+        NodeOutput(Object value) {
+            this(value, false, null);
+        }
+    }
+    
+    // 单次 HTTP 调用，超时取模块 apiConfig.timeout
+    // 请求体和响应体按字节收发，顺带记录时间线需要的字节数和上游状态码
+    private Mono<NodeOutput> sendRequest(CompiledWorkflowPlan.PlanNode node, Object input, Run run,
+                                         Sinks.One<Flux<Object>> stream, CallStats stats) {
+        return Mono.defer(() -> {
+            WebClient webClient = node.client();
             
-            WebClient webClient = clientBuilder.build();
+            WebClient.RequestHeadersSpec<?> request;
+            if (HttpMethod.GET.equals(node.method())) {
+                request = webClient.get();
+            } else if (input instanceof Flux<?> chunks) {
+                request = webClient.post()
+                        .contentType(MediaType.APPLICATION_NDJSON)
+                        .body(chunks, Object.class);
+            } else {
+                byte[] body;
+                try {
+                    body = input instanceof String text
+                            ? text.getBytes(StandardCharsets.UTF_8)
+                            : JsonSupport.MAPPER.writeValueAsBytes(input);
+                } catch (JsonProcessingException e) {
+                    return Mono.error(e);
+                }
+                stats.bytesIn = body.length;
+                request = webClient.post()
+                        .contentType(input instanceof String ? TEXT_UTF8 : MediaType.APPLICATION_JSON)
+                        .bodyValue(body);
+            }
             
-            Mono<Object> response;
-            if ("GET".equals(method)) {
-                response = webClient.get()
-                        .retrieve()
-                        .bodyToMono(Object.class);
+            Duration timeout = Duration.ofMillis(node.module().getApiConfig().getTimeoutOrDefault(apiTimeout));
+            Mono<NodeOutput> response = node.streamingResponse()
+                    ? streamResponse(node, request, run, stream, timeout, stats)
+                    : request.retrieve()
+                            .toEntity(byte[].class)
+                            .timeout(timeout)
+                            .handle((entity, sink) -> {
+                                stats.upstreamStatus = entity.getStatusCode().value();
+                                byte[] body = entity.getBody();
+                                stats.bytesOut.set(body != null ? body.length : 0);
+                                try {
+                                    sink.next(new NodeOutput(body != null
+                                            ? parseBody(body, entity.getHeaders().getContentType())
+                                            : null));
+                                } catch (IOException e) {
+                                    sink.error(e);
+                                }
+                            });
+            return response.doOnError(WebClientResponseException.class,
+                    e -> stats.upstreamStatus = e.getStatusCode().value());
+        });
+    }
+    
+    // 排队时间和调用耗时分别记录，重试和对冲时为各次之和；批量调用记录所在批次的大小，调用耗时包括凑批等待
+    private static final class CallStats {
+        
+        private volatile long startedAt = System.nanoTime();
+        private final AtomicInteger attempts = new AtomicInteger();
+        private final AtomicLong queueWaitMillis = new AtomicLong();
+        private final AtomicLong callNanos = new AtomicLong();
+        private volatile int batchSize;
+        private volatile String cacheTier;
+        private volatile int upstreamStatus;
+        private volatile long bytesIn = -1;
+        private final AtomicLong bytesOut = new AtomicLong(-1);
+        private final AtomicInteger chunks = new AtomicInteger();
+        
+        Map<String, Object> toLogData() {
+            Map<String, Object> data = new LinkedHashMap<>();
+            if (batchSize > 0) {
+                data.put("batchSize", batchSize);
             } else {
-                response = webClient.post()
-                        .bodyValue(input)
+                data.put("attempts", attempts.get());
+                data.put("queueWaitMs", queueWaitMillis.get());
+            }
+            data.put("durationMs", (System.nanoTime() - startedAt) / 1_000_000);
+            return data;
+        }
+    }
+    
+    // 按分片读取响应：分片实时推送给订阅方和流式输入的后继，同时有界地聚合为节点结果
+    private Mono<NodeOutput> streamResponse(CompiledWorkflowPlan.PlanNode node, WebClient.RequestHeadersSpec<?> request,
+                                            Run run, Sinks.One<Flux<Object>> stream, Duration timeout,
+                                            CallStats stats) {
+        ApiConfig apiConfig = node.module().getApiConfig();
+        Flux<String> data = "sse".equalsIgnoreCase(apiConfig.getResponseMode())
+                ? request.accept(MediaType.TEXT_EVENT_STREAM)
+                        .retrieve()
+                        .toEntityFlux(SSE_DATA)
+                        .flatMapMany(entity -> responseBody(entity, stats))
+                        .mapNotNull(ServerSentEvent::data)
+                        .filter(line -> !line.isBlank() && !SSE_DONE.equals(line.trim()))
+                : request.accept(MediaType.APPLICATION_NDJSON)
                         .retrieve()
-                        .bodyToMono(Object.class);
+                        .toEntityFlux(String.class)
+                        .flatMapMany(entity -> responseBody(entity, stats))
+                        .filter(line -> !line.isBlank());
+        Flux<Object> chunks = data
+                .doOnNext(line -> {
+                    stats.chunks.incrementAndGet();
+                    stats.bytesOut.addAndGet(utf8Length(line));
+                })
+                .map(this::parseChunk);
+        
+        String textPath = apiConfig.getStreamTextPath();
+        Flux<Object> deltas = chunks
+                // 流式响应的超时按相邻分片间的空闲时间计算
+                .timeout(timeout)
+                .mapNotNull(chunk -> textPath != null ? extractText(chunk, textPath) : chunk)
+                .doOnNext(delta -> {
+                    if (!run.quiet()) {
+                        publishChunk(run.taskId(), node, delta);
+                    }
+                });
+        
+        // 所有消费者都订阅后才发起请求，保证后继拿到完整的分片序列；全部取消时断开上游请求
+        Flux<Object> shared = deltas.publish().refCount(1 + node.streamConsumers());
+        if (stream != null) {
+            stream.tryEmitValue(shared);
+        }
+        
+        if (textPath != null) {
+            return shared
+                    .reduceWith(StringBuilder::new, (text, delta) -> {
+                        text.append(delta);
+                        if (text.length() > maxAggregateChars) {
+                            throw new IllegalStateException("流式响应超过聚合上限: " + maxAggregateChars + " 字符");
+                        }
+                        return text;
+                    })
+                    .map(text -> new NodeOutput(text.toString()));
+        }
+        return shared
+                .reduceWith(ArrayList::new, (List<Object> list, Object chunk) -> {
+                    list.add(chunk);
+                    if (list.size() > maxAggregateChunks) {
+                        throw new IllegalStateException("流式响应超过聚合上限: " + maxAggregateChunks + " 个分片");
+                    }
+                    return list;
+                })
+                .map(NodeOutput::new);
+    }
+    
+    private static <T> Flux<T> responseBody(ResponseEntity<Flux<T>> entity, CallStats stats) {
+        stats.upstreamStatus = entity.getStatusCode().value();
+        stats.bytesOut.set(0);
+        return entity.getBody() != null ? entity.getBody() : Flux.empty();
+    }
+    
+    // 分片已解码为字符串，按 UTF-8 计算字节数，避免再编码一次
+    private static long utf8Length(String text) {
+        long length = 0;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c < 0x80) {
+                length++;
+            } else if (c < 0x800) {
+                length += 2;
+            } else if (Character.isHighSurrogate(c)) {
+                length += 4;
+                i++;
+            } else {
+                length += 3;
             }
-            
-            Object result = response
-                    .timeout(Duration.ofMillis(apiTimeout))
-                    .block();
-            
-            addLog(taskId, module.getId(), TaskLog.LogLevel.INFO, "模块调用成功");
-            return result;
-            
+        }
+        return length;
+    }
+    
+    // text/* 响应按文本返回，其余按 JSON 解析
+    private static Object parseBody(byte[] body, MediaType contentType) throws IOException {
+        if (contentType != null && "text".equals(contentType.getType())) {
+            return new String(body, contentType.getCharset() != null ? contentType.getCharset() : StandardCharsets.UTF_8);
+        }
+        return JsonSupport.MAPPER.readValue(body, Object.class);
+    }
+    
+    private Object parseChunk(String data) {
+        try {
+            return JsonSupport.MAPPER.readValue(data, Object.class);
         } catch (Exception e) {
-            addLog(taskId, module.getId(), TaskLog.LogLevel.ERROR, "模块调用失败: " + e.getMessage());
-            throw new RuntimeException("调用 AI 模块失败: " + e.getMessage(), e);
+            return data;
         }
     }
     
-    @SuppressWarnings("unchecked")
-    private void setAuthHeaders(WebClient.Builder builder, Map<String, Object> apiConfig) {
-        if (!apiConfig.containsKey("auth")) {
-            return;
+    private static String extractText(Object chunk, String path) {
+        Object value = JsonSupport.valueAt(chunk, path);
+        return value != null ? String.valueOf(value) : null;
+    }
+    
+    // 下游流式节点对上游分片流的一次订阅；下游在订阅前就结束时补一个空订阅，避免上游一直等待 refCount 凑齐订阅者
+    private static final class StreamTap {
+        
+        private final Flux<Object> source;
+        private final AtomicBoolean subscribed = new AtomicBoolean();
+        
+        StreamTap(Flux<Object> source) {
+            this.source = source;
         }
         
-        Map<String, Object> auth = (Map<String, Object>) apiConfig.get("auth");
-        String type = (String) auth.getOrDefault("type", "none");
+        Flux<Object> flux() {
+            return Flux.defer(() -> subscribed.compareAndSet(false, true)
+                    ? source
+                    : Flux.error(new IllegalStateException("流式输入只能被消费一次")));
+        }
         
-        if ("bearer".equals(type)) {
-            Map<String, String> credentials = (Map<String, String>) auth.get("credentials");
-            String token = credentials.get("token");
-            builder.defaultHeader(HttpHeaders.AUTHORIZATION, "Bearer " + token);
-        } else if ("basic".equals(type)) {
-            Map<String, String> credentials = (Map<String, String>) auth.get("credentials");
-            String username = credentials.get("username");
-            String password = credentials.get("password");
-            // Basic Auth 需要 Base64 编码
-            String authHeader = java.util.Base64.getEncoder()
-                    .encodeToString((username + ":" + password).getBytes());
-            builder.defaultHeader(HttpHeaders.AUTHORIZATION, "Basic " + authHeader);
-        } else if ("apiKey".equals(type)) {
-            Map<String, String> credentials = (Map<String, String>) auth.get("credentials");
-            String key = credentials.get("key");
-            String value = credentials.get("value");
-            builder.defaultHeader(key, value);
+        void release() {
+            if (subscribed.compareAndSet(false, true)) {
+                source.subscribe(chunk -> { }, e -> { });
+            }
         }
     }
     
+    private void publishChunk(String taskId, CompiledWorkflowPlan.PlanNode node, Object delta) {
+        TaskEventDTO event = new TaskEventDTO();
+        event.setTaskId(taskId);
+        event.setType(TaskEventDTO.EventType.NODE_CHUNK);
+        event.setNodeId(node.nodeId());
+        event.setModuleId(node.moduleId());
+        event.setData(delta);
+        eventBroker.publish(event);
+    }
+    
+    private void publishStatus(Task task) {
+        TaskEventDTO event = new TaskEventDTO();
+        event.setTaskId(task.getId());
+        event.setType(TaskEventDTO.EventType.STATUS);
+        event.setStatus(task.getStatus().name());
+        event.setMessage(task.getError());
+        eventBroker.publish(event);
+    }
+    
+    private void publishNodeEvent(String taskId, CompiledWorkflowPlan.PlanNode node,
+                                  TaskEventDTO.EventType type, String message) {
+        TaskEventDTO event = new TaskEventDTO();
+        event.setTaskId(taskId);
+        event.setType(type);
+        event.setNodeId(node.nodeId());
+        event.setModuleId(node.moduleId());
+        event.setMessage(message);
+        eventBroker.publish(event);
+    }
+    
+    // JPA 调用是阻塞的，统一切到 blockingScheduler，避免占用 Netty 事件循环线程
+    private <T> Mono<T> blocking(Callable<T> work) {
+        return Mono.fromCallable(work).subscribeOn(blockingScheduler);
+    }
+    
     private void addLog(String taskId, String moduleId, TaskLog.LogLevel level, String message) {
+        addLog(taskId, moduleId, level, message, null);
+    }
+    
+    private void addLog(String taskId, String moduleId, TaskLog.LogLevel level, String message, Object data) {
         TaskLog log = new TaskLog();
         log.setTaskId(taskId);
         log.setModuleId(moduleId != null ? moduleId : "");
         log.setLevel(level);
         log.setMessage(message);
         log.setTimestamp(LocalDateTime.now());
-        taskLogRepository.save(log);
+        log.setData(data);
+        long appendStartedAt = System.nanoTime();
+        taskLogWriter.append(log);
+        metrics.recordLogAppend(System.nanoTime() - appendStartedAt);
+        
+        TaskEventDTO event = new TaskEventDTO();
+        event.setTaskId(taskId);
+        event.setType(TaskEventDTO.EventType.LOG);
+        event.setModuleId(moduleId);
+        event.setLevel(level.name());
+        event.setMessage(message);
+        event.setData(data);
+        event.setTimestamp(log.getTimestamp());
+        eventBroker.publish(event);
     }
 }
-
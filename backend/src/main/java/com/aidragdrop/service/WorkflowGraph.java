@@ -0,0 +1,196 @@
+package com.aidragdrop.service;
+
+import com.aidragdrop.entity.WorkflowConnection;
+import com.aidragdrop.entity.WorkflowNode;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+// 由工作流的 nodes + connections 构建的有向无环依赖图
+// 未定义任何连接时按节点列表顺序串行，兼容旧版工作流
+// 映射节点子链中的节点逐元素执行，不参与主图调度，也不能出现在连接中
+public class WorkflowGraph {
+    
+    private final Map<String, WorkflowNode> nodes = new LinkedHashMap<>();
+    private final Map<String, WorkflowNode> bodyNodes = new LinkedHashMap<>();
+    private final Map<String, List<String>> bodies = new LinkedHashMap<>();
+    private final Map<String, List<String>> predecessors = new LinkedHashMap<>();
+    private final Map<String, List<String>> successors = new LinkedHashMap<>();
+    // 连接的输出端口: 起点 -> 终点 -> fromPort，条件节点据此决定各后继是否执行
+    private final Map<String, Map<String, Set<String>>> ports = new HashMap<>();
+    private final List<String> topologicalOrder;
+    
+    private WorkflowGraph(List<WorkflowNode> nodeList, List<WorkflowConnection> connectionList) {
+        Map<String, String> bodyOwners = new HashMap<>();
+        for (int i = 0; i < nodeList.size(); i++) {
+            WorkflowNode node = nodeList.get(i);
+            if (WorkflowNode.TYPE_MAP.equals(node.getType())) {
+                String nodeId = nodeIdOf(node, i);
+                List<String> body = bodyOf(node);
+                if (body.isEmpty()) {
+                    throw new RuntimeException("映射节点缺少子链: " + nodeId);
+                }
+                for (String bodyNodeId : body) {
+                    if (bodyOwners.putIfAbsent(bodyNodeId, nodeId) != null) {
+                        throw new RuntimeException("节点不能属于多个映射子链: " + bodyNodeId);
+                    }
+                }
+                bodies.put(nodeId, body);
+            }
+        }
+        
+        Set<String> nodeIds = new HashSet<>();
+        for (int i = 0; i < nodeList.size(); i++) {
+            WorkflowNode node = nodeList.get(i);
+            String nodeId = nodeIdOf(node, i);
+            if (!nodeIds.add(nodeId)) {
+                throw new RuntimeException("工作流节点ID重复: " + nodeId);
+            }
+            if (bodyOwners.containsKey(nodeId)) {
+                if (node.getType() != null) {
+                    throw new RuntimeException("映射子链只能包含模块节点: " + nodeId);
+                }
+                bodyNodes.put(nodeId, node);
+                continue;
+            }
+            nodes.put(nodeId, node);
+            predecessors.put(nodeId, new ArrayList<>());
+            successors.put(nodeId, new ArrayList<>());
+        }
+        bodyOwners.forEach((bodyNodeId, owner) -> {
+            if (!bodyNodes.containsKey(bodyNodeId)) {
+                throw new RuntimeException("映射节点 " + owner + " 的子链引用了不存在的节点: " + bodyNodeId);
+            }
+        });
+        
+        if (connectionList.isEmpty()) {
+            // 旧版工作流没有连接关系，按列表顺序串成一条链
+            String previous = null;
+            for (String nodeId : nodes.keySet()) {
+                if (previous != null) {
+                    addEdge(previous, nodeId);
+                }
+                previous = nodeId;
+            }
+        } else {
+            for (WorkflowConnection connection : connectionList) {
+                String from = connection.getFromNodeId();
+                String to = connection.getToNodeId();
+                if (bodyNodes.containsKey(from) || bodyNodes.containsKey(to)) {
+                    throw new RuntimeException("映射子链中的节点不能直接连接: " + from + " -> " + to);
+                }
+                if (!nodes.containsKey(from) || !nodes.containsKey(to)) {
+                    throw new RuntimeException("连接引用了不存在的节点: " + from + " -> " + to);
+                }
+                if (!successors.get(from).contains(to)) {
+                    addEdge(from, to);
+                }
+                ports.computeIfAbsent(from, key -> new HashMap<>())
+                        .computeIfAbsent(to, key -> new HashSet<>())
+                        .add(connection.getFromPort());
+            }
+        }
+        
+        this.topologicalOrder = sort();
+    }
+    
+    public static WorkflowGraph of(List<WorkflowNode> nodeList, List<WorkflowConnection> connectionList) {
+        return new WorkflowGraph(
+                nodeList != null ? nodeList : List.of(),
+                connectionList != null ? connectionList : List.of());
+    }
+    
+    private static String nodeIdOf(WorkflowNode node, int index) {
+        return node.getId() != null ? node.getId() : "node-" + index;
+    }
+    
+    private static List<String> bodyOf(WorkflowNode node) {
+        Object body = node.getConfig() != null ? node.getConfig().get("body") : null;
+        if (!(body instanceof List<?> list)) {
+            return List.of();
+        }
+        return list.stream().map(String::valueOf).toList();
+    }
+    
+    private void addEdge(String from, String to) {
+        successors.get(from).add(to);
+        predecessors.get(to).add(from);
+    }
+    
+    // Kahn 算法，同时检测循环依赖
+    private List<String> sort() {
+        Map<String, Integer> inDegree = new LinkedHashMap<>();
+        predecessors.forEach((nodeId, preds) -> inDegree.put(nodeId, preds.size()));
+        
+        Deque<String> ready = new ArrayDeque<>();
+        inDegree.forEach((nodeId, degree) -> {
+            if (degree == 0) {
+                ready.add(nodeId);
+            }
+        });
+        
+        List<String> order = new ArrayList<>(nodes.size());
+        while (!ready.isEmpty()) {
+            String nodeId = ready.poll();
+            order.add(nodeId);
+            for (String next : successors.get(nodeId)) {
+                if (inDegree.merge(next, -1, Integer::sum) == 0) {
+                    ready.add(next);
+                }
+            }
+        }
+        
+        if (order.size() != nodes.size()) {
+            throw new RuntimeException("工作流存在循环依赖");
+        }
+        return Collections.unmodifiableList(order);
+    }
+    
+    public WorkflowNode getNode(String nodeId) {
+        WorkflowNode node = nodes.get(nodeId);
+        return node != null ? node : bodyNodes.get(nodeId);
+    }
+    
+    // 映射节点的子链，按执行顺序排列
+    public List<String> getBody(String nodeId) {
+        return bodies.getOrDefault(nodeId, List.of());
+    }
+    
+    public List<String> getPredecessors(String nodeId) {
+        return predecessors.get(nodeId);
+    }
+    
+    public List<String> getSuccessors(String nodeId) {
+        return successors.get(nodeId);
+    }
+    
+    // 两节点间所有连接的 fromPort，未指定端口的连接为 null；旧版无连接的工作流返回空集合
+    public Set<String> getPorts(String from, String to) {
+        return ports.getOrDefault(from, Map.of()).getOrDefault(to, Set.of());
+    }
+    
+    public List<String> getTopologicalOrder() {
+        return topologicalOrder;
+    }
+    
+    public List<String> getSinks() {
+        List<String> sinks = new ArrayList<>();
+        for (String nodeId : topologicalOrder) {
+            if (successors.get(nodeId).isEmpty()) {
+                sinks.add(nodeId);
+            }
+        }
+        return sinks;
+    }
+    
+    public boolean isEmpty() {
+        return nodes.isEmpty();
+    }
+}
@@ -0,0 +1,86 @@
+package com.aidragdrop.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Component;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+// 执行热路径的计时指标；节点耗时拆分为限流排队、上游调用和其余开销（总耗时减去前两者: 缓存查找、JSON 映射、调度切换、事件发布等）
+// 节点指标都不带 workflow 标签: 工作流由用户创建，数量不受控，乘以模块、结果和直方图桶后序列数过多
+// 单个工作流的节点耗时见任务时间线
+@Component
+public class WorkflowMetrics {
+    
+    public static final String OUTCOME_SUCCESS = "success";
+    public static final String OUTCOME_ERROR = "error";
+    public static final String OUTCOME_CACHE_HIT = "cache_hit";
+    
+    private final MeterRegistry registry;
+    // 每个节点都会记录，按标签组合缓存计时器，避免每次在注册表中查找
+    private final Map<String, NodeTimers> nodeTimers = new ConcurrentHashMap<>();
+    private final Map<String, Counter> skippedNodes = new ConcurrentHashMap<>();
+    private final Timer logAppend;
+    
+    public WorkflowMetrics(MeterRegistry registry) {
+        this.registry = registry;
+        this.logAppend = Timer.builder("workflow.task.log.append")
+                .description("任务日志写入缓冲区的耗时，缓冲区写满时包含同步写库")
+                .register(registry);
+    }
+    
+    public void recordNode(String moduleId, String outcome, long totalNanos, long queueWaitNanos, long callNanos) {
+        NodeTimers timers = nodeTimers.computeIfAbsent(moduleId + "|" + outcome,
+                key -> new NodeTimers(moduleId, outcome));
+        timers.total.record(totalNanos, TimeUnit.NANOSECONDS);
+        if (OUTCOME_CACHE_HIT.equals(outcome)) {
+            return;
+        }
+        timers.queue.record(queueWaitNanos, TimeUnit.NANOSECONDS);
+        timers.call.record(callNanos, TimeUnit.NANOSECONDS);
+        timers.overhead.record(Math.max(0, totalNanos - queueWaitNanos - callNanos), TimeUnit.NANOSECONDS);
+    }
+    
+    // 内置节点没有模块，module 标签为节点类型
+    public void recordSkipped(String moduleId) {
+        skippedNodes.computeIfAbsent(moduleId, key -> Counter.builder("workflow.node.skipped")
+                        .description("条件分支未选中而跳过的节点数，即省下的模块调用")
+                        .tag("module", moduleId)
+                        .register(registry))
+                .increment();
+    }
+    
+    public void recordLogAppend(long nanos) {
+        logAppend.record(nanos, TimeUnit.NANOSECONDS);
+    }
+    
+    private final class NodeTimers {
+        
+        private final Timer total;
+        private final Timer queue;
+        private final Timer call;
+        private final Timer overhead;
+        
+        NodeTimers(String moduleId, String outcome) {
+            this.total = Timer.builder("workflow.node.duration")
+                    .description("节点从开始到完成的总耗时")
+                    .tag("module", moduleId)
+                    .tag("outcome", outcome)
+                    .register(registry);
+            this.queue = stage(moduleId, outcome, "queue");
+            this.call = stage(moduleId, outcome, "http");
+            this.overhead = stage(moduleId, outcome, "overhead");
+        }
+        
+        private Timer stage(String moduleId, String outcome, String stage) {
+            return Timer.builder("workflow.node.stage")
+                    .description("节点耗时按阶段拆分: queue 模块限流排队, http 上游调用, overhead 总耗时中的其余部分")
+                    .tag("module", moduleId)
+                    .tag("outcome", outcome)
+                    .tag("stage", stage)
+                    .register(registry);
+        }
+    }
+}
@@ -0,0 +1,225 @@
+package com.aidragdrop.service;
+
+import com.aidragdrop.entity.AIModule;
+import com.aidragdrop.entity.Workflow;
+import com.aidragdrop.entity.WorkflowNode;
+import com.aidragdrop.repository.WorkflowRepository;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpMethod;
+import org.springframework.stereotype.Component;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+// 按 工作流ID + updatedAt 缓存编译后的执行计划
+// 每次执行只查询 updatedAt，无需重新解析 nodes/connections 和解析模块
+// 模块变更由 invalidateModule 失效；漏掉失效通知时，计划最多在 expire 秒后重新编译
+@Component
+@Slf4j
+public class WorkflowPlanCache {
+    
+    private static final int DEFAULT_MAP_PARALLELISM = 4;
+    
+    private final WorkflowRepository workflowRepository;
+    private final ModuleNearCache moduleNearCache;
+    private final ModuleClientRegistry clientRegistry;
+    private final Cache<String, CompiledWorkflowPlan> plans;
+    
+    public WorkflowPlanCache(
+            WorkflowRepository workflowRepository,
+            ModuleNearCache moduleNearCache,
+            ModuleClientRegistry clientRegistry,
+            @Value("${app.plan-cache.max-size:1000}") long maxSize,
+            @Value("${app.plan-cache.expire:3600}") long expireSeconds) {
+        this.workflowRepository = workflowRepository;
+        this.moduleNearCache = moduleNearCache;
+        this.clientRegistry = clientRegistry;
+        this.plans = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(Duration.ofSeconds(expireSeconds))
+                .recordStats()
+                .build();
+    }
+    
+    // 会访问数据库，调用方需在阻塞调度器上执行
+    public CompiledWorkflowPlan getPlan(String workflowId) {
+        LocalDateTime updatedAt = workflowRepository.findUpdatedAtById(workflowId)
+                .orElseThrow(() -> new RuntimeException("工作流不存在"));
+        CompiledWorkflowPlan plan = plans.getIfPresent(workflowId);
+        if (plan != null && plan.getUpdatedAt().equals(updatedAt)) {
+            return plan;
+        }
+        Workflow workflow = workflowRepository.findById(workflowId)
+                .orElseThrow(() -> new RuntimeException("工作流不存在"));
+        plan = compile(workflow);
+        plans.put(workflowId, plan);
+        return plan;
+    }
+    
+    public CompiledWorkflowPlan compile(Workflow workflow) {
+        WorkflowGraph graph = WorkflowGraph.of(workflow.getNodes(), workflow.getConnections());
+        Map<String, AIModule> modules = new HashMap<>();
+        Map<String, CompiledWorkflowPlan.MapSpec> mapSpecs = new HashMap<>();
+        Map<String, CompiledWorkflowPlan.RouteSpec> routeSpecs = new HashMap<>();
+        for (String nodeId : graph.getTopologicalOrder()) {
+            WorkflowNode definition = graph.getNode(nodeId);
+            if (definition.getType() == null) {
+                modules.put(nodeId, moduleNearCache.get(definition.getModuleId()));
+            } else if (WorkflowNode.TYPE_MAP.equals(definition.getType())) {
+                mapSpecs.put(nodeId, mapSpec(nodeId, graph));
+            } else if (WorkflowNode.TYPE_SWITCH.equals(definition.getType())
+                    || WorkflowNode.TYPE_IF.equals(definition.getType())) {
+                routeSpecs.put(nodeId, routeSpec(nodeId, graph));
+            } else {
+                throw new RuntimeException("不支持的节点类型: " + definition.getType());
+            }
+        }
+        
+        // 流式输入只在唯一前驱为流式响应节点时生效，否则退化为等待前驱完成
+        // 映射节点以分片作为元素，前驱未设 streamTextPath（结果即分片数组）时与等待前驱完成等价
+        Map<String, String> streamSources = new HashMap<>();
+        Map<String, Integer> streamConsumers = new HashMap<>();
+        for (String nodeId : graph.getTopologicalOrder()) {
+            List<String> predecessors = graph.getPredecessors(nodeId);
+            AIModule source = predecessors.size() == 1 ? modules.get(predecessors.get(0)) : null;
+            if (source == null || !source.getApiConfig().isStreamingResponse()) {
+                continue;
+            }
+            AIModule module = modules.get(nodeId);
+            CompiledWorkflowPlan.MapSpec map = mapSpecs.get(nodeId);
+            boolean consumesStream = module != null
+                    ? module.getApiConfig().isStreamingInputEnabled()
+                    : map != null && map.itemsPath() == null && source.getApiConfig().getStreamTextPath() == null;
+            if (consumesStream) {
+                streamSources.put(nodeId, predecessors.get(0));
+                streamConsumers.merge(predecessors.get(0), 1, Integer::sum);
+            }
+        }
+        
+        List<CompiledWorkflowPlan.PlanNode> nodes = new ArrayList<>();
+        for (String nodeId : graph.getTopologicalOrder()) {
+            WorkflowNode definition = graph.getNode(nodeId);
+            List<String> predecessors = List.copyOf(graph.getPredecessors(nodeId));
+            if (modules.containsKey(nodeId)) {
+                nodes.add(moduleNode(nodeId, definition, modules.get(nodeId), predecessors,
+                        streamSources.get(nodeId), streamConsumers.getOrDefault(nodeId, 0)));
+            } else {
+                nodes.add(new CompiledWorkflowPlan.PlanNode(nodeId, null, null, null, null, predecessors, definition,
+                        streamSources.get(nodeId), 0, mapSpecs.get(nodeId), routeSpecs.get(nodeId)));
+            }
+        }
+        log.debug("已编译工作流执行计划: {} ({} 个节点)", workflow.getId(), nodes.size());
+        return new CompiledWorkflowPlan(workflow.getId(), workflow.getUpdatedAt(), nodes, graph.getSinks());
+    }
+    
+    private CompiledWorkflowPlan.PlanNode moduleNode(String nodeId, WorkflowNode definition, AIModule module,
+                                                     List<String> predecessors, String streamSource,
+                                                     int streamConsumers) {
+        return new CompiledWorkflowPlan.PlanNode(
+                nodeId,
+                definition.getModuleId(),
+                module,
+                HttpMethod.valueOf(module.getApiConfig().getMethodOrDefault()),
+                clientRegistry.getClient(module),
+                predecessors,
+                definition,
+                streamSource,
+                streamConsumers,
+                null,
+                null);
+    }
+    
+    // 子链节点之间串行传递结果，不使用流式输入
+    private CompiledWorkflowPlan.MapSpec mapSpec(String nodeId, WorkflowGraph graph) {
+        Map<String, Object> config = graph.getNode(nodeId).getConfig();
+        List<CompiledWorkflowPlan.PlanNode> body = new ArrayList<>();
+        for (String bodyNodeId : graph.getBody(nodeId)) {
+            WorkflowNode definition = graph.getNode(bodyNodeId);
+            body.add(moduleNode(bodyNodeId, definition, moduleNearCache.get(definition.getModuleId()),
+                    List.of(), null, 0));
+        }
+        
+        int parallelism = config.get("parallelism") instanceof Number n ? n.intValue() : DEFAULT_MAP_PARALLELISM;
+        if (parallelism < 1) {
+            throw new RuntimeException("映射节点的 parallelism 必须大于 0: " + nodeId);
+        }
+        String onError = config.get("onError") instanceof String value ? value : "fail";
+        CompiledWorkflowPlan.FailurePolicy policy;
+        try {
+            policy = CompiledWorkflowPlan.FailurePolicy.valueOf(onError.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new RuntimeException("映射节点的 onError 无效: " + onError);
+        }
+        return new CompiledWorkflowPlan.MapSpec(
+                List.copyOf(body),
+                config.get("itemsPath") instanceof String path ? path : null,
+                parallelism,
+                !Boolean.FALSE.equals(config.get("ordered")),
+                policy,
+                config.get("maxFailures") instanceof Number n ? n.intValue() : -1);
+    }
+    
+    // if: config.when 成立时选择 true 端口，否则 false；switch: 按顺序匹配 config.cases，都不匹配时选择 config.default
+    // 条件节点连出的每条连接都要指定 fromPort，且必须是已定义的端口
+    private CompiledWorkflowPlan.RouteSpec routeSpec(String nodeId, WorkflowGraph graph) {
+        WorkflowNode definition = graph.getNode(nodeId);
+        Map<String, Object> config = definition.getConfig() != null ? definition.getConfig() : Map.of();
+        List<CompiledWorkflowPlan.Branch> branches = new ArrayList<>();
+        String defaultPort;
+        if (WorkflowNode.TYPE_IF.equals(definition.getType())) {
+            branches.add(new CompiledWorkflowPlan.Branch("true", RouteCondition.compile(config.get("when"), nodeId)));
+            defaultPort = "false";
+        } else {
+            if (!(config.get("cases") instanceof List<?> cases) || cases.isEmpty()) {
+                throw new RuntimeException("条件节点缺少 cases: " + nodeId);
+            }
+            for (Object item : cases) {
+                if (!(item instanceof Map<?, ?> branch) || !(branch.get("port") instanceof String port)) {
+                    throw new RuntimeException("条件节点的分支缺少 port: " + nodeId);
+                }
+                branches.add(new CompiledWorkflowPlan.Branch(port, RouteCondition.compile(branch.get("when"), nodeId)));
+            }
+            defaultPort = config.get("default") instanceof String port ? port : "default";
+        }
+        
+        Set<String> knownPorts = new HashSet<>();
+        branches.forEach(branch -> knownPorts.add(branch.port()));
+        knownPorts.add(defaultPort);
+        Map<String, Set<String>> targets = new HashMap<>();
+        for (String successor : graph.getSuccessors(nodeId)) {
+            Set<String> ports = graph.getPorts(nodeId, successor);
+            if (ports.isEmpty() || ports.contains(null)) {
+                throw new RuntimeException("条件节点的连接必须指定 fromPort: " + nodeId + " -> " + successor);
+            }
+            for (String port : ports) {
+                if (!knownPorts.contains(port)) {
+                    throw new RuntimeException("条件节点 " + nodeId + " 没有端口: " + port);
+                }
+            }
+            targets.put(successor, Set.copyOf(ports));
+        }
+        return new CompiledWorkflowPlan.RouteSpec(List.copyOf(branches), defaultPort, Map.copyOf(targets));
+    }
+    
+    public void invalidate(String workflowId) {
+        plans.invalidate(workflowId);
+    }
+    
+    // 模块变更后，引用该模块的计划中的模块定义和请求模板都已过期
+    public void invalidateModule(String moduleId) {
+        plans.asMap().values().removeIf(plan -> plan.usesModule(moduleId));
+    }
+    
+    public Cache<String, CompiledWorkflowPlan> getCache() {
+        return plans;
+    }
+}
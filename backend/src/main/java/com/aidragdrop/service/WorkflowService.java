@@ -1,11 +1,17 @@
 package com.aidragdrop.service;
 
 import com.aidragdrop.dto.WorkflowDTO;
+import com.aidragdrop.entity.JsonSupport;
 import com.aidragdrop.entity.Workflow;
+import com.aidragdrop.entity.WorkflowConnection;
+import com.aidragdrop.entity.WorkflowNode;
 import com.aidragdrop.repository.WorkflowRepository;
+import com.fasterxml.jackson.core.type.TypeReference;
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 import java.util.List;
 import java.util.Map;
 import java.util.stream.Collectors;
@@ -15,8 +21,16 @@ import com.aidragdrop.repository.ProjectRepository;
 @RequiredArgsConstructor
 public class WorkflowService {
     
+    private static final TypeReference<List<WorkflowNode>> NODE_LIST = new TypeReference<>() {
+    };
+    private static final TypeReference<List<WorkflowConnection>> CONNECTION_LIST = new TypeReference<>() {
+    };
+    private static final TypeReference<List<Map<String, Object>>> MAP_LIST = new TypeReference<>() {
+    };
+    
     private final WorkflowRepository workflowRepository;
     private final ProjectRepository projectRepository;
+    private final WorkflowPlanCache planCache;
     
     public List<WorkflowDTO> getAllWorkflows() {
         return workflowRepository.findAll().stream()
@@ -48,7 +62,6 @@ public class WorkflowService {
     }
     
     @Transactional
-    @SuppressWarnings("unchecked")
     public WorkflowDTO updateWorkflow(String id, WorkflowDTO dto) {
         Workflow workflow = workflowRepository.findById(id)
                 .orElseThrow(() -> new RuntimeException("工作流不存在: " + id));
@@ -62,15 +75,16 @@ public class WorkflowService {
             }
             workflow.setProjectId(dto.getProjectId());
         }
-        // 將 List<Map<String, Object>> 轉換為 List<Object>
+        // 將 List<Map<String, Object>> 轉換為節點/連接類型
         if (dto.getNodes() != null) {
-            workflow.setNodes((List<Object>) (List<?>) dto.getNodes());
+            workflow.setNodes(JsonSupport.MAPPER.convertValue(dto.getNodes(), NODE_LIST));
         }
         if (dto.getConnections() != null) {
-            workflow.setConnections((List<Object>) (List<?>) dto.getConnections());
+            workflow.setConnections(JsonSupport.MAPPER.convertValue(dto.getConnections(), CONNECTION_LIST));
         }
         
         workflow = workflowRepository.save(workflow);
+        invalidatePlanAfterCommit(id);
         return toDTO(workflow);
     }
     
@@ -80,30 +94,35 @@ public class WorkflowService {
             throw new RuntimeException("工作流不存在: " + id);
         }
         workflowRepository.deleteById(id);
+        invalidatePlanAfterCommit(id);
+    }
+    
+    // 其他实例通过比对 updatedAt 发现计划已过期
+    private void invalidatePlanAfterCommit(String id) {
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                planCache.invalidate(id);
+            }
+        });
     }
     
-    @SuppressWarnings("unchecked")
-    private WorkflowDTO toDTO(Workflow workflow) {
+    WorkflowDTO toDTO(Workflow workflow) {
         WorkflowDTO dto = new WorkflowDTO();
         dto.setId(workflow.getId());
         dto.setName(workflow.getName());
         dto.setDescription(workflow.getDescription());
         dto.setProjectId(workflow.getProjectId());
-        // 安全地转换 List<Object> 到 List<Map<String, Object>>
+        // 节点/连接类型转换为 List<Map<String, Object>>
         if (workflow.getNodes() != null) {
-            dto.setNodes(workflow.getNodes().stream()
-                    .map(node -> (Map<String, Object>) node)
-                    .collect(Collectors.toList()));
+            dto.setNodes(JsonSupport.MAPPER.convertValue(workflow.getNodes(), MAP_LIST));
         }
         if (workflow.getConnections() != null) {
-            dto.setConnections(workflow.getConnections().stream()
-                    .map(conn -> (Map<String, Object>) conn)
-                    .collect(Collectors.toList()));
+            dto.setConnections(JsonSupport.MAPPER.convertValue(workflow.getConnections(), MAP_LIST));
         }
         return dto;
     }
     
-    @SuppressWarnings("unchecked")
     private Workflow toEntity(WorkflowDTO dto) {
         Workflow workflow = new Workflow();
         if (dto.getId() != null) {
@@ -112,12 +131,12 @@ public class WorkflowService {
         workflow.setName(dto.getName());
         workflow.setDescription(dto.getDescription());
         workflow.setProjectId(dto.getProjectId());
-        // 將 List<Map<String, Object>> 轉換為 List<Object>
+        // 將 List<Map<String, Object>> 轉換為節點/連接類型
         if (dto.getNodes() != null) {
-            workflow.setNodes((List<Object>) (List<?>) dto.getNodes());
+            workflow.setNodes(JsonSupport.MAPPER.convertValue(dto.getNodes(), NODE_LIST));
         }
         if (dto.getConnections() != null) {
-            workflow.setConnections((List<Object>) (List<?>) dto.getConnections());
+            workflow.setConnections(JsonSupport.MAPPER.convertValue(dto.getConnections(), CONNECTION_LIST));
         }
         return workflow;
     }
@@ -72,14 +72,20 @@ CREATE TABLE IF NOT EXISTS tasks (
     id VARCHAR(36) PRIMARY KEY COMMENT '任務ID (UUID)',
     workflow_id VARCHAR(36) NOT NULL COMMENT '工作流ID',
     status VARCHAR(20) NOT NULL DEFAULT 'PENDING' COMMENT '任務狀態: PENDING, RUNNING, COMPLETED, FAILED, CANCELLED',
+    input TEXT COMMENT '執行輸入 (JSON)',
     result TEXT COMMENT '執行結果 (JSON)',
     error TEXT COMMENT '錯誤信息',
+    timeline TEXT COMMENT '節點執行時間線 (JSON)',
     start_time DATETIME COMMENT '開始時間',
     end_time DATETIME COMMENT '結束時間',
+    heartbeat_at DATETIME COMMENT '批量任務心跳時間，超時未刷新視為執行實例已失效',
     created_at DATETIME NOT NULL COMMENT '創建時間',
     INDEX idx_workflow_id (workflow_id),
     INDEX idx_status (status),
     INDEX idx_created_at (created_at),
+    INDEX idx_tasks_created_id (created_at, id),
+    INDEX idx_tasks_status_created_id (status, created_at, id),
+    INDEX idx_tasks_workflow_created_id (workflow_id, created_at, id),
     FOREIGN KEY (workflow_id) REFERENCES workflows(id) ON DELETE CASCADE
 ) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci COMMENT='任務表';
 
@@ -101,6 +107,22 @@ CREATE TABLE IF NOT EXISTS task_logs (
     FOREIGN KEY (task_id) REFERENCES tasks(id) ON DELETE CASCADE
 ) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci COMMENT='任務日誌表';
 
+-- ============================================
+-- 6. 任務檢查點表 (task_checkpoints)
+-- ============================================
+CREATE TABLE IF NOT EXISTS task_checkpoints (
+    id VARCHAR(36) PRIMARY KEY COMMENT '檢查點ID (UUID)',
+    task_id VARCHAR(36) NOT NULL COMMENT '任務ID',
+    node_id VARCHAR(255) NOT NULL COMMENT '節點ID',
+    fingerprint TEXT NOT NULL COMMENT '工作流和模組版本，變化後檢查點作廢',
+    size BIGINT NOT NULL COMMENT '結果 JSON 字節數',
+    output TEXT COMMENT '節點結果 (緊湊 JSON)，寫入 blob 存儲時為空',
+    blob_key VARCHAR(255) COMMENT 'blob 存儲中的結果鍵 (gzip JSON)',
+    created_at DATETIME NOT NULL COMMENT '創建時間',
+    UNIQUE KEY uk_task_checkpoints_task_node (task_id, node_id),
+    FOREIGN KEY (task_id) REFERENCES tasks(id) ON DELETE CASCADE
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci COMMENT='任務檢查點表';
+
 -- ============================================
 -- 初始化數據 - 基礎組件
 -- ============================================
@@ -133,6 +133,77 @@ INSERT INTO ai_modules (id, name, type, category, description, icon, version, ap
  NOW(), NOW())
 ON DUPLICATE KEY UPDATE updated_at = NOW();
 
+-- ============================================
+-- 7. 任務表分頁查詢索引 (按 created_at, id 遊標分頁)
+-- ============================================
+CREATE INDEX IF NOT EXISTS idx_tasks_created_id ON tasks(created_at, id);
+CREATE INDEX IF NOT EXISTS idx_tasks_status_created_id ON tasks(status, created_at, id);
+CREATE INDEX IF NOT EXISTS idx_tasks_workflow_created_id ON tasks(workflow_id, created_at, id);
+
+-- ============================================
+-- 8. 任務表添加 input 字段 (隊列 worker 從任務記錄讀取執行輸入)
+-- ============================================
+SET @exist := (SELECT COUNT(*) FROM information_schema.COLUMNS 
+    WHERE TABLE_SCHEMA = 'ai_drag_drop' 
+    AND TABLE_NAME = 'tasks' 
+    AND COLUMN_NAME = 'input');
+
+SET @sqlstmt := IF(@exist = 0, 
+    'ALTER TABLE tasks ADD COLUMN input TEXT COMMENT "執行輸入 (JSON)" AFTER status',
+    'SELECT "input 字段已存在" AS message');
+
+PREPARE stmt FROM @sqlstmt;
+EXECUTE stmt;
+DEALLOCATE PREPARE stmt;
+
+-- ============================================
+-- 9. 任務表添加 timeline 字段 (節點級執行時間線，任務結束時寫入)
+-- ============================================
+SET @exist := (SELECT COUNT(*) FROM information_schema.COLUMNS 
+    WHERE TABLE_SCHEMA = 'ai_drag_drop' 
+    AND TABLE_NAME = 'tasks' 
+    AND COLUMN_NAME = 'timeline');
+
+SET @sqlstmt := IF(@exist = 0, 
+    'ALTER TABLE tasks ADD COLUMN timeline TEXT COMMENT "節點執行時間線 (JSON)" AFTER error',
+    'SELECT "timeline 字段已存在" AS message');
+
+PREPARE stmt FROM @sqlstmt;
+EXECUTE stmt;
+DEALLOCATE PREPARE stmt;
+
+-- ============================================
+-- 10. 任務檢查點表 (task_checkpoints，恢復執行時取用已完成節點的結果)
+-- ============================================
+CREATE TABLE IF NOT EXISTS task_checkpoints (
+    id VARCHAR(36) PRIMARY KEY COMMENT '檢查點ID (UUID)',
+    task_id VARCHAR(36) NOT NULL COMMENT '任務ID',
+    node_id VARCHAR(255) NOT NULL COMMENT '節點ID',
+    fingerprint TEXT NOT NULL COMMENT '工作流和模組版本，變化後檢查點作廢',
+    size BIGINT NOT NULL COMMENT '結果 JSON 字節數',
+    output TEXT COMMENT '節點結果 (緊湊 JSON)，寫入 blob 存儲時為空',
+    blob_key VARCHAR(255) COMMENT 'blob 存儲中的結果鍵 (gzip JSON)',
+    created_at DATETIME NOT NULL COMMENT '創建時間',
+    UNIQUE KEY uk_task_checkpoints_task_node (task_id, node_id),
+    FOREIGN KEY (task_id) REFERENCES tasks(id) ON DELETE CASCADE
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci COMMENT='任務檢查點表';
+
+-- ============================================
+-- 11. 任務表添加 heartbeat_at 字段 (批量任務心跳，超時未刷新的任務標記失敗)
+-- ============================================
+SET @exist := (SELECT COUNT(*) FROM information_schema.COLUMNS 
+    WHERE TABLE_SCHEMA = 'ai_drag_drop' 
+    AND TABLE_NAME = 'tasks' 
+    AND COLUMN_NAME = 'heartbeat_at');
+
+SET @sqlstmt := IF(@exist = 0, 
+    'ALTER TABLE tasks ADD COLUMN heartbeat_at DATETIME COMMENT "批量任務心跳時間，超時未刷新視為執行實例已失效" AFTER end_time',
+    'SELECT "heartbeat_at 字段已存在" AS message');
+
+PREPARE stmt FROM @sqlstmt;
+EXECUTE stmt;
+DEALLOCATE PREPARE stmt;
+
 -- ============================================
 -- 完成
 -- ============================================
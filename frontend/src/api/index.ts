@@ -4,6 +4,10 @@ import type {
   Workflow,
   Task,
   TaskLog,
+  TaskPage,
+  TaskQuery,
+  TaskEvent,
+  TaskTimeline,
   ModuleNode,
   Connection,
   Project,
@@ -104,6 +108,16 @@ export const workflowApi = {
   // 执行工作流
   executeWorkflow: (id: string, input?: any): Promise<Task> =>
     api.post(`/workflows/${id}/execute`, input),
+  
+  // 批量执行: 上传 NDJSON 文件，后台执行并写入结果文件
+  executeBulk: (id: string, file: File, parallelism?: number): Promise<Task> => {
+    const form = new FormData()
+    form.append('file', file)
+    return api.post(`/workflows/${id}/bulk-executions`, form, {
+      params: { output: 'file', parallelism },
+      headers: { 'Content-Type': 'multipart/form-data' },
+    })
+  },
 }
 
 // 任务 API
@@ -112,15 +126,39 @@ export const taskApi = {
   getTask: (id: string): Promise<Task> => api.get(`/tasks/${id}`),
   
   // 获取任务列表
-  getTasks: (workflowId?: string): Promise<Task[]> =>
-    api.get('/tasks', { params: { workflowId } }),
+  getTasks: (workflowId?: string, query: TaskQuery = {}): Promise<TaskPage> =>
+    api.get('/tasks', { params: { ...query, workflowId } }),
   
   // 获取任务日志
   getTaskLogs: (taskId: string): Promise<TaskLog[]> =>
     api.get(`/tasks/${taskId}/logs`),
   
+  // 获取任务执行时间线
+  getTaskTimeline: (taskId: string): Promise<TaskTimeline> =>
+    api.get(`/tasks/${taskId}/timeline`),
+  
+  // 订阅任务进度事件，断线后浏览器自动携带 Last-Event-ID 续传
+  subscribeTaskEvents: (taskId: string, onEvent: (event: TaskEvent) => void): EventSource => {
+    const source = new EventSource(`/api/tasks/${taskId}/events`)
+    const types: TaskEvent['type'][] = ['STATUS', 'NODE_STARTED', 'NODE_CHUNK', 'NODE_COMPLETED', 'NODE_FAILED', 'NODE_SKIPPED', 'LOG', 'PROGRESS']
+    types.forEach((type) => {
+      source.addEventListener(type, (e) => {
+        const event: TaskEvent = JSON.parse((e as MessageEvent).data)
+        onEvent(event)
+        // 任务结束后服务端关闭连接，需主动关闭以免浏览器重连
+        if (event.type === 'STATUS' && ['COMPLETED', 'FAILED', 'CANCELLED'].includes(event.status || '')) {
+          source.close()
+        }
+      })
+    })
+    return source
+  },
+  
   // 取消任务
   cancelTask: (id: string): Promise<void> => api.post(`/tasks/${id}/cancel`),
+  
+  // 恢复执行失败或已取消的任务，已完成的节点取自检查点
+  resumeTask: (id: string): Promise<Task> => api.post(`/tasks/${id}/resume`),
 }
 
 export default api
@@ -123,7 +123,7 @@ export const useWorkflowStore = defineStore('workflow', () => {
     loading.value = true
     error.value = null
     try {
-      tasks.value = await taskApi.getTasks(workflowId)
+      tasks.value = (await taskApi.getTasks(workflowId)).items
     } catch (err: any) {
       error.value = err.message || '獲取任務列表失敗'
       console.error('Fetch tasks error:', err)
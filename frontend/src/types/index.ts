@@ -43,11 +43,41 @@ export interface APIConfig {
     type: 'none' | 'basic' | 'bearer' | 'apiKey'
     credentials?: Record<string, string>
   }
+  responseMode?: 'json' | 'sse' | 'ndjson'
+  streamTextPath?: string
+  streamingInput?: boolean
+  idempotent?: boolean
+  retry?: {
+    maxAttempts?: number
+    backoffMs?: number
+    maxBackoffMs?: number
+    jitter?: number
+  }
+  hedge?: {
+    enabled?: boolean
+    percentile?: number
+    delayMs?: number
+  }
+  circuitBreaker?: {
+    enabled?: boolean
+    failureRateThreshold?: number
+    minimumCalls?: number
+    windowSize?: number
+    openMs?: number
+  }
+  batch?: {
+    maxSize: number
+    maxLingerMs?: number
+    inputField?: string
+    outputPath?: string
+  }
 }
 
 // 模組節點（用於拖拉拽）
 export interface ModuleNode {
   id: string
+  // 內置節點類型，省略為模組節點
+  type?: 'map' | 'switch' | 'if'
   moduleId: string
   position: { x: number; y: number }
   config: ModuleConfig
@@ -84,9 +114,27 @@ export interface Task {
   error?: string
   startTime?: string
   endTime?: string
+  createdAt?: string
   logs: TaskLog[]
 }
 
+// 任務分頁結果
+export interface TaskPage {
+  items: Task[]
+  nextCursor?: string
+}
+
+// 任務列表查詢參數
+export interface TaskQuery {
+  workflowId?: string
+  status?: string
+  from?: string
+  to?: string
+  cursor?: string
+  limit?: number
+  includeDetails?: boolean
+}
+
 // 任務日誌
 export interface TaskLog {
   id: string
@@ -98,6 +146,56 @@ export interface TaskLog {
   data?: any
 }
 
+// 任務進度事件（SSE 推送）
+export interface TaskEvent {
+  id: number
+  taskId: string
+  type: 'STATUS' | 'NODE_STARTED' | 'NODE_CHUNK' | 'NODE_COMPLETED' | 'NODE_FAILED' | 'NODE_SKIPPED' | 'LOG' | 'PROGRESS'
+  status?: string
+  nodeId?: string
+  moduleId?: string
+  level?: string
+  message?: string
+  data?: any
+  timestamp?: string
+}
+
+// 任務執行時間線（節點 span，時間為相對 startedAt 的毫秒偏移）
+export interface TaskTimeline {
+  startedAt: number
+  spans: TaskSpan[]
+}
+
+export interface TaskSpan {
+  nodeId: string
+  moduleId?: string
+  start: number
+  end: number
+  status: 'OK' | 'ERROR' | 'SKIPPED'
+  queueWaitMs?: number
+  attempts?: number
+  cacheHit?: string
+  batchSize?: number
+  upstreamStatus?: number
+  bytesIn?: number
+  bytesOut?: number
+  chunks?: number
+  items?: number
+  failedItems?: number
+  branch?: string
+  // 恢復執行時取自檢查點，本次未執行
+  restored?: boolean
+  error?: string
+}
+
+// 批量執行的單條記錄結果
+export interface BulkRecord {
+  line: number
+  status: 'COMPLETED' | 'FAILED'
+  result?: any
+  error?: string
+}
+
 // 項目
 export interface Project {
   id: string